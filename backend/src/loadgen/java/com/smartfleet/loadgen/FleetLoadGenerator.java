@@ -0,0 +1,415 @@
+package com.smartfleet.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthetic fleet load generator: up to 100k virtual trucks against a running backend
+ * Not part of the application jar - it lives in src/loadgen and is only compiled with the loadgen profile:
+ *
+ * <pre>
+ * mvn -Ploadgen compile exec:java -Dexec.args="--url=http://localhost:8080 \
+ *      --username=&lt;admin&gt; --password=&lt;admin-password&gt; --driver-password=&lt;password&gt; \
+ *      --trucks=100000 --interval-ms=2000 --duration-s=120"
+ * </pre>
+ *
+ * Every virtual truck is a real driver account (--driver-prefix + index) with its own vehicle: on the first run
+ * the driver is registered, the admin creates a vehicle and the driver assigns it to itself; later runs just log
+ * in and read the vehicle from /api/drivers/me. Each truck then streams its samples with its own token
+ * (--batch=1) or, with --batch &gt; 1, a gateway logged in as the admin sends --batch trucks per request.
+ * Virtual trucks are rows in primitive arrays, not threads: one pacing thread walks the fleet in
+ * small slices and sends the samples with the non-blocking JDK HttpClient (at most --max-in-flight
+ * requests). Latency is measured from the moment a request was DUE, not when it was sent, so a saturated
+ * client or server shows up in the percentiles (no coordinated omission).
+ * Latencies (microseconds) go into one HdrHistogram Recorder per endpoint, 3 significant digits: the HTTP
+ * threads record wait-free, the pacing thread swaps out interval histograms for the periodic report (batch p99)
+ * and adds them into a per-endpoint total for the summary.
+ * Samples answered with 429 (queue full) are counted apart from accepted ones and from errors.
+ * Options: --url --username --password --driver-prefix --driver-password --trucks --interval-ms --batch
+ *          --duration-s --setup-threads --max-in-flight --report-s
+ */
+public class FleetLoadGenerator {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern VEHICLE_ID = Pattern.compile("\"vehicleId\"\\s*:\\s*(\\d+)");
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final int SLICES_PER_INTERVAL = 100;
+    private static final String BATCH_ENDPOINT = "POST /api/vehicles/locations/batch";
+
+    private final String url;
+    private final int trucks;
+    private final long intervalMs;
+    private final int batch;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final HttpClient client;
+
+    // Starea camioanelor virtuale (index = camion); doar primele `ready` au cont si vehicul
+    private final long[] vehicleIds;
+    private final String[] tokens;
+    private final double[] lats;
+    private final double[] lngs;
+    private final long[] sequences;
+    private int ready;
+
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final Map<String, Histogram> totals = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> statusCounts = new LinkedHashMap<>();
+    private final AtomicLong samplesAccepted = new AtomicLong();
+    private final AtomicLong samplesRejected = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public FleetLoadGenerator(Map<String, String> options) {
+        this.url = options.getOrDefault("url", "http://localhost:8080");
+        this.trucks = Integer.parseInt(options.getOrDefault("trucks", "1000"));
+        this.intervalMs = Long.parseLong(options.getOrDefault("interval-ms", "2000"));
+        this.batch = Math.max(1, Integer.parseInt(options.getOrDefault("batch", "1")));
+        this.maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "512"));
+        this.inFlight = new Semaphore(maxInFlight);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "loadgen-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+
+        vehicleIds = new long[trucks];
+        tokens = new String[trucks];
+        lats = new double[trucks];
+        lngs = new double[trucks];
+        sequences = new long[trucks];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < trucks; i++) {
+            // Imprastiati in jurul Clujului (~50 km)
+            lats[i] = 46.7712 + (random.nextDouble() - 0.5);
+            lngs[i] = 23.5889 + (random.nextDouble() - 0.5);
+        }
+
+        for (String endpoint : new String[] {"POST /api/auth/register", "POST /api/auth/login", "GET /api/drivers/me",
+                "POST /api/vehicles", "POST /api/drivers/assign-vehicle", BATCH_ENDPOINT}) {
+            recorders.put(endpoint, new Recorder(3));
+            totals.put(endpoint, new Histogram(3));
+            statusCounts.put(endpoint + " 2xx", new AtomicLong());
+            statusCounts.put(endpoint + " 429", new AtomicLong());
+            statusCounts.put(endpoint + " other", new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                options.clear();
+                break;
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        // Fara credentiale implicite: contul de admin si parola soferilor se dau explicit
+        if (!options.containsKey("username") || !options.containsKey("password")
+                || !options.containsKey("driver-password")) {
+            System.out.println("Usage: FleetLoadGenerator --url=... --username=<admin> --password=... "
+                    + "--driver-password=... [--driver-prefix=loadgen-driver-] [--trucks=1000] [--interval-ms=2000] "
+                    + "[--batch=1] [--duration-s=60] [--setup-threads=32] [--max-in-flight=512] [--report-s=5]");
+            return;
+        }
+        new FleetLoadGenerator(options).run(options);
+    }
+
+    private void run(Map<String, String> options) throws Exception {
+        long durationMs = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("duration-s", "60")));
+        long reportMs = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("report-s", "5")));
+
+        // 1. Admin: creeaza vehiculele lipsa si, cu --batch > 1, e gateway-ul care trimite in numele camioanelor
+        String adminToken = login(options.get("username"), options.get("password"));
+        if (adminToken == null) {
+            System.out.println("Login failed for " + options.get("username"));
+            return;
+        }
+
+        // 2. Un cont de sofer + un vehicul real per camion
+        setUpTrucks(options, adminToken);
+        if (ready == 0) {
+            System.out.println("No truck could be set up");
+            return;
+        }
+        System.out.printf("Streaming %d trucks every %d ms (%d samples per request, %s) for %d s%n",
+                ready, intervalMs, batch, batch == 1 ? "one token per truck" : "gateway token", durationMs / 1000);
+
+        // 3. Streaming: flota e parcursa in SLICES_PER_INTERVAL felii pe interval, ca sa nu plece totul deodata
+        long sliceNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs) / SLICES_PER_INTERVAL;
+        int trucksPerSlice = Math.max(1, (ready + SLICES_PER_INTERVAL - 1) / SLICES_PER_INTERVAL);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        long nextReport = start + TimeUnit.MILLISECONDS.toNanos(reportMs);
+        long lastReportSamples = 0;
+        long due = start;
+        int cursor = 0;
+
+        while (due < end) {
+            long now = System.nanoTime();
+            if (now < due) {
+                LockSupport.parkNanos(due - now);
+                continue;
+            }
+            int sliceEnd = Math.min(ready, cursor + trucksPerSlice);
+            for (int from = cursor; from < sliceEnd; from += batch) {
+                sendLocations(batch == 1 ? tokens[from] : adminToken, from, Math.min(sliceEnd, from + batch), due);
+            }
+            cursor = sliceEnd >= ready ? 0 : sliceEnd;
+            due += sliceNanos;
+
+            if (now >= nextReport) {
+                long samples = samplesAccepted.get();
+                Histogram interval = drain(BATCH_ENDPOINT);
+                System.out.printf(Locale.ROOT,
+                        "[%4ds] %,.0f samples/s accepted, p99 %.2f ms, 429 %d, in flight %d, skipped %d, errors %d%n",
+                        TimeUnit.NANOSECONDS.toSeconds(now - start),
+                        (samples - lastReportSamples) * 1000.0 / reportMs,
+                        interval.getValueAtPercentile(99) / 1000.0, samplesRejected.get(),
+                        maxInFlight - inFlight.availablePermits(), skipped.get(), errors.get());
+                lastReportSamples = samples;
+                nextReport += TimeUnit.MILLISECONDS.toNanos(reportMs);
+            }
+        }
+
+        // Asteptam raspunsurile ramase
+        inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS);
+        printSummary(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Log in (or register) every driver and make sure it has a vehicle; idempotent across runs
+     */
+    private void setUpTrucks(Map<String, String> options, String adminToken) throws Exception {
+        String prefix = options.getOrDefault("driver-prefix", "loadgen-driver-");
+        String password = options.get("driver-password");
+        int threads = Integer.parseInt(options.getOrDefault("setup-threads", "32"));
+        System.out.printf("Setting up %d driver accounts and vehicles (%s0..%s%d)%n", trucks, prefix, prefix,
+                trucks - 1);
+
+        ExecutorService setup = Executors.newFixedThreadPool(threads);
+        AtomicInteger done = new AtomicInteger();
+        List<Future<Boolean>> results = new ArrayList<>(trucks);
+        for (int i = 0; i < trucks; i++) {
+            int truck = i;
+            results.add(setup.submit(() -> {
+                boolean ok = setUpTruck(truck, prefix + truck, password, adminToken);
+                if (done.incrementAndGet() % 1000 == 0)
+                    System.out.printf("  %d / %d trucks set up%n", done.get(), trucks);
+                return ok;
+            }));
+        }
+
+        // Camioanele fara cont / vehicul sunt scoase, restul se compacteaza la inceputul tablourilor
+        for (int i = 0; i < trucks; i++) {
+            boolean ok;
+            try {
+                ok = results.get(i).get();
+            } catch (Exception e) {
+                ok = false;
+            }
+            if (!ok) {
+                errors.incrementAndGet();
+                continue;
+            }
+            vehicleIds[ready] = vehicleIds[i];
+            tokens[ready] = tokens[i];
+            lats[ready] = lats[i];
+            lngs[ready] = lngs[i];
+            ready++;
+        }
+        setup.shutdown();
+    }
+
+    private boolean setUpTruck(int truck, String username, String password, String adminToken) throws Exception {
+        String token = login(username, password);
+        if (token == null)
+            token = register(username, password);
+        if (token == null)
+            return false;
+
+        Long vehicleId = fetchVehicleId(token);
+        if (vehicleId == null) {
+            vehicleId = createVehicle(adminToken, "LG-" + truck, lats[truck], lngs[truck]);
+            if (vehicleId == null || !assignVehicle(token, vehicleId))
+                return false;
+        }
+        tokens[truck] = token;
+        vehicleIds[truck] = vehicleId;
+        return true;
+    }
+
+    private String login(String username, String password) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .build();
+        HttpResponse<String> response = timed("POST /api/auth/login", request);
+        Matcher matcher = TOKEN.matcher(response.body());
+        return response.statusCode() == 200 && matcher.find() ? matcher.group(1) : null;
+    }
+
+    private String register(String username, String password) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\""
+                        + password + "\",\"email\":\"" + username + "@loadgen.invalid\",\"fullName\":\"" + username
+                        + "\",\"license\":\"LOADGEN\"}"))
+                .build();
+        HttpResponse<String> response = timed("POST /api/auth/register", request);
+        Matcher matcher = TOKEN.matcher(response.body());
+        return response.statusCode() == 200 && matcher.find() ? matcher.group(1) : null;
+    }
+
+    private Long fetchVehicleId(String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/drivers/me"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        HttpResponse<String> response = timed("GET /api/drivers/me", request);
+        Matcher matcher = VEHICLE_ID.matcher(response.body());
+        return response.statusCode() == 200 && matcher.find() ? Long.parseLong(matcher.group(1)) : null;
+    }
+
+    private Long createVehicle(String adminToken, String plate, double lat, double lng) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/vehicles"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + adminToken)
+                .POST(HttpRequest.BodyPublishers.ofString(String.format(Locale.ROOT,
+                        "{\"plate\":\"%s\",\"brand\":\"LoadGen\",\"type\":\"TRUCK\",\"status\":\"AVAILABLE\","
+                                + "\"lat\":%.6f,\"lng\":%.6f}", plate, lat, lng)))
+                .build();
+        HttpResponse<String> response = timed("POST /api/vehicles", request);
+        Matcher matcher = ID.matcher(response.body());
+        return response.statusCode() == 200 && matcher.find() ? Long.parseLong(matcher.group(1)) : null;
+    }
+
+    private boolean assignVehicle(String token, long vehicleId) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/drivers/assign-vehicle"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"vehicleId\":" + vehicleId + "}"))
+                .build();
+        return timed("POST /api/drivers/assign-vehicle", request).statusCode() == 200;
+    }
+
+    private HttpResponse<String> timed(String endpoint, HttpRequest request) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        record(endpoint, start, response.statusCode());
+        return response;
+    }
+
+    private void sendLocations(String token, int from, int to, long dueNanos) {
+        if (!inFlight.tryAcquire()) {
+            // Clientul e saturat: masuram doar ce am putut trimite, dar numaram ce am sarit
+            skipped.addAndGet(to - from);
+            return;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long timestamp = System.currentTimeMillis();
+        StringBuilder body = new StringBuilder(128 * (to - from)).append('[');
+        for (int i = from; i < to; i++) {
+            lats[i] += (random.nextDouble() - 0.5) * 0.002;
+            lngs[i] += (random.nextDouble() - 0.5) * 0.002;
+            if (i > from)
+                body.append(',');
+            body.append("{\"vehicleId\":").append(vehicleIds[i])
+                    .append(",\"lat\":").append(lats[i])
+                    .append(",\"lng\":").append(lngs[i])
+                    .append(",\"status\":\"ON_TRIP\",\"speed\":").append(60 + random.nextInt(40))
+                    .append(",\"sequence\":").append(++sequences[i])
+                    .append(",\"timestamp\":").append(timestamp)
+                    .append('}');
+        }
+        body.append(']');
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/vehicles/locations/batch"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        int samples = to - from;
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            inFlight.release();
+            if (error != null) {
+                errors.incrementAndGet();
+                return;
+            }
+            record(BATCH_ENDPOINT, dueNanos, response.statusCode());
+            // 429 = coada plina: mostre respinse, nu trimise cu succes (si nici erori)
+            if (response.statusCode() / 100 == 2) {
+                samplesAccepted.addAndGet(samples);
+            } else if (response.statusCode() == 429) {
+                samplesRejected.addAndGet(samples);
+            } else {
+                errors.incrementAndGet();
+            }
+        });
+    }
+
+    private void record(String endpoint, long startNanos, int statusCode) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        recorders.get(endpoint).recordValue(Math.max(0, micros));
+        String bucket = statusCode / 100 == 2 ? " 2xx" : statusCode == 429 ? " 429" : " other";
+        statusCounts.get(endpoint + bucket).incrementAndGet();
+    }
+
+    // Muta ce s-a inregistrat de la ultimul apel in total; doar thread-ul de pacing citeste histogramele
+    private Histogram drain(String endpoint) {
+        Histogram interval = recorders.get(endpoint).getIntervalHistogram();
+        totals.get(endpoint).add(interval);
+        return interval;
+    }
+
+    private void printSummary(long elapsedMs) {
+        System.out.println();
+        System.out.printf(Locale.ROOT,
+                "Accepted %,d samples in %.1f s (%,.0f samples/s), rejected with 429 %,d, skipped %,d, errors %,d%n",
+                samplesAccepted.get(), elapsedMs / 1000.0, samplesAccepted.get() * 1000.0 / Math.max(1, elapsedMs),
+                samplesRejected.get(), skipped.get(), errors.get());
+        System.out.printf("%-38s %9s %9s %9s %9s %9s %9s %9s%n", "endpoint (latency ms)", "count", "mean", "p50",
+                "p90", "p99", "p99.9", "max");
+        recorders.keySet().forEach(this::drain);
+        totals.forEach((endpoint, histogram) -> System.out.printf(Locale.ROOT,
+                "%-38s %9d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", endpoint, histogram.getTotalCount(),
+                histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0));
+        statusCounts.forEach((key, count) -> {
+            if (count.get() > 0)
+                System.out.printf("%-44s %,d%n", key, count.get());
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package com.smartfleet.cluster;
+
+import com.smartfleet.dto.ClusterRelayStatsDTO;
+
+import java.util.function.Consumer;
+
+/**
+ * Fan-out between backend instances: what one node publishes on a topic is delivered to the
+ * subscribers of that topic on every OTHER node (never back to the sender)
+ * Delivery is best effort (at most once); subscribers must tolerate lost messages.
+ * Implementations: LocalClusterRelay (single node, app.cluster.fanout=none) and
+ * PostgresClusterRelay (LISTEN / NOTIFY, app.cluster.fanout=postgres).
+ */
+public interface ClusterRelay {
+
+    boolean isEnabled();
+
+    void publish(String topic, byte[] payload);
+
+    /**
+     * Register a handler for messages from other nodes; handlers run on the relay's receiver thread
+     */
+    void subscribe(String topic, Consumer<byte[]> handler);
+
+    ClusterRelayStatsDTO getStats();
+}
@@ -0,0 +1,33 @@
+package com.smartfleet.cluster;
+
+import com.smartfleet.dto.ClusterRelayStatsDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Single-node deployment: there is nobody to relay to
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.fanout", havingValue = "none", matchIfMissing = true)
+public class LocalClusterRelay implements ClusterRelay {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload) {
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<byte[]> handler) {
+    }
+
+    @Override
+    public ClusterRelayStatsDTO getStats() {
+        return new ClusterRelayStatsDTO("none", null, 0, 0, 0, 0, 0, 0, 0);
+    }
+}
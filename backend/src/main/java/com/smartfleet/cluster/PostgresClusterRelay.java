@@ -0,0 +1,313 @@
+package com.smartfleet.cluster;
+
+import com.smartfleet.dto.ClusterRelayStatsDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cluster fan-out over the PostgreSQL we already run (LISTEN / NOTIFY), no extra broker
+ * Messages published during app.cluster.flush-interval-ms are packed into one envelope, gzipped and
+ * base64-encoded; envelopes above the NOTIFY limit (8000 bytes) are split into numbered parts.
+ * An envelope holds at most app.cluster.max-envelope-bytes of raw payload (more messages go in further envelopes),
+ * so a burst never needs hundreds of parts that all have to arrive within the reassembly timeout.
+ * Each node LISTENs on a dedicated connection (outside the pool), reassembles the parts and drops its own.
+ *
+ * Payload of one NOTIFY: nodeId/messageId/part/parts/base64-chunk
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.fanout", havingValue = "postgres")
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresClusterRelay implements ClusterRelay {
+
+    // Limita NOTIFY e 8000 de octeti; pastram loc pentru antet
+    private static final int MAX_CHUNK_CHARS = 7800;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @Value("${app.cluster.postgres.channel:smartfleet_fanout}")
+    private String channel;
+
+    @Value("${app.cluster.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${app.cluster.reassembly-timeout-ms:5000}")
+    private long reassemblyTimeoutMs;
+
+    @Value("${app.cluster.max-envelope-bytes:262144}")
+    private int maxEnvelopeBytes;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, List<Consumer<byte[]>>> handlers = new ConcurrentHashMap<>();
+    private BlockingQueue<Outgoing> outgoing;
+    private long messageIds;
+
+    // Mesaje impartite in mai multe NOTIFY, in curs de reasamblare (doar thread-ul listener le atinge)
+    private final Map<String, Partial> partials = new HashMap<>();
+    private volatile boolean running;
+    private Thread listener;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        // LISTEN nu accepta parametri - numele canalului ajunge direct in SQL
+        if (!channel.matches("[a-z_][a-z0-9_]{0,62}"))
+            throw new IllegalStateException("app.cluster.postgres.channel must be a lowercase SQL identifier");
+        outgoing = new ArrayBlockingQueue<>(maxPending);
+        running = true;
+        listener = new Thread(this::listenLoop, "cluster-listener");
+        listener.setDaemon(true);
+        listener.start();
+        log.info("Cluster fan-out over Postgres channel {} as node {}", channel, nodeId);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flush();
+        running = false;
+        listener.join(2000);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload) {
+        if (!outgoing.offer(new Outgoing(topic, payload))) {
+            if (dropped.incrementAndGet() % 1000 == 1)
+                log.warn("Cluster fan-out queue full, {} messages dropped so far", dropped.get());
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<byte[]> handler) {
+        handlers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    @Override
+    public ClusterRelayStatsDTO getStats() {
+        return new ClusterRelayStatsDTO("postgres", nodeId, published.get(), notifications.get(), rawBytes.get(),
+                compressedBytes.get(), received.get(), dropped.get(), errors.get());
+    }
+
+    /**
+     * Send everything published since the last flush, packed in envelopes of at most maxEnvelopeBytes raw payload
+     */
+    @Scheduled(fixedDelayString = "${app.cluster.flush-interval-ms:100}")
+    public synchronized void flush() {
+        List<Outgoing> batch = new ArrayList<>();
+        outgoing.drainTo(batch);
+        List<Outgoing> envelope = new ArrayList<>();
+        long envelopeBytes = 0;
+        for (Outgoing message : batch) {
+            // Un mesaj mai mare decat limita pleaca singur
+            if (!envelope.isEmpty() && envelopeBytes + message.payload.length > maxEnvelopeBytes) {
+                sendEnvelope(envelope);
+                envelope = new ArrayList<>();
+                envelopeBytes = 0;
+            }
+            envelope.add(message);
+            envelopeBytes += message.payload.length;
+        }
+        if (!envelope.isEmpty())
+            sendEnvelope(envelope);
+    }
+
+    private void sendEnvelope(List<Outgoing> batch) {
+        try {
+            String data = Base64.getEncoder().encodeToString(pack(batch));
+            long messageId = ++messageIds;
+            int parts = (data.length() + MAX_CHUNK_CHARS - 1) / MAX_CHUNK_CHARS;
+            for (int part = 0; part < parts; part++) {
+                String chunk = data.substring(part * MAX_CHUNK_CHARS,
+                        Math.min(data.length(), (part + 1) * MAX_CHUNK_CHARS));
+                jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel,
+                        nodeId + "/" + messageId + "/" + part + "/" + parts + "/" + chunk);
+                notifications.incrementAndGet();
+            }
+            published.addAndGet(batch.size());
+        } catch (Exception e) {
+            // Nu reincercam: starea live se retrimite oricum la urmatoarea schimbare
+            errors.incrementAndGet();
+            dropped.addAndGet(batch.size());
+            log.error("Cannot relay {} messages to the cluster: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private byte[] pack(List<Outgoing> batch) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        long raw = 0;
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(compressed))) {
+            out.writeInt(batch.size());
+            for (Outgoing message : batch) {
+                out.writeUTF(message.topic);
+                out.writeInt(message.payload.length);
+                out.write(message.payload);
+                raw += message.payload.length;
+            }
+        }
+        rawBytes.addAndGet(raw);
+        compressedBytes.addAndGet(compressed.size());
+        return compressed.toByteArray();
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password);
+                    Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + channel);
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] batch = pg.getNotifications(500);
+                    if (batch != null) {
+                        for (PGNotification notification : batch)
+                            receive(notification.getParameter());
+                    }
+                    expirePartials();
+                }
+            } catch (SQLException e) {
+                if (!running)
+                    break;
+                // Ce s-a publicat cat timp eram deconectati e pierdut
+                errors.incrementAndGet();
+                partials.clear();
+                log.error("Cluster listener connection lost, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        String[] header = payload.split("/", 5);
+        if (header.length != 5 || nodeId.equals(header[0]))
+            return;
+        try {
+            int part = Integer.parseInt(header[2]);
+            int parts = Integer.parseInt(header[3]);
+            if (parts == 1) {
+                deliver(header[4]);
+                return;
+            }
+            String key = header[0] + "/" + header[1];
+            Partial partial = partials.computeIfAbsent(key, k -> new Partial(parts));
+            if (partial.chunks[part] != null)
+                return;
+            partial.chunks[part] = header[4];
+            if (++partial.received == partial.chunks.length) {
+                partials.remove(key);
+                deliver(String.join("", partial.chunks));
+            }
+        } catch (RuntimeException | IOException e) {
+            errors.incrementAndGet();
+            log.error("Invalid cluster message from node {}: {}", header[0], e.getMessage());
+        }
+    }
+
+    private void deliver(String data) throws IOException {
+        byte[] compressed = Base64.getDecoder().decode(data);
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String topic = in.readUTF();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                received.incrementAndGet();
+                for (Consumer<byte[]> handler : handlers.getOrDefault(topic, List.of())) {
+                    try {
+                        handler.accept(payload);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        log.error("Cluster handler for {} failed: {}", topic, e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private void expirePartials() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Partial> it = partials.values().iterator(); it.hasNext();) {
+            if (now - it.next().startedMillis > reassemblyTimeoutMs) {
+                it.remove();
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Outgoing {
+        private final String topic;
+        private final byte[] payload;
+
+        Outgoing(String topic, byte[] payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Partial {
+        private final String[] chunks;
+        private final long startedMillis = System.currentTimeMillis();
+        private int received;
+
+        Partial(int parts) {
+            chunks = new String[parts];
+        }
+    }
+}
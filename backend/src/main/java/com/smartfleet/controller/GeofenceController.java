@@ -0,0 +1,81 @@
+package com.smartfleet.controller;
+
+import com.smartfleet.dto.GeofenceEventDTO;
+import com.smartfleet.dto.GeofenceZoneDTO;
+import com.smartfleet.dto.MessageResponse;
+import com.smartfleet.service.GeofenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Geofence zones (polygon / circle) - admins manage them, everybody can read them
+ */
+@RestController
+@RequestMapping("/api/geofences")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class GeofenceController {
+
+    private final GeofenceService geofenceService;
+
+    @GetMapping
+    public ResponseEntity<List<GeofenceZoneDTO>> getAllZones() {
+        return ResponseEntity.ok(geofenceService.getAllZones());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<GeofenceZoneDTO> getZoneById(@PathVariable Long id) {
+        return ResponseEntity.ok(geofenceService.getZoneById(id));
+    }
+
+    // In ce zone se afla punctul? (verificare prin indexul spatial)
+    @GetMapping("/check")
+    public ResponseEntity<List<Long>> checkPoint(@RequestParam double lat, @RequestParam double lng) {
+        return ResponseEntity.ok(Arrays.stream(geofenceService.zonesAt(lat, lng)).boxed().collect(Collectors.toList()));
+    }
+
+    // Ultimele intrari / iesiri confirmate (live: /topic/geofence-events)
+    @GetMapping("/events")
+    public ResponseEntity<List<GeofenceEventDTO>> getRecentEvents(@RequestParam(required = false) Long vehicleId,
+            @RequestParam(required = false) Long zoneId, @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(geofenceService.getRecentEvents(vehicleId, zoneId, limit));
+    }
+
+    @GetMapping("/{id}/vehicles")
+    public ResponseEntity<List<Long>> getVehiclesInZone(@PathVariable Long id) {
+        return ResponseEntity.ok(geofenceService.getVehiclesInZone(id));
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createZone(@RequestBody GeofenceZoneDTO dto) {
+        try {
+            return ResponseEntity.ok(geofenceService.createZone(dto));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updateZone(@PathVariable Long id, @RequestBody GeofenceZoneDTO dto) {
+        try {
+            return ResponseEntity.ok(geofenceService.updateZone(id, dto));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> deleteZone(@PathVariable Long id) {
+        geofenceService.deleteZone(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.smartfleet.controller;
+
+import com.smartfleet.dto.MessageResponse;
+import com.smartfleet.service.HeatmapService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Historical density heatmap (admin analytics), served from the pre-aggregated position_rollup table
+ */
+@RestController
+@RequestMapping("/api/heatmap")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class HeatmapController {
+
+    private final HeatmapService heatmapService;
+
+    // GET /api/heatmap?from=...&to=...&zoom=10&bbox=minLat,minLng,maxLat,maxLng&type=Truck&metric=density|idle
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getHeatmap(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam int zoom,
+            @RequestParam(required = false) String bbox,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "density") String metric) {
+        try {
+            return ResponseEntity.ok(heatmapService.getHeatmap(from, to, zoom, bbox, type, metric));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    // Recalculeaza rollup-urile din vehicle_position (zile intregi), de ex. dupa o cadere a DB-ului
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuild(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            int rows = heatmapService.rebuild(from, to);
+            return ResponseEntity.ok(new MessageResponse("Rebuilt " + rows + " heatmap rollup rows"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+}
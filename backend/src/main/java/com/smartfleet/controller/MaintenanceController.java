@@ -1,6 +1,8 @@
 package com.smartfleet.controller;
 
 import com.smartfleet.repository.VehicleRepository;
+import com.smartfleet.service.FleetBroadcaster;
+import com.smartfleet.service.VehiclePositionStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,12 +15,16 @@ import org.springframework.web.bind.annotation.*;
 public class MaintenanceController {
 
     private final VehicleRepository vehicleRepository;
+    private final VehiclePositionStore positionStore;
+    private final FleetBroadcaster fleetBroadcaster;
 
     @PostMapping("/service/{vehicleId}")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> performService(@PathVariable Long vehicleId) {
         return vehicleRepository.findById(vehicleId)
                 .map(vehicle -> {
+                    positionStore.mergeInto(vehicle);
+
                     // Resetăm contorul de mentenanță
                     vehicle.setLastServiceKm(vehicle.getTotalKm());
 
@@ -27,7 +33,7 @@ public class MaintenanceController {
                         vehicle.setStatus("IDLE");
                     }
 
-                    vehicleRepository.save(vehicle);
+                    fleetBroadcaster.publishDetails(positionStore.put(vehicleRepository.save(vehicle)));
                     return ResponseEntity.ok("Service performed successfully for " + vehicle.getPlate());
                 })
                 .orElse(ResponseEntity.notFound().build());
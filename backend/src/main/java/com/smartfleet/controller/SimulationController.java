@@ -0,0 +1,26 @@
+package com.smartfleet.controller;
+
+import com.smartfleet.dto.SimulationStatsDTO;
+import com.smartfleet.service.SimulationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Fleet simulation monitoring (tick duration, overruns)
+ */
+@RestController
+@RequestMapping("/api/simulation")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class SimulationController {
+
+    private final SimulationService simulationService;
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SimulationStatsDTO> getStats() {
+        return ResponseEntity.ok(simulationService.getStats());
+    }
+}
@@ -0,0 +1,86 @@
+package com.smartfleet.controller;
+
+import com.smartfleet.dto.LocationBatchResponseDTO;
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.service.TelemetryPipeline;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * STOMP upstream channel for trucks
+ * A truck keeps one WebSocket session (authenticated on CONNECT) and SENDs frames to /app/telemetry
+ * Frames go through the same ingest path (TelemetryPipeline) as POST /api/vehicles/locations/batch
+ * The reportIntervalMs hint (and dropped samples) come back on /user/queue/telemetry, only when they change.
+ */
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryController {
+
+    public static final String ACK_DESTINATION = "/queue/telemetry";
+
+    private final TelemetryPipeline telemetryPipeline;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // sessionId -> (vehicleId -> ultimul reportIntervalMs trimis)
+    private final Map<String, Map<Long, Long>> sentIntervals = new ConcurrentHashMap<>();
+
+    // --- O MOSTRA PE FRAME ---
+    @MessageMapping("/telemetry")
+    public void telemetry(@Payload LocationSampleDTO sample, Principal principal,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        ingest(List.of(sample), principal, sessionId);
+    }
+
+    // --- MAI MULTE MOSTRE PE FRAME ---
+    @MessageMapping("/telemetry/batch")
+    public void telemetryBatch(@Payload List<LocationSampleDTO> samples, Principal principal,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        ingest(samples, principal, sessionId);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sentIntervals.remove(event.getSessionId());
+    }
+
+    private void ingest(List<LocationSampleDTO> samples, Principal principal, String sessionId) {
+        // Pe STOMP nu avem 429 - daca pipeline-ul e plin, mostrele se pierd (urmatoarea le inlocuieste oricum)
+        int queued = telemetryPipeline.publishAll(samples);
+        if (queued < samples.size()) {
+            log.debug("Telemetry from {}: {} of {} samples dropped, pipeline full", principal.getName(),
+                    samples.size() - queued, samples.size());
+        }
+
+        // Raspuns doar cand s-a schimbat ceva, ca sa nu dublam traficul pe fiecare frame
+        Map<Long, Long> sent = sentIntervals.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>());
+        Map<Long, Long> changedIntervals = new HashMap<>();
+        for (LocationSampleDTO sample : samples) {
+            if (sample == null || sample.getVehicleId() == null || changedIntervals.containsKey(sample.getVehicleId()))
+                continue;
+            long interval = telemetryPipeline.getReportIntervalMs(sample.getVehicleId());
+            Long previous = sent.put(sample.getVehicleId(), interval);
+            if (previous == null || previous != interval) {
+                changedIntervals.put(sample.getVehicleId(), interval);
+            }
+        }
+        if (!changedIntervals.isEmpty() || queued < samples.size()) {
+            messagingTemplate.convertAndSendToUser(principal.getName(), ACK_DESTINATION,
+                    new LocationBatchResponseDTO(samples.size(), queued, samples.size() - queued, changedIntervals));
+        }
+    }
+}
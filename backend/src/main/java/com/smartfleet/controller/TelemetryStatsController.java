@@ -0,0 +1,99 @@
+package com.smartfleet.controller;
+
+import com.smartfleet.cluster.ClusterRelay;
+import com.smartfleet.dto.ClusterRelayStatsDTO;
+import com.smartfleet.dto.FleetBroadcastStatsDTO;
+import com.smartfleet.dto.MessageResponse;
+import com.smartfleet.dto.TelemetryReplayStatusDTO;
+import com.smartfleet.dto.TelemetryStatsDTO;
+import com.smartfleet.dto.WebSocketOutboundStatsDTO;
+import com.smartfleet.service.FleetBroadcaster;
+import com.smartfleet.service.TelemetryPipeline;
+import com.smartfleet.service.TelemetryRecorder;
+import com.smartfleet.service.TelemetryReplayService;
+import com.smartfleet.websocket.SlowConsumerPolicy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Telemetry pipeline monitoring (queue depth, rejected samples...) and recording replay
+ */
+@RestController
+@RequestMapping("/api/telemetry")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class TelemetryStatsController {
+
+    private final TelemetryPipeline telemetryPipeline;
+    private final TelemetryRecorder telemetryRecorder;
+    private final TelemetryReplayService telemetryReplayService;
+    private final FleetBroadcaster fleetBroadcaster;
+    private final ClusterRelay clusterRelay;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<TelemetryStatsDTO> getStats() {
+        return ResponseEntity.ok(telemetryPipeline.getStats());
+    }
+
+    // Cadrele trimise pe /topic/vehicles (keyframe / delta, octeti)
+    @GetMapping("/broadcast")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<FleetBroadcastStatsDTO> getBroadcastStats() {
+        return ResponseEntity.ok(fleetBroadcaster.getStats());
+    }
+
+    // Mesajele schimbate cu celelalte noduri (app.cluster.fanout)
+    @GetMapping("/cluster")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ClusterRelayStatsDTO> getClusterStats() {
+        return ResponseEntity.ok(clusterRelay.getStats());
+    }
+
+    // Per sesiune WebSocket: mesaje / octeti trimisi, durata write-urilor, cadre sarite cat a ramas in urma
+    @GetMapping("/sessions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<WebSocketOutboundStatsDTO> getSessionStats() {
+        return ResponseEntity.ok(slowConsumerPolicy.getStats());
+    }
+
+    @GetMapping("/recordings")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<String>> getRecordings() throws IOException {
+        return ResponseEntity.ok(telemetryRecorder.listRecordings());
+    }
+
+    // === REPLAY === (ex: POST /api/telemetry/replay?file=telemetry-20250101.rec.gz&speed=100)
+    @PostMapping("/replay")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> startReplay(@RequestParam String file, @RequestParam(defaultValue = "1") double speed) {
+        try {
+            telemetryReplayService.start(file, speed);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(telemetryReplayService.getStatus());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/replay")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<TelemetryReplayStatusDTO> getReplayStatus() {
+        return ResponseEntity.ok(telemetryReplayService.getStatus());
+    }
+
+    @DeleteMapping("/replay")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<TelemetryReplayStatusDTO> stopReplay() {
+        telemetryReplayService.stop();
+        return ResponseEntity.ok(telemetryReplayService.getStatus());
+    }
+}
@@ -0,0 +1,79 @@
+package com.smartfleet.controller;
+
+import com.smartfleet.dto.MessageResponse;
+import com.smartfleet.service.VectorTileService;
+import com.smartfleet.tiles.MvtEncoder;
+import com.smartfleet.tiles.TileCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vector tiles (Mapbox Vector Tile, protobuf) for the map: live vehicles and position history
+ * Every tile has a strong ETag; clients revalidate with If-None-Match (one tag, a list or *) and get 304
+ * when it did not change.
+ */
+@RestController
+@RequestMapping("/api/tiles")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class TileController {
+
+    private static final MediaType MVT = MediaType.parseMediaType(MvtEncoder.CONTENT_TYPE);
+
+    private final VectorTileService tileService;
+
+    @GetMapping("/vehicles/{z}/{x}/{y}.mvt")
+    public ResponseEntity<?> getVehicleTile(@PathVariable int z, @PathVariable long x, @PathVariable long y,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            return toResponse(tileService.getVehicleTile(z, x, y), ifNoneMatch, CacheControl.noCache());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    // Traseele din fereastra [from, to) (implicit ultima ora), optional doar pentru un vehicul
+    // Citeste din vehicle_position - doar ADMIN, si doar de la app.tiles.history.min-zoom in sus
+    @GetMapping("/history/{z}/{x}/{y}.mvt")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getHistoryTile(@PathVariable int z, @PathVariable long x, @PathVariable long y,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long vehicleId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            TileCache.Tile tile = tileService.getHistoryTile(z, x, y, from, to, vehicleId);
+            // O fereastra inchisa nu se mai schimba - browserul o poate pastra
+            CacheControl cacheControl = tileService.isClosedWindow(to)
+                    ? CacheControl.maxAge(1, TimeUnit.HOURS).cachePrivate()
+                    : CacheControl.noCache();
+            return toResponse(tile, ifNoneMatch, cacheControl);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<?> toResponse(TileCache.Tile tile, String ifNoneMatch, CacheControl cacheControl) {
+        if (TileCache.matches(ifNoneMatch, tile.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(tile.getEtag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MVT)
+                .eTag(tile.getEtag())
+                .cacheControl(cacheControl)
+                .body(tile.getData());
+    }
+}
@@ -1,14 +1,35 @@
 package com.smartfleet.controller;
 
+import com.smartfleet.dto.LocationAckDTO;
+import com.smartfleet.dto.LocationBatchResponseDTO;
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.dto.MessageResponse;
+import com.smartfleet.dto.TileTopicsDTO;
 import com.smartfleet.dto.VehicleCreateDTO;
+import com.smartfleet.dto.VehiclePositionDTO;
 import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.service.FleetSnapshotService;
+import com.smartfleet.service.PositionHistoryService;
+import com.smartfleet.service.TelemetryPipeline;
 import com.smartfleet.service.VehicleService;
+import com.smartfleet.websocket.TileSubscriptionRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/vehicles")
@@ -17,10 +38,57 @@ import java.util.List;
 public class VehicleController {
 
     private final VehicleService vehicleService;
+    private final PositionHistoryService positionHistoryService;
+    private final TelemetryPipeline telemetryPipeline;
+    private final FleetSnapshotService fleetSnapshotService;
+    private final TileSubscriptionRegistry tileSubscriptions;
 
+    @Value("${app.telemetry.batch.max-samples:1000}")
+    private int maxBatchSamples;
+
+    // Cu bbox (si optional zoom) raspunde doar cu vehiculele din viewport-ul hartii;
+    // cu since (si epoch) doar ce s-a schimbat dupa acea versiune. ETag = epoca + versiunea flotei -> 304 cat timp
+    // nu se schimba nimic; dupa un restart sau pe alt nod ETag-ul difera si raspunsul e complet
     @GetMapping
-    public ResponseEntity<List<VehicleResponseDTO>> getAllVehicles() {
-        return ResponseEntity.ok(vehicleService.getAllVehicles());
+    public ResponseEntity<?> getAllVehicles(@RequestParam(required = false) String bbox,
+            @RequestParam(required = false) Integer zoom, @RequestParam(required = false) Long since,
+            @RequestParam(required = false) String epoch,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (bbox != null)
+            return viewportResponse(bbox, zoom, false, ifNoneMatch);
+        FleetSnapshotService.Body body = since != null ? fleetSnapshotService.getChangesSince(epoch, since)
+                : fleetSnapshotService.getSnapshot();
+        return snapshotResponse(body, ifNoneMatch, acceptEncoding);
+    }
+
+    // Cele mai apropiate k vehicule de un punct (ex. cele mai apropiate 5 camioane libere de o incarcare)
+    @GetMapping("/nearby")
+    public ResponseEntity<?> getNearbyVehicles(@RequestParam double lat, @RequestParam double lng,
+            @RequestParam(defaultValue = "5") int k, @RequestParam(required = false) String status) {
+        try {
+            return ResponseEntity.ok(vehicleService.findNearby(lat, lng, k, status));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    // Agregate pe celule de grila (numar, statusuri, centroid) pentru zoom-urile mici ale hartii
+    @GetMapping("/clusters")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getClusters(@RequestParam int zoom, @RequestParam(required = false) String bbox) {
+        try {
+            return ResponseEntity.ok(vehicleService.getClusters(bbox, zoom));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    // Zoom-urile topicurilor /topic/vehicles/tile/{z}/{x}/{y} (app.broadcast.tile-zooms) - harta nu le mai hardcodeaza
+    @GetMapping("/tile-topics")
+    public ResponseEntity<TileTopicsDTO> getTileTopics() {
+        List<Integer> zooms = Arrays.stream(tileSubscriptions.getZooms()).boxed().collect(Collectors.toList());
+        return ResponseEntity.ok(new TileTopicsDTO(zooms, tileSubscriptions.getMaxTilesPerSession()));
     }
 
     @GetMapping("/{id}")
@@ -29,8 +97,29 @@ public class VehicleController {
     }
 
     @GetMapping("/available")
-    public ResponseEntity<List<VehicleResponseDTO>> getAvailableVehicles() {
-        return ResponseEntity.ok(vehicleService.getAvailableVehicles());
+    public ResponseEntity<?> getAvailableVehicles(@RequestParam(required = false) String bbox,
+            @RequestParam(required = false) Integer zoom,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (bbox == null)
+            return ResponseEntity.ok(vehicleService.getAvailableVehicles());
+        return viewportResponse(bbox, zoom, true, ifNoneMatch);
+    }
+
+    // --- ISTORIC POZITII (traseul) ---
+    @GetMapping("/{id}/track")
+    public ResponseEntity<List<VehiclePositionDTO>> getTrack(@PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(positionHistoryService.getTrack(id, from, to));
+    }
+
+    // Unde era camionul X la ora 14:00?
+    @GetMapping("/{id}/position-at")
+    public ResponseEntity<VehiclePositionDTO> getPositionAt(@PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime time) {
+        return positionHistoryService.getPositionAt(id, time)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping
@@ -53,12 +142,103 @@ public class VehicleController {
     }
 
     // === METODĂ ACTUALIZATĂ ===
-    // Acum apelează service-ul și SALVEAZĂ în DB
+    // Mostra intra in TelemetryPipeline si request-ul se termina imediat (fara DB pe thread-ul Tomcat)
     @PutMapping("/{id}/location")
-    public ResponseEntity<Void> updateLocation(@PathVariable Long id, @RequestParam Double lat,
-            @RequestParam Double lng) {
+    public ResponseEntity<?> updateLocation(@PathVariable Long id, @RequestParam Double lat,
+            @RequestParam Double lng, @RequestParam(required = false) Long sequence,
+            @RequestParam(required = false) Long timestamp) {
+
+        // Verificare in cache (fara DB): un id necunoscut ramane 400, ca inainte
+        if (!telemetryPipeline.isKnownVehicle(id)) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Vehicle not found"));
+        }
+        if (!telemetryPipeline.publish(new LocationSampleDTO(id, lat, lng, null, null, null, sequence, timestamp))) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(new LocationAckDTO(telemetryPipeline.getReportIntervalMs(id)));
+    }
+
+    // === BATCH TELEMETRY ===
+    // Un singur request pentru sute de pozitii + status; procesarea e asincrona (202 Accepted)
+    @PostMapping("/locations/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'DRIVER')")
+    public ResponseEntity<?> updateLocations(@RequestBody List<LocationSampleDTO> samples) {
+        if (samples.size() > maxBatchSamples) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Batch exceeds " + maxBatchSamples + " samples"));
+        }
+        // Backpressure: locurile se rezerva atomic pentru tot batch-ul; coada plina -> 429, camionul reincearca
+        int queued = telemetryPipeline.publishAll(samples);
+        if (queued == 0 && !samples.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new MessageResponse("Telemetry queue is full, retry later"));
+        }
+
+        Map<Long, Long> reportIntervals = new HashMap<>();
+        for (LocationSampleDTO sample : samples) {
+            if (sample != null && sample.getVehicleId() != null) {
+                reportIntervals.computeIfAbsent(sample.getVehicleId(), telemetryPipeline::getReportIntervalMs);
+            }
+        }
+        LocationBatchResponseDTO response = new LocationBatchResponseDTO(samples.size(), queued,
+                samples.size() - queued, reportIntervals);
+        // Respinse partial (WAL indisponibil): eroare, ca sa nu fie confirmate mostre pierdute
+        if (queued < samples.size()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
+        }
+        return ResponseEntity.accepted().body(response);
+    }
+
+    // Corpul e deja serializat (si comprimat); gzip doar daca clientul il accepta
+    private ResponseEntity<?> snapshotResponse(FleetSnapshotService.Body body, String ifNoneMatch,
+            String acceptEncoding) {
+        boolean gzip = body.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = fleetSnapshotService.etag(body.getVersion(), gzip);
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip)
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.body(gzip ? body.getGzip() : body.getJson());
+    }
 
-        vehicleService.updateLocation(id, lat, lng);
-        return ResponseEntity.ok().build();
+    // Viewport-ul se calculeaza per cerere, dar acelasi bbox la aceeasi versiune a flotei da acelasi raspuns.
+    // Filtrul "disponibil" depinde si de asignarile soferilor, care nu schimba versiunea flotei: fara ETag / 304
+    private ResponseEntity<?> viewportResponse(String bbox, Integer zoom, boolean availableOnly, String ifNoneMatch) {
+        try {
+            if (availableOnly) {
+                Object body = zoom != null ? vehicleService.getViewportMarkers(bbox, zoom, true)
+                        : vehicleService.getVehiclesInViewport(bbox, true);
+                return ResponseEntity.ok()
+                        .cacheControl(CacheControl.noStore())
+                        .body(body);
+            }
+            // Aceeasi versiune pentru comparatie si pentru tag: toate schimbarile pana la ea sunt vizibile
+            long version = fleetSnapshotService.getStableVersion();
+            String etag = fleetSnapshotService.viewportEtag(version);
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+            Object body = zoom != null ? vehicleService.getViewportMarkers(bbox, zoom, false)
+                    : vehicleService.getVehiclesInViewport(bbox, false);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(body);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO with what the simulation needs from an active trip (JPQL projection, no entities loaded)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActiveTripDTO {
+    private Long tripId;
+    private Long vehicleId;
+    private Double startLat;
+    private Double startLng;
+    private Double endLat;
+    private Double endLng;
+}
@@ -0,0 +1,23 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO with the counters of the cluster fan-out (messages relayed to / received from the other nodes)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterRelayStatsDTO {
+    private String mode;
+    private String nodeId;
+    private long published;
+    private long notifications;
+    private long rawBytes;
+    private long compressedBytes;
+    private long received;
+    private long dropped;
+    private long errors;
+}
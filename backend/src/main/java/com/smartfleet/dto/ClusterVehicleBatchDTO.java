@@ -0,0 +1,21 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO relayed between backend nodes once per broadcast tick: live states changed on the sending node,
+ * vehicles whose details (plate, brand, service...) changed and must be reloaded from DB, and deleted ids
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterVehicleBatchDTO {
+    private List<ClusterVehicleStateDTO> updated = new ArrayList<>();
+    private List<Long> reloaded = new ArrayList<>();
+    private List<Long> removed = new ArrayList<>();
+}
@@ -0,0 +1,25 @@
+package com.smartfleet.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Live state of one vehicle relayed between backend nodes: only what moves (position, mileage, status)
+ * The stamp is the per-vehicle change clock of the sending node; a receiver drops states older than the one it has.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterVehicleStateDTO {
+    private Long id;
+    private Double lat;
+    private Double lng;
+    @JsonProperty("km")
+    private Double totalKm;
+    @JsonProperty("st")
+    private String status;
+    @JsonProperty("t")
+    private long stamp;
+}
@@ -0,0 +1,24 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO with the counters of the /topic/vehicles (and per-tile) broadcaster
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FleetBroadcastStatsDTO {
+    private long seq;
+    private long keyframes;
+    private long deltaFrames;
+    private long tileFrames;
+    private long resyncFrames; // keyframe-uri trimise unei singure sesiuni dupa cadre sarite
+    private long bytesSent;
+    private int lastFrameVehicles;
+    private int lastFrameBytes;
+    private int pending;
+    private int subscribedTiles;
+}
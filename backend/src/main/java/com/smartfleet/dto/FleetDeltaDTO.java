@@ -0,0 +1,24 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for GET /api/vehicles?since=version&epoch=...: vehicles changed and ids removed after that version
+ * full = true when the server could not compute the difference; vehicles is then the whole fleet.
+ * epoch identifies the node / process the version belongs to - send it back with the next since.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FleetDeltaDTO {
+    private long version;
+    private String epoch;
+    private boolean full;
+    private List<VehicleResponseDTO> vehicles = new ArrayList<>();
+    private List<Long> removed = new ArrayList<>();
+}
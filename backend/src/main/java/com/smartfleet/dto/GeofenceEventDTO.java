@@ -0,0 +1,26 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A confirmed geofence transition (geofence_event table, /topic/geofence-events)
+ * occurredAt is when the vehicle crossed the border, detectedAt when the dwell time confirmed it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceEventDTO {
+    private Long id;
+    private Long vehicleId;
+    private Long zoneId;
+    private String zoneName;
+    private String type; // ENTER / EXIT
+    private Double lat;
+    private Double lng;
+    private LocalDateTime occurredAt;
+    private LocalDateTime detectedAt;
+}
@@ -0,0 +1,25 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for a geofence zone
+ * POLYGON: points = [[lat, lng], ...] (at least 3); CIRCLE: centerLat, centerLng, radiusM
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceZoneDTO {
+    private Long id;
+    private String name;
+    private String type;
+    private List<List<Double>> points;
+    private Double centerLat;
+    private Double centerLng;
+    private Double radiusM;
+    private Boolean active;
+}
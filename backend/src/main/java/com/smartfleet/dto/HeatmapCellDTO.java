@@ -0,0 +1,22 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for one heatmap cell: a Web Mercator grid cell (64 px at the requested zoom) with the position
+ * samples recorded in it during the time range; idleSeconds = time vehicles stood there stationary / IDLE
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapCellDTO {
+    private Integer zoom;
+    private Long x;
+    private Long y;
+    private Double lat; // centrul celulei
+    private Double lng;
+    private Long samples;
+    private Long idleSeconds;
+}
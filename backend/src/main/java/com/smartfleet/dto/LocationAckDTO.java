@@ -0,0 +1,16 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO returned to a truck after a location update
+ * reportIntervalMs = server hint for the next report (slower when the truck is parked)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationAckDTO {
+    private long reportIntervalMs;
+}
@@ -0,0 +1,22 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * DTO for the result of a batched location update
+ * accepted = samples queued in the telemetry pipeline, rejected = samples that found the queue full
+ * reportIntervalMs = how often each vehicle should report from now on (slower when parked)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationBatchResponseDTO {
+    private int received;
+    private int accepted;
+    private int rejected;
+    private Map<Long, Long> reportIntervalMs;
+}
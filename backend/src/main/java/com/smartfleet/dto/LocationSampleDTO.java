@@ -0,0 +1,25 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for a single GPS sample sent by a truck (REST batch or STOMP /app/telemetry)
+ * Status, speed and fuel are optional - when status is missing the server keeps the current one.
+ * Sequence (incremented by the device per sample) and timestamp (device time, epoch ms) are optional too;
+ * when present, duplicates are dropped and late samples only go to the position history.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationSampleDTO {
+    private Long vehicleId;
+    private Double lat;
+    private Double lng;
+    private String status;
+    private Double speed;      // km/h
+    private Double fuelLevel;  // procent 0-100
+    private Long sequence;
+    private Long timestamp;    // epoch ms
+}
@@ -0,0 +1,16 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for GET /api/vehicles/nearby: a vehicle and its great-circle distance to the query point
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyVehicleDTO {
+    private VehicleResponseDTO vehicle;
+    private Double distanceMeters;
+}
@@ -0,0 +1,22 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO with the timing of the fleet simulation ticks
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimulationStatsDTO {
+    private int workers;
+    private long tickIntervalMs;
+    private int activeVehicles;
+    private long ticks;
+    private long overruns;
+    private long lastTickMs;
+    private long maxTickMs;
+    private double avgTickMs;
+}
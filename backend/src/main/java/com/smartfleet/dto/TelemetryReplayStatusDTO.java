@@ -0,0 +1,21 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO with the progress of a telemetry replay
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryReplayStatusDTO {
+    private String file;
+    private double speed;
+    private boolean running;
+    private long replayed;
+    private long backpressureWaits;
+    private long lagMs;
+    private String error;
+}
@@ -0,0 +1,28 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO with the counters of the telemetry ingestion pipeline
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryStatsDTO {
+    private int capacity;
+    private int queueDepth;
+    private long published;
+    private long rejectedQueueFull;
+    private long processed;
+    private long invalid;
+    private long unknownVehicle;
+    private long duplicates;
+    private long late;
+    private long deadBandSuppressed;
+    private long batches;
+    private int lastBatchSize;
+    private long walErrors;
+    private int walSegments;
+}
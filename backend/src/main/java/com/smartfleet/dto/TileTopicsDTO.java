@@ -0,0 +1,19 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for GET /api/vehicles/tile-topics: the zooms that have /topic/vehicles/tile/{z}/{x}/{y} topics
+ * and how many of them one WebSocket session may subscribe to
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TileTopicsDTO {
+    private List<Integer> zooms;
+    private Integer maxTilesPerSession;
+}
@@ -0,0 +1,23 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * DTO for one map cluster: a Web Mercator grid cell (64 px at the requested zoom) with its vehicles aggregated
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehicleClusterDTO {
+    private Integer zoom;
+    private Long x;
+    private Long y;
+    private Integer count;
+    private Double lat; // centroid
+    private Double lng;
+    private Map<String, Integer> statuses;
+}
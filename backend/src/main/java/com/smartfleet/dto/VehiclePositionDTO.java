@@ -0,0 +1,22 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for one point of a vehicle's position history (vehicle_position table)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehiclePositionDTO {
+    private Long vehicleId;
+    private LocalDateTime recordedAt;
+    private Double lat;
+    private Double lng;
+    private Double speed;
+    private String status;
+}
@@ -19,4 +19,8 @@ public class VehicleResponseDTO {
     private Double lng;
     private Double totalKm;
     private Double lastServiceKm;
+
+    // Telemetrie live (doar in memorie, nu se salveaza in DB)
+    private Double speed;
+    private Double fuelLevel;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for GET /api/vehicles?bbox=...&zoom=...: the vehicle drawn for a screen cell and how many vehicles it stands for
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewportMarkerDTO {
+    private VehicleResponseDTO vehicle;
+    private Integer count;
+}
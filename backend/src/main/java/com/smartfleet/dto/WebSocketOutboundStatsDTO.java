@@ -0,0 +1,21 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO with the slow-consumer counters of all WebSocket sessions
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebSocketOutboundStatsDTO {
+    private int sessions;
+    private int laggingSessions;
+    private long framesSkipped;
+    private long slowDisconnects;
+    private List<WebSocketSessionStatsDTO> details;
+}
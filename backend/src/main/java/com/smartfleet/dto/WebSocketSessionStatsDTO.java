@@ -0,0 +1,26 @@
+package com.smartfleet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO with the outbound counters of one WebSocket session (see SlowConsumerPolicy)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebSocketSessionStatsDTO {
+    private String sessionId;
+    private String remoteAddress;
+    private LocalDateTime connectedAt;
+    private long messagesSent;
+    private long bytesSent;
+    private long framesSkipped;
+    private long lastSendMs;
+    private long maxSendMs;
+    private long blockedMs;
+    private boolean lagging;
+}
@@ -0,0 +1,55 @@
+package com.smartfleet.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Geofence zone managed by admins: a polygon or a circle
+ */
+@Entity
+@Table(name = "geofence_zone")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceZone {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String name;
+
+    @Column(nullable = false, length = 20)
+    private String type; // POLYGON, CIRCLE
+
+    // Varfurile poligonului: "lat,lng;lat,lng;..."
+    @Column(columnDefinition = "TEXT")
+    private String points;
+
+    @Column(name = "center_lat")
+    private Double centerLat;
+
+    @Column(name = "center_lng")
+    private Double centerLng;
+
+    @Column(name = "radius_m")
+    private Double radiusM;
+
+    private Boolean active;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null)
+            createdAt = LocalDateTime.now();
+        if (active == null)
+            active = true;
+    }
+}
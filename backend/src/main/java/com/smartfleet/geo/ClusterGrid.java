@@ -0,0 +1,243 @@
+package com.smartfleet.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live map clusters: per-cell aggregates (count, status breakdown, centroid) on a Web Mercator grid pyramid
+ * Grid level g has 2^g x 2^g cells over the world, so level zoom + 2 gives 64 px cells on 256 px tiles.
+ *
+ * Only a few levels are stored (e.g. 4, 7, 10, 13) and every position change updates them
+ * incrementally (move(previous, next)); a query at another level merges the cells of the next finer
+ * stored level (at most 8 x 8 per output cell), so nothing is recomputed from the vehicles.
+ */
+public final class ClusterGrid {
+
+    public static final String[] STATUSES = {"AVAILABLE", "ON_TRIP", "IDLE", "MAINTENANCE", "OTHER"};
+
+    private static final int OTHER = STATUSES.length - 1;
+
+    private final int[] levels;
+    private final List<Map<Long, Cell>> cells = new ArrayList<>();
+
+    public ClusterGrid(int[] levels) {
+        this.levels = levels.clone();
+        Arrays.sort(this.levels);
+        for (int i = 0; i < this.levels.length; i++) {
+            if (this.levels[i] < 0 || this.levels[i] > 30)
+                throw new IllegalArgumentException("Grid level must be between 0 and 30");
+            cells.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Apply one position / status change; a null lat or lng means "not on the map" (insert / remove)
+     */
+    public void move(Double oldLat, Double oldLng, String oldStatus, Double newLat, Double newLng, String newStatus) {
+        boolean hadOld = oldLat != null && oldLng != null;
+        boolean hasNew = newLat != null && newLng != null;
+        if (!hadOld && !hasNew)
+            return;
+        double oldX = hadOld ? WebMercator.x(oldLng) : 0;
+        double oldY = hadOld ? WebMercator.y(oldLat) : 0;
+        double newX = hasNew ? WebMercator.x(newLng) : 0;
+        double newY = hasNew ? WebMercator.y(newLat) : 0;
+        int oldStatusIndex = statusIndex(oldStatus);
+        int newStatusIndex = statusIndex(newStatus);
+
+        for (int i = 0; i < levels.length; i++) {
+            Map<Long, Cell> level = cells.get(i);
+            long oldKey = hadOld ? cellKey(oldX, oldY, levels[i]) : -1;
+            long newKey = hasNew ? cellKey(newX, newY, levels[i]) : -1;
+            if (hadOld && hasNew && oldKey == newKey) {
+                // Aceeasi celula: doar centroidul si (eventual) statusul se schimba. Vehiculul e numarat
+                // in celula, deci ea nu poate disparea intre get si shift
+                Cell cell = level.get(oldKey);
+                if (cell != null)
+                    cell.shift(newLat - oldLat, newLng - oldLng, oldStatusIndex, newStatusIndex);
+                continue;
+            }
+            if (hadOld)
+                level.computeIfPresent(oldKey, (k, cell) -> cell.remove(oldLat, oldLng, oldStatusIndex) ? null : cell);
+            if (hasNew) {
+                level.compute(newKey, (k, cell) -> {
+                    Cell target = cell != null ? cell : new Cell();
+                    target.add(newLat, newLng, newStatusIndex);
+                    return target;
+                });
+            }
+        }
+    }
+
+    /**
+     * Clusters at the given grid level whose cell intersects the box, unordered
+     */
+    public List<Cluster> clusters(int gridLevel, double minLat, double minLng, double maxLat, double maxLng) {
+        // Cel mai putin fin nivel stocat care e cel putin la fel de fin ca cel cerut
+        int stored = levels.length - 1;
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] >= gridLevel) {
+                stored = i;
+                break;
+            }
+        }
+        int storedLevel = levels[stored];
+        int shift = Math.max(0, storedLevel - gridLevel);
+        int outputLevel = storedLevel - shift;
+
+        long fromX = cellIndex(WebMercator.x(minLng), storedLevel);
+        long toX = cellIndex(WebMercator.x(maxLng), storedLevel);
+        long fromY = cellIndex(WebMercator.y(maxLat), storedLevel); // y creste spre sud
+        long toY = cellIndex(WebMercator.y(minLat), storedLevel);
+
+        Map<Long, Cell> level = cells.get(stored);
+        Map<Long, Cluster> merged = new HashMap<>();
+        double[] sums = new double[2];
+        int[] statusCounts = new int[STATUSES.length];
+        if ((toX - fromX + 1) * (toY - fromY + 1) <= level.size()) {
+            // Cutie mica: citim direct celulele din ea
+            for (long y = fromY; y <= toY; y++) {
+                for (long x = fromX; x <= toX; x++) {
+                    Cell cell = level.get((y << storedLevel) | x);
+                    if (cell != null)
+                        mergeInto(merged, cell, x, y, shift, outputLevel, sums, statusCounts);
+                }
+            }
+        } else {
+            long xMask = (1L << storedLevel) - 1;
+            level.forEach((key, cell) -> {
+                long x = key & xMask;
+                long y = key >>> storedLevel;
+                if (x >= fromX && x <= toX && y >= fromY && y <= toY)
+                    mergeInto(merged, cell, x, y, shift, outputLevel, sums, statusCounts);
+            });
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private static void mergeInto(Map<Long, Cluster> merged, Cell cell, long x, long y, int shift, int outputLevel,
+            double[] sums, int[] statusCounts) {
+        int count = cell.copyTo(sums, statusCounts);
+        if (count == 0)
+            return;
+        long outX = x >> shift;
+        long outY = y >> shift;
+        Cluster cluster = merged.computeIfAbsent((outY << outputLevel) | outX,
+                k -> new Cluster(outputLevel, outX, outY));
+        cluster.count += count;
+        cluster.sumLat += sums[0];
+        cluster.sumLng += sums[1];
+        for (int s = 0; s < statusCounts.length; s++)
+            cluster.statusCounts[s] += statusCounts[s];
+    }
+
+    public int[] getLevels() {
+        return levels.clone();
+    }
+
+    private static int statusIndex(String status) {
+        for (int i = 0; i < OTHER; i++) {
+            if (STATUSES[i].equals(status))
+                return i;
+        }
+        return OTHER;
+    }
+
+    private static long cellIndex(double normalized, int level) {
+        long size = 1L << level;
+        return Math.max(0, Math.min(size - 1, (long) Math.floor(normalized * size)));
+    }
+
+    // y << level | x: pana la nivelul 16 incape in 32 de biti, deci Long.hashCode nu are coliziuni
+    private static long cellKey(double x, double y, int level) {
+        return (cellIndex(y, level) << level) | cellIndex(x, level);
+    }
+
+    /**
+     * One cluster of a query result
+     */
+    public static final class Cluster {
+        private final int level;
+        private final long x;
+        private final long y;
+        private int count;
+        private double sumLat;
+        private double sumLng;
+        private final int[] statusCounts = new int[STATUSES.length];
+
+        Cluster(int level, long x, long y) {
+            this.level = level;
+            this.x = x;
+            this.y = y;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public long getX() {
+            return x;
+        }
+
+        public long getY() {
+            return y;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getCentroidLat() {
+            return sumLat / count;
+        }
+
+        public double getCentroidLng() {
+            return sumLng / count;
+        }
+
+        public int getStatusCount(int statusIndex) {
+            return statusCounts[statusIndex];
+        }
+    }
+
+    private static final class Cell {
+        private int count;
+        private double sumLat;
+        private double sumLng;
+        private final int[] statusCounts = new int[STATUSES.length];
+
+        synchronized void add(double lat, double lng, int status) {
+            count++;
+            sumLat += lat;
+            sumLng += lng;
+            statusCounts[status]++;
+        }
+
+        // Returns true when the cell became empty
+        synchronized boolean remove(double lat, double lng, int status) {
+            count--;
+            sumLat -= lat;
+            sumLng -= lng;
+            statusCounts[status]--;
+            return count <= 0;
+        }
+
+        synchronized void shift(double dLat, double dLng, int oldStatus, int newStatus) {
+            sumLat += dLat;
+            sumLng += dLng;
+            statusCounts[oldStatus]--;
+            statusCounts[newStatus]++;
+        }
+
+        synchronized int copyTo(double[] sums, int[] statuses) {
+            sums[0] = sumLat;
+            sums[1] = sumLng;
+            System.arraycopy(statusCounts, 0, statuses, 0, statusCounts.length);
+            return count;
+        }
+    }
+}
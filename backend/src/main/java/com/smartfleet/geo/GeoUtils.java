@@ -0,0 +1,24 @@
+package com.smartfleet.geo;
+
+/**
+ * Geographic helpers (WGS84 lat/lng in degrees)
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_M = 6_371_000.0;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Great-circle distance in metres (haversine)
+     */
+    public static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,244 @@
+package com.smartfleet.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable in-memory spatial index of geofence zones (uniform lat/lng grid)
+ * Every zone is registered in the grid cells its bounding box touches; a lookup only tests
+ * the zones of one cell, first by bounding box, then exactly (point-in-polygon / circle distance).
+ * Zones covering too many cells are kept aside and checked by bounding box on every lookup.
+ * Changes build a new index; readers never lock.
+ */
+public final class GeofenceIndex {
+
+    private static final int MAX_CELLS_PER_ZONE = 4096;
+    private static final double METERS_PER_DEGREE = GeoUtils.EARTH_RADIUS_M * Math.PI / 180;
+
+    private final double cellDegrees;
+    private final Zone[] zones;
+    // Zonele sortate dupa id, pentru cautare binara fara boxing
+    private final long[] sortedIds;
+    private final Zone[] zonesById;
+    // Celule: open addressing cheie -> [start, start + count) in cellZones
+    private final long[] cellKeys;
+    private final int[] cellStart;
+    private final int[] cellCount;
+    private final int[] cellZones;
+    private final int cellMask;
+    private final int[] largeZones;
+
+    private GeofenceIndex(double cellDegrees, Zone[] zones, Map<Long, List<Integer>> cells, List<Integer> large) {
+        this.cellDegrees = cellDegrees;
+        this.zones = zones;
+        int capacity = Integer.highestOneBit(Math.max(16, cells.size() * 2) - 1) << 1;
+        cellKeys = new long[capacity];
+        cellStart = new int[capacity];
+        cellCount = new int[capacity];
+        cellMask = capacity - 1;
+        Arrays.fill(cellCount, -1);
+        cellZones = new int[cells.values().stream().mapToInt(List::size).sum()];
+        int offset = 0;
+        for (Map.Entry<Long, List<Integer>> cell : cells.entrySet()) {
+            int slot = slotOf(cell.getKey());
+            cellKeys[slot] = cell.getKey();
+            cellStart[slot] = offset;
+            cellCount[slot] = cell.getValue().size();
+            for (int zone : cell.getValue()) {
+                cellZones[offset++] = zone;
+            }
+        }
+        largeZones = large.stream().mapToInt(Integer::intValue).toArray();
+
+        zonesById = zones.clone();
+        Arrays.sort(zonesById, (a, b) -> Long.compare(a.id, b.id));
+        sortedIds = new long[zonesById.length];
+        for (int i = 0; i < zonesById.length; i++) {
+            sortedIds[i] = zonesById[i].id;
+        }
+    }
+
+    public static GeofenceIndex build(List<Zone> zoneList, double cellDegrees) {
+        Zone[] zones = zoneList.toArray(new Zone[0]);
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        List<Integer> large = new ArrayList<>();
+        for (int i = 0; i < zones.length; i++) {
+            Zone zone = zones[i];
+            long minLatCell = cell(zone.minLat, cellDegrees);
+            long maxLatCell = cell(zone.maxLat, cellDegrees);
+            long minLngCell = cell(zone.minLng, cellDegrees);
+            long maxLngCell = cell(zone.maxLng, cellDegrees);
+            if ((maxLatCell - minLatCell + 1) * (maxLngCell - minLngCell + 1) > MAX_CELLS_PER_ZONE) {
+                large.add(i);
+                continue;
+            }
+            for (long latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+                for (long lngCell = minLngCell; lngCell <= maxLngCell; lngCell++) {
+                    cells.computeIfAbsent(key(latCell, lngCell), k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        return new GeofenceIndex(cellDegrees, zones, cells, large);
+    }
+
+    /**
+     * Write the ids of the zones containing the point into out; returns how many were found
+     * (at most out.length). Allocates nothing.
+     */
+    public int zonesContaining(double lat, double lng, long[] out) {
+        int found = 0;
+        int slot = slotOf(key(cell(lat, cellDegrees), cell(lng, cellDegrees)));
+        int count = cellCount[slot];
+        for (int i = 0; i < count && found < out.length; i++) {
+            Zone zone = zones[cellZones[cellStart[slot] + i]];
+            if (zone.contains(lat, lng))
+                out[found++] = zone.id;
+        }
+        for (int i = 0; i < largeZones.length && found < out.length; i++) {
+            Zone zone = zones[largeZones[i]];
+            if (zone.contains(lat, lng))
+                out[found++] = zone.id;
+        }
+        return found;
+    }
+
+    /**
+     * Zone by id, or null if it is not (or no longer) indexed
+     */
+    public Zone zone(long id) {
+        int position = Arrays.binarySearch(sortedIds, id);
+        return position >= 0 ? zonesById[position] : null;
+    }
+
+    public int size() {
+        return zones.length;
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & cellMask;
+        while (cellCount[slot] >= 0 && cellKeys[slot] != key) {
+            slot = (slot + 1) & cellMask;
+        }
+        return slot;
+    }
+
+    private static long cell(double degrees, double cellDegrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(long latCell, long lngCell) {
+        return (latCell << 32) ^ (lngCell & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A compiled zone: bounding box plus polygon vertices or circle
+     */
+    public static final class Zone {
+        private final long id;
+        private final double minLat;
+        private final double maxLat;
+        private final double minLng;
+        private final double maxLng;
+        private final double[] lats;
+        private final double[] lngs;
+        private final double centerLat;
+        private final double centerLng;
+        private final double radiusSquared;
+        private final double metersPerDegreeLng;
+
+        private Zone(long id, double minLat, double maxLat, double minLng, double maxLng, double[] lats, double[] lngs,
+                double centerLat, double centerLng, double radiusM) {
+            this.id = id;
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLng = minLng;
+            this.maxLng = maxLng;
+            this.lats = lats;
+            this.lngs = lngs;
+            this.centerLat = centerLat;
+            this.centerLng = centerLng;
+            this.radiusSquared = radiusM * radiusM;
+            this.metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+        }
+
+        public static Zone polygon(long id, double[] lats, double[] lngs) {
+            if (lats.length < 3 || lats.length != lngs.length)
+                throw new IllegalArgumentException("A polygon needs at least 3 points");
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+            for (int i = 0; i < lats.length; i++) {
+                minLat = Math.min(minLat, lats[i]);
+                maxLat = Math.max(maxLat, lats[i]);
+                minLng = Math.min(minLng, lngs[i]);
+                maxLng = Math.max(maxLng, lngs[i]);
+            }
+            return new Zone(id, minLat, maxLat, minLng, maxLng, lats.clone(), lngs.clone(), 0, 0, 0);
+        }
+
+        public static Zone circle(long id, double centerLat, double centerLng, double radiusM) {
+            if (radiusM <= 0)
+                throw new IllegalArgumentException("A circle needs a positive radius");
+            double dLat = radiusM / METERS_PER_DEGREE;
+            double dLng = dLat / Math.max(0.01, Math.cos(Math.toRadians(centerLat)));
+            return new Zone(id, centerLat - dLat, centerLat + dLat, centerLng - dLng, centerLng + dLng, null, null,
+                    centerLat, centerLng, radiusM);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public boolean contains(double lat, double lng) {
+            if (lat < minLat || lat > maxLat || lng < minLng || lng > maxLng)
+                return false;
+            if (lats == null) {
+                // Distanta equirectangulara - exacta la scara unui oras / judet
+                double dy = (lat - centerLat) * METERS_PER_DEGREE;
+                double dx = (lng - centerLng) * metersPerDegreeLng;
+                return dx * dx + dy * dy <= radiusSquared;
+            }
+            // Ray casting: numaram cate laturi taie raza spre est
+            boolean inside = false;
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)
+                        && lng < (lngs[j] - lngs[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lngs[i])
+                    inside = !inside;
+            }
+            return inside;
+        }
+
+        /**
+         * How far outside the zone the point is, in metres (0 when inside)
+         */
+        public double distanceOutsideMeters(double lat, double lng) {
+            if (contains(lat, lng))
+                return 0;
+            double metersPerDegreeLngHere = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+            if (lats == null) {
+                double dy = (lat - centerLat) * METERS_PER_DEGREE;
+                double dx = (lng - centerLng) * metersPerDegreeLngHere;
+                return Math.sqrt(dx * dx + dy * dy) - Math.sqrt(radiusSquared);
+            }
+            // Distanta minima pana la o latura, in metri (proiectie locala in jurul punctului)
+            double best = Double.MAX_VALUE;
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                double ax = (lngs[j] - lng) * metersPerDegreeLngHere;
+                double ay = (lats[j] - lat) * METERS_PER_DEGREE;
+                double bx = (lngs[i] - lng) * metersPerDegreeLngHere;
+                double by = (lats[i] - lat) * METERS_PER_DEGREE;
+                double ex = bx - ax;
+                double ey = by - ay;
+                double lengthSquared = ex * ex + ey * ey;
+                double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * ex + ay * ey) / lengthSquared));
+                double px = ax + t * ex;
+                double py = ay + t * ey;
+                best = Math.min(best, px * px + py * py);
+            }
+            return Math.sqrt(best);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.smartfleet.geo;
+
+import java.util.Random;
+
+/**
+ * Precomputed route between two points, resampled at a uniform step
+ * Points live in two float arrays (~0.5 m precision, 8 bytes per point), so the segment
+ * containing any distance along the route is found in O(1): index = distance / step.
+ */
+public final class RoutePolyline {
+
+    // Cat de mult se abate drumul de la linia dreapta (fractie din lungime) si in cate puncte
+    private static final double MAX_DETOUR = 0.04;
+    private static final int BENDS = 6;
+
+    private final float[] lats;
+    private final float[] lngs;
+    private final double stepMeters;
+    private final double lengthMeters;
+
+    private RoutePolyline(float[] lats, float[] lngs, double stepMeters, double lengthMeters) {
+        this.lats = lats;
+        this.lngs = lngs;
+        this.stepMeters = stepMeters;
+        this.lengthMeters = lengthMeters;
+    }
+
+    /**
+     * Build a plausible road-like route: the straight line bent at a few points
+     * (deterministic for the same seed), resampled every ~targetStepMeters with at most maxPoints points
+     */
+    public static RoutePolyline between(double startLat, double startLng, double endLat, double endLng, long seed,
+            double targetStepMeters, int maxPoints) {
+        Random random = new Random(seed);
+        int waypointCount = BENDS + 2;
+        double[] wLat = new double[waypointCount];
+        double[] wLng = new double[waypointCount];
+        double cosLat = Math.cos(Math.toRadians((startLat + endLat) / 2));
+        // Directia perpendiculara pe linia dreapta, in grade (lng corectat cu cos(lat))
+        double dx = (endLng - startLng) * cosLat;
+        double dy = endLat - startLat;
+        for (int i = 0; i < waypointCount; i++) {
+            double t = (double) i / (waypointCount - 1);
+            double offset = Math.sin(Math.PI * t) * MAX_DETOUR * (random.nextDouble() * 2 - 1);
+            wLat[i] = startLat + dy * t + dx * offset;
+            wLng[i] = startLng + (dx * t - dy * offset) / cosLat;
+        }
+
+        double[] legStart = new double[waypointCount];
+        for (int i = 1; i < waypointCount; i++) {
+            legStart[i] = legStart[i - 1] + GeoUtils.haversineMeters(wLat[i - 1], wLng[i - 1], wLat[i], wLng[i]);
+        }
+        double length = legStart[waypointCount - 1];
+
+        int points = (int) Math.max(2, Math.min(maxPoints, Math.ceil(length / targetStepMeters) + 1));
+        double step = length / (points - 1);
+        float[] lats = new float[points];
+        float[] lngs = new float[points];
+        int leg = 0;
+        for (int i = 0; i < points; i++) {
+            double distance = Math.min(i * step, length);
+            while (leg < waypointCount - 2 && legStart[leg + 1] < distance) {
+                leg++;
+            }
+            double legLength = legStart[leg + 1] - legStart[leg];
+            double t = legLength > 0 ? (distance - legStart[leg]) / legLength : 0;
+            lats[i] = (float) (wLat[leg] + (wLat[leg + 1] - wLat[leg]) * t);
+            lngs[i] = (float) (wLng[leg] + (wLng[leg + 1] - wLng[leg]) * t);
+        }
+        return new RoutePolyline(lats, lngs, step, length);
+    }
+
+    /**
+     * Position at a distance along the route (clamped to the ends), written into out[0] = lat, out[1] = lng
+     */
+    public void positionAt(double distanceMeters, double[] out) {
+        int last = lats.length - 1;
+        if (stepMeters <= 0 || distanceMeters >= lengthMeters) {
+            out[0] = lats[last];
+            out[1] = lngs[last];
+            return;
+        }
+        double d = Math.max(0, distanceMeters);
+        int index = Math.min((int) (d / stepMeters), last - 1);
+        double t = (d - index * stepMeters) / stepMeters;
+        out[0] = lats[index] + (lats[index + 1] - lats[index]) * t;
+        out[1] = lngs[index] + (lngs[index + 1] - lngs[index]) * t;
+    }
+
+    /**
+     * Distance along the route of the point closest to (lat, lng) - where a vehicle already on the road is
+     * Linear scan over the segments (once per route), in a local equirectangular projection.
+     */
+    public double distanceAlong(double lat, double lng) {
+        double cosLat = Math.cos(Math.toRadians(lat));
+        double best = Double.MAX_VALUE;
+        double bestDistance = 0;
+        for (int i = 0; i < lats.length - 1; i++) {
+            double ax = lngs[i] * cosLat;
+            double ay = lats[i];
+            double dx = lngs[i + 1] * cosLat - ax;
+            double dy = lats[i + 1] - ay;
+            double px = lng * cosLat - ax;
+            double py = lat - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared)) : 0;
+            double ex = px - t * dx;
+            double ey = py - t * dy;
+            double error = ex * ex + ey * ey;
+            if (error < best) {
+                best = error;
+                bestDistance = (i + t) * stepMeters;
+            }
+        }
+        return Math.min(bestDistance, lengthMeters);
+    }
+
+    public double getLengthMeters() {
+        return lengthMeters;
+    }
+
+    public int getPointCount() {
+        return lats.length;
+    }
+}
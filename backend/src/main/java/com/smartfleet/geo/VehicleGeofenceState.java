@@ -0,0 +1,166 @@
+package com.smartfleet.geo;
+
+import java.util.Arrays;
+
+/**
+ * Geofence state of one vehicle: the zones it is confirmed inside plus pending transitions
+ * Kept in a few small primitive arrays (a vehicle is usually in 0-3 zones).
+ *
+ * A transition is only confirmed after it held for dwellMs (GPS jitter around a border is ignored);
+ * leaving also has a spatial hysteresis: the vehicle counts as inside until it is more than
+ * hysteresisMeters outside the zone. Not thread-safe - callers lock on the state object.
+ */
+public final class VehicleGeofenceState {
+
+    public interface TransitionListener {
+        void onTransition(long zoneId, boolean entered, long sinceMillis);
+    }
+
+    private long[] inside = new long[0];
+    // Tranzitii in asteptare: zona, intrare/iesire, de cand
+    private long[] pendingZones = new long[2];
+    private boolean[] pendingEnter = new boolean[2];
+    private long[] pendingSince = new long[2];
+    private int pendingCount;
+    private boolean initialized;
+    // Ultima pozitie evaluata - dwell-ul se poate confirma si fara o mostra noua
+    private double lastLat;
+    private double lastLng;
+
+    /**
+     * Apply one position; containing[0..count) are the zones containing it, sorted by id
+     */
+    public void evaluate(long[] containing, int count, GeofenceIndex index, double lat, double lng, long nowMillis,
+            double hysteresisMeters, long dwellMs, TransitionListener listener) {
+        lastLat = lat;
+        lastLng = lng;
+        if (!initialized) {
+            // Prima pozitie dupa pornire: starea curenta, fara evenimente
+            inside = Arrays.copyOf(containing, count);
+            initialized = true;
+            return;
+        }
+
+        // Iesiri: zone confirmate in care punctul nu mai e (dincolo de banda de histerezis)
+        for (int i = 0; i < inside.length; i++) {
+            long zoneId = inside[i];
+            if (Arrays.binarySearch(containing, 0, count, zoneId) >= 0) {
+                cancelPending(zoneId);
+                continue;
+            }
+            GeofenceIndex.Zone zone = index.zone(zoneId);
+            if (zone == null) {
+                // Zona stearsa / dezactivata - nu e o iesire reala
+                remove(zoneId);
+                cancelPending(zoneId);
+                i--;
+                continue;
+            }
+            if (zone.distanceOutsideMeters(lat, lng) <= hysteresisMeters) {
+                cancelPending(zoneId);
+                continue;
+            }
+            long since = pending(zoneId, false, nowMillis);
+            if (nowMillis - since >= dwellMs) {
+                remove(zoneId);
+                cancelPending(zoneId);
+                i--;
+                listener.onTransition(zoneId, false, since);
+            }
+        }
+
+        // Intrari: zone noi care contin punctul
+        for (int i = 0; i < count; i++) {
+            long zoneId = containing[i];
+            if (Arrays.binarySearch(inside, zoneId) >= 0)
+                continue;
+            long since = pending(zoneId, true, nowMillis);
+            if (nowMillis - since >= dwellMs) {
+                add(zoneId);
+                cancelPending(zoneId);
+                listener.onTransition(zoneId, true, since);
+            }
+        }
+
+        // Intrari abandonate (a iesit inainte de dwell)
+        for (int i = pendingCount - 1; i >= 0; i--) {
+            if (pendingEnter[i] && Arrays.binarySearch(containing, 0, count, pendingZones[i]) < 0)
+                removePendingAt(i);
+        }
+    }
+
+    public long[] getInside() {
+        return inside;
+    }
+
+    public boolean isInside(long zoneId) {
+        return Arrays.binarySearch(inside, zoneId) >= 0;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public double getLastLat() {
+        return lastLat;
+    }
+
+    public double getLastLng() {
+        return lastLng;
+    }
+
+    private long pending(long zoneId, boolean enter, long nowMillis) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingZones[i] == zoneId) {
+                if (pendingEnter[i] == enter)
+                    return pendingSince[i];
+                pendingEnter[i] = enter;
+                pendingSince[i] = nowMillis;
+                return nowMillis;
+            }
+        }
+        if (pendingCount == pendingZones.length) {
+            pendingZones = Arrays.copyOf(pendingZones, pendingCount * 2);
+            pendingEnter = Arrays.copyOf(pendingEnter, pendingCount * 2);
+            pendingSince = Arrays.copyOf(pendingSince, pendingCount * 2);
+        }
+        pendingZones[pendingCount] = zoneId;
+        pendingEnter[pendingCount] = enter;
+        pendingSince[pendingCount] = nowMillis;
+        pendingCount++;
+        return nowMillis;
+    }
+
+    private void cancelPending(long zoneId) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingZones[i] == zoneId) {
+                removePendingAt(i);
+                return;
+            }
+        }
+    }
+
+    private void removePendingAt(int i) {
+        pendingCount--;
+        pendingZones[i] = pendingZones[pendingCount];
+        pendingEnter[i] = pendingEnter[pendingCount];
+        pendingSince[i] = pendingSince[pendingCount];
+    }
+
+    private void add(long zoneId) {
+        long[] next = Arrays.copyOf(inside, inside.length + 1);
+        next[inside.length] = zoneId;
+        Arrays.sort(next);
+        inside = next;
+    }
+
+    private void remove(long zoneId) {
+        int position = Arrays.binarySearch(inside, zoneId);
+        if (position < 0)
+            return;
+        long[] next = new long[inside.length - 1];
+        System.arraycopy(inside, 0, next, 0, position);
+        System.arraycopy(inside, position + 1, next, position, inside.length - position - 1);
+        inside = next;
+    }
+}
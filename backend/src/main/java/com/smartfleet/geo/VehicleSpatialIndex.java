@@ -0,0 +1,320 @@
+package com.smartfleet.geo;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Live spatial index of vehicle positions: a uniform lat/lng grid of small cells
+ * Every cell keeps its vehicles in flat arrays (id, lat, lng), so queries never touch the DTOs.
+ *
+ * Updates for one vehicle are serialized (ConcurrentHashMap.compute on the vehicle id), cells are
+ * locked individually; readers copy a cell under its lock. Queries only visit the cells around
+ * the point / inside the box, or all non-empty cells when that is cheaper.
+ */
+public final class VehicleSpatialIndex {
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoUtils.EARTH_RADIUS_M);
+
+    public interface PointVisitor {
+        void accept(long id, double lat, double lng);
+    }
+
+    private final double cellDegrees;
+    private final long lngCells;
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final Map<Long, Long> vehicleCells = new ConcurrentHashMap<>();
+
+    public VehicleSpatialIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.lngCells = (long) Math.ceil(360 / cellDegrees) + 1;
+    }
+
+    /**
+     * Insert or move a vehicle
+     */
+    public void update(long id, double lat, double lng) {
+        long key = cellKey(latIndex(lat), lngIndex(lng));
+        vehicleCells.compute(id, (vehicleId, previous) -> {
+            if (previous != null && previous == key) {
+                cells.computeIfPresent(key, (k, cell) -> {
+                    cell.move(id, lat, lng);
+                    return cell;
+                });
+                return previous;
+            }
+            if (previous != null)
+                removeFromCell(previous, id);
+            cells.compute(key, (k, cell) -> {
+                Cell target = cell != null ? cell : new Cell();
+                target.add(id, lat, lng);
+                return target;
+            });
+            return key;
+        });
+    }
+
+    public void remove(long id) {
+        vehicleCells.computeIfPresent(id, (vehicleId, previous) -> {
+            removeFromCell(previous, id);
+            return null;
+        });
+    }
+
+    public int size() {
+        return vehicleCells.size();
+    }
+
+    /**
+     * The k vehicles closest to the point (haversine) that pass the filter, nearest first
+     * Fills outIds / outMeters (length >= k) and returns how many were found.
+     * The filter is only called for vehicles that would make it into the current top k.
+     */
+    public int nearest(double lat, double lng, int k, LongPredicate filter, long[] outIds, double[] outMeters) {
+        if (k <= 0)
+            return 0;
+        Heap heap = new Heap(k);
+        int centerLat = latIndex(lat);
+        int centerLng = lngIndex(lng);
+        Scratch scratch = new Scratch();
+
+        for (int ring = 0; ; ring++) {
+            long ringCells = (2L * ring + 1) * (2L * ring + 1);
+            if (ringCells > cells.size()) {
+                // Inelul ar acoperi mai multe celule decat exista - scanam toate celulele nevide o data
+                heap.clear();
+                for (Cell cell : cells.values())
+                    collect(cell, lat, lng, filter, heap, scratch);
+                break;
+            }
+            if (ring == 0) {
+                collectCell(centerLat, centerLng, lat, lng, filter, heap, scratch);
+            } else {
+                for (int dLng = -ring; dLng <= ring; dLng++) {
+                    collectCell(centerLat - ring, centerLng + dLng, lat, lng, filter, heap, scratch);
+                    collectCell(centerLat + ring, centerLng + dLng, lat, lng, filter, heap, scratch);
+                }
+                for (int dLat = -ring + 1; dLat <= ring - 1; dLat++) {
+                    collectCell(centerLat + dLat, centerLng - ring, lat, lng, filter, heap, scratch);
+                    collectCell(centerLat + dLat, centerLng + ring, lat, lng, filter, heap, scratch);
+                }
+            }
+            // Orice vehicul din afara inelelor 0..ring e la cel putin ring celule distanta
+            if (heap.size == k && heap.worst() <= minDistanceOutside(lat, ring))
+                break;
+        }
+        return heap.drainSorted(outIds, outMeters);
+    }
+
+    /**
+     * Visit every vehicle inside the box (minLng > maxLng is not supported - no antimeridian wrap)
+     */
+    public void forEachInBox(double minLat, double minLng, double maxLat, double maxLng, PointVisitor visitor) {
+        int fromLat = latIndex(minLat);
+        int toLat = latIndex(maxLat);
+        int fromLng = lngIndex(minLng);
+        int toLng = lngIndex(maxLng);
+        Scratch scratch = new Scratch();
+        long boxCells = (long) (toLat - fromLat + 1) * (toLng - fromLng + 1);
+        if (boxCells > cells.size()) {
+            for (Cell cell : cells.values())
+                visitInBox(cell, minLat, minLng, maxLat, maxLng, visitor, scratch);
+            return;
+        }
+        for (int latIdx = fromLat; latIdx <= toLat; latIdx++) {
+            for (int lngIdx = fromLng; lngIdx <= toLng; lngIdx++) {
+                Cell cell = cells.get(cellKey(latIdx, lngIdx));
+                if (cell != null)
+                    visitInBox(cell, minLat, minLng, maxLat, maxLng, visitor, scratch);
+            }
+        }
+    }
+
+    private void collectCell(int latIdx, int lngIdx, double lat, double lng, LongPredicate filter, Heap heap,
+            Scratch scratch) {
+        Cell cell = cells.get(cellKey(latIdx, lngIdx));
+        if (cell != null)
+            collect(cell, lat, lng, filter, heap, scratch);
+    }
+
+    private static void collect(Cell cell, double lat, double lng, LongPredicate filter, Heap heap, Scratch scratch) {
+        int count = cell.copyTo(scratch);
+        for (int i = 0; i < count; i++) {
+            double meters = GeoUtils.haversineMeters(lat, lng, scratch.lats[i], scratch.lngs[i]);
+            if (heap.accepts(meters) && filter.test(scratch.ids[i]))
+                heap.offer(scratch.ids[i], meters);
+        }
+    }
+
+    private static void visitInBox(Cell cell, double minLat, double minLng, double maxLat, double maxLng,
+            PointVisitor visitor, Scratch scratch) {
+        int count = cell.copyTo(scratch);
+        for (int i = 0; i < count; i++) {
+            double lat = scratch.lats[i];
+            double lng = scratch.lngs[i];
+            if (lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng)
+                visitor.accept(scratch.ids[i], lat, lng);
+        }
+    }
+
+    // Limita inferioara (conservatoare) a distantei pana la orice celula din afara inelelor 0..ring
+    private double minDistanceOutside(double lat, int ring) {
+        double farthestLat = Math.min(89.9, Math.abs(lat) + (ring + 1) * cellDegrees);
+        return ring * cellDegrees * METERS_PER_DEGREE * Math.cos(Math.toRadians(farthestLat)) * 0.999;
+    }
+
+    private void removeFromCell(long key, long id) {
+        cells.computeIfPresent(key, (k, cell) -> cell.remove(id) ? null : cell);
+    }
+
+    private int latIndex(double lat) {
+        return (int) Math.floor((lat + 90) / cellDegrees);
+    }
+
+    private int lngIndex(double lng) {
+        return (int) Math.floor((lng + 180) / cellDegrees);
+    }
+
+    // Cheie pe randuri (nu lat << 32 | lng): Long.hashCode ar fi lat ^ lng, cu coliziuni masive in HashMap
+    private long cellKey(int latIdx, int lngIdx) {
+        return latIdx * lngCells + lngIdx;
+    }
+
+    private static final class Cell {
+        private long[] ids = new long[4];
+        private double[] lats = new double[4];
+        private double[] lngs = new double[4];
+        private int count;
+
+        synchronized void add(long id, double lat, double lng) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                lats = Arrays.copyOf(lats, count * 2);
+                lngs = Arrays.copyOf(lngs, count * 2);
+            }
+            ids[count] = id;
+            lats[count] = lat;
+            lngs[count] = lng;
+            count++;
+        }
+
+        synchronized void move(long id, double lat, double lng) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == id) {
+                    lats[i] = lat;
+                    lngs[i] = lng;
+                    return;
+                }
+            }
+        }
+
+        // Returns true when the cell became empty
+        synchronized boolean remove(long id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == id) {
+                    count--;
+                    ids[i] = ids[count];
+                    lats[i] = lats[count];
+                    lngs[i] = lngs[count];
+                    break;
+                }
+            }
+            return count == 0;
+        }
+
+        synchronized int copyTo(Scratch scratch) {
+            scratch.ensure(count);
+            System.arraycopy(ids, 0, scratch.ids, 0, count);
+            System.arraycopy(lats, 0, scratch.lats, 0, count);
+            System.arraycopy(lngs, 0, scratch.lngs, 0, count);
+            return count;
+        }
+    }
+
+    private static final class Scratch {
+        long[] ids = new long[64];
+        double[] lats = new double[64];
+        double[] lngs = new double[64];
+
+        void ensure(int size) {
+            if (ids.length < size) {
+                int capacity = Math.max(size, ids.length * 2);
+                ids = new long[capacity];
+                lats = new double[capacity];
+                lngs = new double[capacity];
+            }
+        }
+    }
+
+    // Max-heap pe distanta: radacina e cel mai departat dintre cei k pastrati
+    private static final class Heap {
+        final long[] ids;
+        final double[] meters;
+        int size;
+
+        Heap(int k) {
+            ids = new long[k];
+            meters = new double[k];
+        }
+
+        boolean accepts(double distance) {
+            return size < ids.length || distance < meters[0];
+        }
+
+        double worst() {
+            return meters[0];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void offer(long id, double distance) {
+            if (size < ids.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) / 2;
+                    if (meters[parent] >= distance)
+                        break;
+                    ids[i] = ids[parent];
+                    meters[i] = meters[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                meters[i] = distance;
+            } else {
+                siftDown(0, id, distance, size);
+            }
+        }
+
+        private void siftDown(int i, long id, double distance, int n) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n)
+                    break;
+                if (child + 1 < n && meters[child + 1] > meters[child])
+                    child++;
+                if (meters[child] <= distance)
+                    break;
+                ids[i] = ids[child];
+                meters[i] = meters[child];
+                i = child;
+            }
+            ids[i] = id;
+            meters[i] = distance;
+        }
+
+        // Scoate pe rand maximul si il pune la final: rezultatul e crescator dupa distanta
+        int drainSorted(long[] outIds, double[] outMeters) {
+            int total = size;
+            for (int n = size; n > 0; n--) {
+                outIds[n - 1] = ids[0];
+                outMeters[n - 1] = meters[0];
+                siftDown(0, ids[n - 1], meters[n - 1], n - 1);
+            }
+            size = 0;
+            return total;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.smartfleet.geo;
+
+/**
+ * Web Mercator (EPSG:3857) helpers in normalized world coordinates: x, y in [0, 1), y grows southwards
+ * Tile (z, x, y) covers [x / 2^z, (x + 1) / 2^z) - the same scheme as OSM / Leaflet tiles.
+ */
+public final class WebMercator {
+
+    public static final double MAX_LAT = 85.05112878;
+
+    private WebMercator() {
+    }
+
+    public static double x(double lng) {
+        return (Math.max(-180, Math.min(180, lng)) + 180) / 360;
+    }
+
+    public static double y(double lat) {
+        double sinLat = Math.sin(Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat))));
+        return 0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI);
+    }
+
+    public static double lng(double x) {
+        return x * 360 - 180;
+    }
+
+    public static double lat(double y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+    }
+
+    /**
+     * Lat/lng bounds {minLat, minLng, maxLat, maxLng} of a tile, grown by buffer (fraction of the tile size)
+     */
+    public static double[] tileBounds(int z, long x, long y, double buffer) {
+        double size = 1.0 / (1L << z);
+        double minX = Math.max(0, (x - buffer) * size);
+        double maxX = Math.min(1, (x + 1 + buffer) * size);
+        double minY = Math.max(0, (y - buffer) * size);
+        double maxY = Math.min(1, (y + 1 + buffer) * size);
+        return new double[] {lat(maxY), lng(minX), lat(minY), lng(maxX)};
+    }
+
+    public static boolean isValidTile(int z, long x, long y) {
+        return z >= 0 && z <= 24 && x >= 0 && y >= 0 && x < (1L << z) && y < (1L << z);
+    }
+}
@@ -3,6 +3,7 @@ package com.smartfleet.repository;
 import com.smartfleet.entity.Driver;
 import com.smartfleet.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -27,4 +28,8 @@ public interface DriverRepository extends JpaRepository<Driver, Long> {
 
     // Find driver by vehicle
     Optional<Driver> findByVehicleId(Long vehicleId);
+
+    // All vehicles that already have a driver, in one query (instead of existsByVehicleId per vehicle)
+    @Query("SELECT d.vehicle.id FROM Driver d WHERE d.vehicle IS NOT NULL")
+    List<Long> findAssignedVehicleIds();
 }
@@ -0,0 +1,73 @@
+package com.smartfleet.repository;
+
+import com.smartfleet.dto.GeofenceEventDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC repository for the append-only geofence_event log (one row per confirmed ENTER / EXIT)
+ * The table is created from the DDL in the README, like geofence_zone.
+ */
+@Repository
+@RequiredArgsConstructor
+public class GeofenceEventRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO geofence_event (vehicle_id, zone_id, zone_name, type, lat, lng, occurred_at, detected_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final RowMapper<GeofenceEventDTO> ROW_MAPPER = (rs, rowNum) -> new GeofenceEventDTO(
+            rs.getLong("id"),
+            rs.getLong("vehicle_id"),
+            rs.getLong("zone_id"),
+            rs.getString("zone_name"),
+            rs.getString("type"),
+            rs.getDouble("lat"),
+            rs.getDouble("lng"),
+            rs.getTimestamp("occurred_at").toLocalDateTime(),
+            rs.getTimestamp("detected_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Append all events as one JDBC batch
+     */
+    public void batchInsert(List<GeofenceEventDTO> events) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(), (ps, e) -> {
+            ps.setLong(1, e.getVehicleId());
+            ps.setLong(2, e.getZoneId());
+            ps.setString(3, e.getZoneName());
+            ps.setString(4, e.getType());
+            ps.setDouble(5, e.getLat());
+            ps.setDouble(6, e.getLng());
+            ps.setTimestamp(7, Timestamp.valueOf(e.getOccurredAt()));
+            ps.setTimestamp(8, Timestamp.valueOf(e.getDetectedAt()));
+        });
+    }
+
+    /**
+     * Most recent events first, optionally only for one vehicle and/or zone
+     */
+    public List<GeofenceEventDTO> findRecent(Long vehicleId, Long zoneId, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM geofence_event WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (vehicleId != null) {
+            sql.append(" AND vehicle_id = ?");
+            args.add(vehicleId);
+        }
+        if (zoneId != null) {
+            sql.append(" AND zone_id = ?");
+            args.add(zoneId);
+        }
+        sql.append(" ORDER BY occurred_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+    }
+}
@@ -0,0 +1,15 @@
+package com.smartfleet.repository;
+
+import com.smartfleet.entity.GeofenceZone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for GeofenceZone entity
+ */
+@Repository
+public interface GeofenceZoneRepository extends JpaRepository<GeofenceZone, Long> {
+    List<GeofenceZone> findByActiveTrue();
+}
@@ -0,0 +1,145 @@
+package com.smartfleet.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC repository for position_rollup: position samples pre-aggregated per time bucket (hour 'H' / day 'D'),
+ * Web Mercator grid level and cell, and vehicle type - the heatmap reads these instead of raw history
+ * idle_ms = time spent idle in the cell: each idle sample weighs the time until the vehicle's next sample (capped).
+ */
+@Repository
+@RequiredArgsConstructor
+public class PositionRollupRepository {
+
+    public interface CellHandler {
+        void accept(long x, long y, long samples, long idleMillis);
+    }
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS position_rollup (
+                granularity  CHAR(1)     NOT NULL,
+                level        SMALLINT    NOT NULL,
+                bucket_start TIMESTAMP   NOT NULL,
+                cell_x       INTEGER     NOT NULL,
+                cell_y       INTEGER     NOT NULL,
+                vehicle_type VARCHAR(50) NOT NULL,
+                samples      BIGINT      NOT NULL,
+                idle_ms      BIGINT      NOT NULL,
+                PRIMARY KEY (granularity, level, bucket_start, cell_x, cell_y, vehicle_type)
+            )
+            """;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO position_rollup (granularity, level, bucket_start, cell_x, cell_y, vehicle_type, samples, idle_ms)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (granularity, level, bucket_start, cell_x, cell_y, vehicle_type)
+            DO UPDATE SET samples = position_rollup.samples + EXCLUDED.samples,
+                          idle_ms = position_rollup.idle_ms + EXCLUDED.idle_ms
+            """;
+
+    private static final String CELLS_SQL = """
+            SELECT cell_x >> ? AS x, cell_y >> ? AS y, SUM(samples) AS samples, SUM(idle_ms) AS idle_ms
+              FROM position_rollup
+             WHERE granularity = ? AND level = ? AND bucket_start >= ? AND bucket_start < ?
+               AND cell_x BETWEEN ? AND ? AND cell_y BETWEEN ? AND ?
+            """;
+
+    private static final String DELETE_SQL =
+            "DELETE FROM position_rollup WHERE granularity = ? AND bucket_start >= ? AND bucket_start < ?";
+
+    private static final String DELETE_OLDER_SQL =
+            "DELETE FROM position_rollup WHERE granularity = ? AND bucket_start < ?";
+
+    // Recalculare din istoric: aceeasi proiectie Web Mercator ca WebMercator.x / y, in SQL
+    // dwell_ms = timpul pana la urmatoarea mostra a vehiculului (plafonat); se citeste si dupa capat pentru LEAD
+    private static final String REBUILD_SQL = """
+            INSERT INTO position_rollup (granularity, level, bucket_start, cell_x, cell_y, vehicle_type, samples, idle_ms)
+            SELECT ?, ?, date_trunc(?, p.recorded_at),
+                   LEAST(GREATEST(FLOOR((p.lng + 180) / 360 * ?), 0), ? - 1)::int,
+                   LEAST(GREATEST(FLOOR((0.5 - LN((1 + SIN(RADIANS(LEAST(GREATEST(p.lat, -85.0511), 85.0511))))
+                                               / (1 - SIN(RADIANS(LEAST(GREATEST(p.lat, -85.0511), 85.0511)))))
+                                        / (4 * PI())) * ?), 0), ? - 1)::int,
+                   COALESCE(v.type, ''), COUNT(*),
+                   COALESCE(SUM(p.dwell_ms) FILTER (WHERE p.status = 'IDLE' OR p.speed < ?), 0)::bigint
+              FROM (SELECT vehicle_id, recorded_at, lat, lng, speed, status,
+                           LEAST(COALESCE(EXTRACT(EPOCH FROM LEAD(recorded_at)
+                                 OVER (PARTITION BY vehicle_id ORDER BY recorded_at) - recorded_at) * 1000, 0), ?)
+                               AS dwell_ms
+                      FROM vehicle_position
+                     WHERE recorded_at >= ? AND recorded_at < ?) p
+              LEFT JOIN vehicle v ON v.id = p.vehicle_id
+             WHERE p.recorded_at < ?
+             GROUP BY 3, 4, 5, 6
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createTable() {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+    }
+
+    /**
+     * Add the rows (granularity, level, bucketStart, cellX, cellY, vehicleType, samples, idleMillis) in one batch
+     */
+    public void batchUpsert(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+
+    /**
+     * Sum the cells of one level in [from, to), merged by 2^shift per axis, inside the cell range
+     */
+    public void sumCells(char granularity, int level, int shift, LocalDateTime from, LocalDateTime to, long minX,
+            long maxX, long minY, long maxY, String vehicleType, CellHandler handler) {
+        List<Object> args = new ArrayList<>(List.of(shift, shift, String.valueOf(granularity), level,
+                Timestamp.valueOf(from), Timestamp.valueOf(to), minX, maxX, minY, maxY));
+        String sql = CELLS_SQL;
+        if (vehicleType != null) {
+            sql += " AND vehicle_type = ?";
+            args.add(vehicleType);
+        }
+        jdbcTemplate.query(sql + " GROUP BY 1, 2", rs -> {
+            handler.accept(rs.getLong("x"), rs.getLong("y"), rs.getLong("samples"), rs.getLong("idle_ms"));
+        }, args.toArray());
+    }
+
+    /**
+     * Recompute both granularities of [from, to) from vehicle_position, for every level, in one transaction
+     * (the old rows stay visible to readers until the new ones are committed); a sample is idle for at most
+     * maxDwellMillis, so the rows up to to + maxDwellMillis are read to find the next sample of each vehicle
+     */
+    @Transactional
+    public int rebuild(LocalDateTime from, LocalDateTime to, int[] levels, double idleSpeedKmh, long maxDwellMillis) {
+        return rebuild('H', from, to, levels, idleSpeedKmh, maxDwellMillis)
+                + rebuild('D', from, to, levels, idleSpeedKmh, maxDwellMillis);
+    }
+
+    /**
+     * Delete the rows of one granularity older than the given bucket start
+     */
+    public int deleteOlderThan(char granularity, LocalDateTime before) {
+        return jdbcTemplate.update(DELETE_OLDER_SQL, String.valueOf(granularity), Timestamp.valueOf(before));
+    }
+
+    private int rebuild(char granularity, LocalDateTime from, LocalDateTime to, int[] levels, double idleSpeedKmh,
+            long maxDwellMillis) {
+        String unit = granularity == 'D' ? "day" : "hour";
+        jdbcTemplate.update(DELETE_SQL, String.valueOf(granularity), Timestamp.valueOf(from), Timestamp.valueOf(to));
+        Timestamp readUntil = Timestamp.valueOf(to.plus(Duration.ofMillis(maxDwellMillis)));
+        int rows = 0;
+        for (int level : levels) {
+            long size = 1L << level;
+            rows += jdbcTemplate.update(REBUILD_SQL, String.valueOf(granularity), level, unit, size, size, size, size,
+                    idleSpeedKmh, maxDwellMillis, Timestamp.valueOf(from), readUntil, Timestamp.valueOf(to));
+        }
+        return rows;
+    }
+}
@@ -1,7 +1,10 @@
 package com.smartfleet.repository;
 
+import com.smartfleet.dto.ActiveTripDTO;
 import com.smartfleet.entity.Trip;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -27,6 +30,13 @@ public interface TripRepository extends JpaRepository<Trip, Long> {
      */
     List<Trip> findByStatus(String status);
 
+    /**
+     * Vehicle and route endpoints of the trips with the given status (no Trip / Vehicle entities loaded)
+     */
+    @Query("SELECT new com.smartfleet.dto.ActiveTripDTO(t.id, t.vehicle.id, t.startLat, t.startLng, t.endLat, t.endLng) "
+            + "FROM Trip t WHERE t.status = :status AND t.vehicle IS NOT NULL ORDER BY t.id")
+    List<ActiveTripDTO> findActiveTripsByStatus(@Param("status") String status);
+
     /**
      * Find trips for a specific vehicle
      */
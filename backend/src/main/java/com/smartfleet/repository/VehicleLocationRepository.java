@@ -0,0 +1,71 @@
+package com.smartfleet.repository;
+
+import com.smartfleet.dto.VehicleResponseDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC repository for high-volume vehicle position writes
+ * Bypasses JPA so a whole batch of samples costs one round trip instead of findById + save per sample
+ */
+@Repository
+@RequiredArgsConstructor
+public class VehicleLocationRepository {
+
+    // Starea din memorie (statusul e deja rezolvat de VehiclePositionStore); kilometrajul se scrie si el,
+    // altfel un vehicul simulat pus in dirty dupa o scriere esuata si-ar pierde kilometrii
+    private static final String UPDATE_STATE_SQL = """
+            UPDATE vehicle
+               SET lat = ?,
+                   lng = ?,
+                   total_km = COALESCE(CAST(? AS DOUBLE PRECISION), total_km),
+                   status = COALESCE(CAST(? AS VARCHAR), status)
+             WHERE id = ?
+            """;
+
+    private static final String UPDATE_SIMULATED_SQL = """
+            UPDATE vehicle
+               SET lat = ?,
+                   lng = ?,
+                   total_km = ?,
+                   status = ?
+             WHERE id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Write the in-memory state (position, mileage, status) of many vehicles as a single JDBC batch
+     * Returns the number of updated rows for each vehicle (0 = unknown vehicle)
+     */
+    public int[] batchUpdateState(List<VehicleResponseDTO> vehicles) {
+        if (vehicles.isEmpty())
+            return new int[0];
+        return jdbcTemplate.batchUpdate(UPDATE_STATE_SQL, vehicles, vehicles.size(), (ps, vehicle) -> {
+            ps.setDouble(1, vehicle.getLat());
+            ps.setDouble(2, vehicle.getLng());
+            ps.setObject(3, vehicle.getTotalKm(), Types.DOUBLE);
+            ps.setString(4, vehicle.getStatus());
+            ps.setLong(5, vehicle.getId());
+        })[0];
+    }
+
+    /**
+     * Write the state computed by the simulation (position, mileage, status) as a single JDBC batch
+     */
+    public int[] batchUpdateSimulated(List<VehicleResponseDTO> vehicles) {
+        if (vehicles.isEmpty())
+            return new int[0];
+        return jdbcTemplate.batchUpdate(UPDATE_SIMULATED_SQL, vehicles, vehicles.size(), (ps, vehicle) -> {
+            ps.setDouble(1, vehicle.getLat());
+            ps.setDouble(2, vehicle.getLng());
+            ps.setDouble(3, vehicle.getTotalKm());
+            ps.setString(4, vehicle.getStatus());
+            ps.setLong(5, vehicle.getId());
+        })[0];
+    }
+}
@@ -0,0 +1,160 @@
+package com.smartfleet.repository;
+
+import com.smartfleet.dto.VehiclePositionDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC repository for the append-only vehicle_position history
+ * The table is partitioned by day on recorded_at (vehicle_position_yyyyMMdd),
+ * so time-window queries only touch the partitions they need and retention is a DROP TABLE.
+ */
+@Repository
+@RequiredArgsConstructor
+public class VehiclePositionHistoryRepository {
+
+    public static final String PARTITION_PREFIX = "vehicle_position_";
+    public static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String CREATE_PARENT_SQL = """
+            CREATE TABLE IF NOT EXISTS vehicle_position (
+                vehicle_id  BIGINT           NOT NULL,
+                recorded_at TIMESTAMP        NOT NULL,
+                lat         DOUBLE PRECISION NOT NULL,
+                lng         DOUBLE PRECISION NOT NULL,
+                speed       DOUBLE PRECISION,
+                status      VARCHAR(20)
+            ) PARTITION BY RANGE (recorded_at)
+            """;
+
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_vehicle_position_vehicle_time ON vehicle_position (vehicle_id, recorded_at)";
+
+    // Index spatial pentru tile-urile de istoric (GiST pe point(lng, lat), fara PostGIS)
+    private static final String CREATE_POINT_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_vehicle_position_point ON vehicle_position USING gist (point(lng, lat))";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO vehicle_position (vehicle_id, recorded_at, lat, lng, speed, status) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String TRACK_SQL = """
+            SELECT vehicle_id, recorded_at, lat, lng, speed, status
+              FROM vehicle_position
+             WHERE vehicle_id = ? AND recorded_at >= ? AND recorded_at < ?
+             ORDER BY recorded_at
+             LIMIT ?
+            """;
+
+    private static final String POSITION_AT_SQL = """
+            SELECT vehicle_id, recorded_at, lat, lng, speed, status
+              FROM vehicle_position
+             WHERE vehicle_id = ? AND recorded_at > ? AND recorded_at <= ?
+             ORDER BY recorded_at DESC
+             LIMIT 1
+            """;
+
+    private static final String POINTS_IN_BOX_SQL = """
+            SELECT vehicle_id, recorded_at, lat, lng, speed, status
+              FROM vehicle_position
+             WHERE recorded_at >= ? AND recorded_at < ?
+               AND point(lng, lat) <@ box(point(?, ?), point(?, ?))
+            """;
+
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT c.relname
+              FROM pg_inherits i
+              JOIN pg_class c ON c.oid = i.inhrelid
+              JOIN pg_class p ON p.oid = i.inhparent
+             WHERE p.relname = 'vehicle_position'
+            """;
+
+    private static final RowMapper<VehiclePositionDTO> ROW_MAPPER = (rs, rowNum) -> new VehiclePositionDTO(
+            rs.getLong("vehicle_id"),
+            rs.getTimestamp("recorded_at").toLocalDateTime(),
+            rs.getDouble("lat"),
+            rs.getDouble("lng"),
+            (Double) rs.getObject("speed"),
+            rs.getString("status"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createParentTable() {
+        jdbcTemplate.execute(CREATE_PARENT_SQL);
+        jdbcTemplate.execute(CREATE_INDEX_SQL);
+        jdbcTemplate.execute(CREATE_POINT_INDEX_SQL);
+    }
+
+    /**
+     * Create the daily partition [day, day + 1) if it does not exist yet
+     */
+    public void createPartition(LocalDate day) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(day)
+                + " PARTITION OF vehicle_position FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+    }
+
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class);
+    }
+
+    public void dropPartition(LocalDate day) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(day));
+    }
+
+    /**
+     * Append all points as one JDBC batch (rewritten into multi-row INSERTs by the driver)
+     */
+    public void batchInsert(List<VehiclePositionDTO> points) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, points, points.size(), (ps, p) -> {
+            ps.setLong(1, p.getVehicleId());
+            ps.setTimestamp(2, Timestamp.valueOf(p.getRecordedAt()));
+            ps.setDouble(3, p.getLat());
+            ps.setDouble(4, p.getLng());
+            if (p.getSpeed() != null)
+                ps.setDouble(5, p.getSpeed());
+            else
+                ps.setNull(5, Types.DOUBLE);
+            ps.setString(6, p.getStatus());
+        });
+    }
+
+    public List<VehiclePositionDTO> findTrack(Long vehicleId, LocalDateTime from, LocalDateTime to, int limit) {
+        return jdbcTemplate.query(TRACK_SQL, ROW_MAPPER,
+                vehicleId, Timestamp.valueOf(from), Timestamp.valueOf(to), limit);
+    }
+
+    /**
+     * Points of [from, to) inside a bounding box (optionally of one vehicle), ordered by vehicle then time
+     */
+    public List<VehiclePositionDTO> findInBox(LocalDateTime from, LocalDateTime to, double minLat, double minLng,
+            double maxLat, double maxLng, Long vehicleId, int limit) {
+        if (vehicleId != null) {
+            return jdbcTemplate.query(
+                    POINTS_IN_BOX_SQL + " AND vehicle_id = ? ORDER BY vehicle_id, recorded_at LIMIT ?", ROW_MAPPER,
+                    Timestamp.valueOf(from), Timestamp.valueOf(to), minLng, minLat, maxLng, maxLat, vehicleId, limit);
+        }
+        return jdbcTemplate.query(POINTS_IN_BOX_SQL + " ORDER BY vehicle_id, recorded_at LIMIT ?", ROW_MAPPER,
+                Timestamp.valueOf(from), Timestamp.valueOf(to), minLng, minLat, maxLng, maxLat, limit);
+    }
+
+    /**
+     * Last known point at or before the given time, looking back at most until notBefore
+     */
+    public Optional<VehiclePositionDTO> findPositionAt(Long vehicleId, LocalDateTime at, LocalDateTime notBefore) {
+        return jdbcTemplate.query(POSITION_AT_SQL, ROW_MAPPER,
+                vehicleId, Timestamp.valueOf(notBefore), Timestamp.valueOf(at)).stream().findFirst();
+    }
+
+    public static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_SUFFIX);
+    }
+}
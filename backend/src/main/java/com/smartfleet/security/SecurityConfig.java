@@ -37,11 +37,12 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // 1. Endpoint-uri publice
                         .requestMatchers("/api/auth/**", "/api/test/**", "/api/setup/**").permitAll()
-                        .requestMatchers("/ws/**", "/error").permitAll()
+                        .requestMatchers("/ws/**", "/ws-telemetry", "/error").permitAll()
                         .requestMatchers("/uploads/**").permitAll()
 
                         // 2. CRITIC: Permitem SOFERILOR să actualizeze LOCATIA
                         .requestMatchers(HttpMethod.PUT, "/api/vehicles/*/location").hasAnyRole("ADMIN", "DRIVER")
+                        .requestMatchers(HttpMethod.POST, "/api/vehicles/locations/batch").hasAnyRole("ADMIN", "DRIVER")
 
                         // 3. Reguli generale pentru Vehicule
                         .requestMatchers(HttpMethod.GET, "/api/vehicles/**").hasAnyRole("ADMIN", "DRIVER")
@@ -54,6 +55,11 @@ public class SecurityConfig {
                         .requestMatchers("/api/drivers/**").hasAnyRole("ADMIN", "DRIVER")
                         .requestMatchers("/api/trips/**").hasAnyRole("ADMIN", "DRIVER")
                         .requestMatchers("/api/fuel-predictions/**").hasAnyRole("ADMIN", "DRIVER")
+                        .requestMatchers("/api/telemetry/**").hasRole("ADMIN")
+                        .requestMatchers("/api/simulation/**").hasRole("ADMIN")
+                        .requestMatchers("/api/geofences/**").hasAnyRole("ADMIN", "DRIVER")
+                        .requestMatchers(HttpMethod.GET, "/api/tiles/**").hasAnyRole("ADMIN", "DRIVER")
+                        .requestMatchers("/api/heatmap/**").hasRole("ADMIN")
 
                         // 5. Orice altceva cere autentificare
                         .anyRequest().authenticated())
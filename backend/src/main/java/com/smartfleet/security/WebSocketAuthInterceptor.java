@@ -0,0 +1,77 @@
+package com.smartfleet.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * STOMP interceptor that authenticates a WebSocket session ONCE, on CONNECT
+ * Trucks send "Authorization: Bearer <jwt>" as a native CONNECT header; the user is then attached
+ * to the session, so SEND frames on /app/** carry no token and need no JWT parsing.
+ * Dashboards may still connect anonymously - they only SUBSCRIBE to /topic.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketAuthInterceptor implements ChannelInterceptor {
+
+    private final JwtService jwtService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null)
+            return message;
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            authenticate(accessor);
+        } else if (StompCommand.SEND.equals(accessor.getCommand())) {
+            String destination = accessor.getDestination();
+            if (destination != null && destination.startsWith("/app/") && accessor.getUser() == null) {
+                throw new AccessDeniedException("Authentication required for " + destination);
+            }
+        }
+        return message;
+    }
+
+    private void authenticate(StompHeaderAccessor accessor) {
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer "))
+            return;
+
+        try {
+            String jwt = authHeader.substring(7);
+            String username = jwtService.extractUsername(jwt);
+            if (username == null || !jwtService.isTokenValid(jwt, username))
+                return;
+
+            String role = jwtService.extractRole(jwt);
+            if (role == null || role.isEmpty()) {
+                log.warn("No role found in JWT for WebSocket user: {}", username);
+                return;
+            }
+            if (!role.startsWith("ROLE_")) {
+                role = "ROLE_" + role;
+            }
+            if (!"ROLE_ADMIN".equals(role) && !"ROLE_DRIVER".equals(role))
+                return;
+
+            accessor.setUser(new UsernamePasswordAuthenticationToken(username, null,
+                    List.of(new SimpleGrantedAuthority(role))));
+            log.debug("WebSocket session {} authenticated as {} ({})", accessor.getSessionId(), username, role);
+        } catch (Exception e) {
+            log.error("Cannot authenticate WebSocket session: {}", e.getMessage());
+        }
+    }
+}
@@ -1,21 +1,42 @@
 package com.smartfleet.security;
 
+import com.smartfleet.websocket.SlowConsumerPolicy;
+import com.smartfleet.websocket.TileSubscriptionRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * WebSocket configuration for real-time updates using STOMP
+ * /topic - downstream (server -> dashboards), /app - upstream (trucks -> server, e.g. /app/telemetry),
+ * /user/queue/telemetry - per-truck replies (report interval hint)
+ * Outbound traffic is bounded per session; slow dashboards are handled by SlowConsumerPolicy.
  */
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+    private final TileSubscriptionRegistry tileSubscriptionRegistry;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    @Value("${app.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        // /topic/vehicles (toata flota) si /topic/vehicles/tile/{z}/{x}/{y} (doar o regiune), vezi TileSubscriptionRegistry
+        // /queue/telemetry - raspunsul catre un camion (reportIntervalMs), trimis pe /user/queue/telemetry
+        config.enableSimpleBroker("/topic", "/queue");
+        // Cadrele delta / per tile trebuie sa ajunga la fiecare client in ordinea in care au fost trimise
+        config.setPreservePublishOrder(true);
         config.setApplicationDestinationPrefixes("/app");
     }
 
@@ -24,6 +45,31 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+
+        // WebSocket "curat" (fara SockJS) pentru camioane / clienti non-browser
+        registry.addEndpoint("/ws-telemetry")
+                .setAllowedOriginPatterns("*");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // JWT-ul se verifica o singura data, la CONNECT; abonarile la tile-uri sunt validate si numarate
+        registration.interceptors(webSocketAuthInterceptor, tileSubscriptionRegistry);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Cadrele delta nu mai pleaca spre o sesiune ramasa in urma - o resincronizeaza urmatorul keyframe
+        registration.interceptors(slowConsumerPolicy);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Peste buffer (octeti neexpediati) sau peste timpul unui write blocat sesiunea e inchisa;
+        // buffer-ul e dimensionat dupa flota, sa incapa un keyframe complet (vezi SlowConsumerPolicy)
+        registration.setSendBufferSizeLimit(slowConsumerPolicy.getSendBufferLimitBytes())
+                .setSendTimeLimit(sendTimeLimitMs)
+                .addDecoratorFactory(slowConsumerPolicy);
     }
 
 }
@@ -0,0 +1,100 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.geo.GeoUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-vehicle dead-band filter for GPS samples + adaptive reporting rate hint
+ * A sample that moved less than min-distance-m from the last accepted one, kept the same status
+ * and came less than max-silence-s after it is only kept in memory (no DB write, no history,
+ * no broadcast). Vehicles that stay inside the dead-band long enough are told to report less often.
+ * State is written only by the telemetry consumer thread; the rate hint is read by request threads.
+ */
+@Component
+public class DeadBandFilter {
+
+    @Value("${app.telemetry.deadband.min-distance-m:15}")
+    private double minDistanceMeters;
+
+    @Value("${app.telemetry.deadband.max-silence-s:60}")
+    private long maxSilenceSeconds;
+
+    @Value("${app.telemetry.rate.idle-after-s:120}")
+    private long idleAfterSeconds;
+
+    @Value("${app.telemetry.rate.moving-interval-ms:2000}")
+    private long movingIntervalMs;
+
+    @Value("${app.telemetry.rate.idle-interval-ms:30000}")
+    private long idleIntervalMs;
+
+    private final Map<Long, State> states = new ConcurrentHashMap<>();
+
+    /**
+     * Returns true if the sample is significant and must be persisted / broadcast
+     * liveStatus = current status of the vehicle (it may have been changed by an admin, the simulation or a replay
+     * since the last accepted sample); a sample that changes it always passes.
+     */
+    public boolean accept(LocationSampleDTO sample, String liveStatus, long nowMillis) {
+        State state = states.get(sample.getVehicleId());
+        if (state == null) {
+            states.put(sample.getVehicleId(), new State(sample, nowMillis));
+            return true;
+        }
+
+        boolean statusChanged = sample.getStatus() != null
+                && (!sample.getStatus().equals(state.status) || !sample.getStatus().equals(liveStatus));
+        boolean silentTooLong = nowMillis - state.acceptedAtMillis >= maxSilenceSeconds * 1000;
+        double moved = GeoUtils.haversineMeters(state.lat, state.lng, sample.getLat(), sample.getLng());
+
+        if (statusChanged || silentTooLong || moved >= minDistanceMeters) {
+            if (moved >= minDistanceMeters || statusChanged) {
+                state.stationarySinceMillis = nowMillis;
+            }
+            state.accept(sample, nowMillis);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * How often the vehicle should report (ms): slower once it has been stationary for a while
+     */
+    public long getReportIntervalMs(Long vehicleId) {
+        State state = states.get(vehicleId);
+        if (state == null)
+            return movingIntervalMs;
+        boolean idle = System.currentTimeMillis() - state.stationarySinceMillis >= idleAfterSeconds * 1000;
+        return idle ? idleIntervalMs : movingIntervalMs;
+    }
+
+    public void forget(Long vehicleId) {
+        states.remove(vehicleId);
+    }
+
+    private static final class State {
+        private double lat;
+        private double lng;
+        private String status;
+        private long acceptedAtMillis;
+        private volatile long stationarySinceMillis;
+
+        private State(LocationSampleDTO sample, long nowMillis) {
+            accept(sample, nowMillis);
+            this.stationarySinceMillis = nowMillis;
+        }
+
+        private void accept(LocationSampleDTO sample, long nowMillis) {
+            this.lat = sample.getLat();
+            this.lng = sample.getLng();
+            if (sample.getStatus() != null)
+                this.status = sample.getStatus();
+            this.acceptedAtMillis = nowMillis;
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package com.smartfleet.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartfleet.cluster.ClusterRelay;
+import com.smartfleet.dto.ClusterVehicleBatchDTO;
+import com.smartfleet.dto.ClusterVehicleStateDTO;
+import com.smartfleet.dto.FleetBroadcastStatsDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.geo.WebMercator;
+import com.smartfleet.websocket.SlowConsumerPolicy;
+import com.smartfleet.websocket.TileSubscriptionRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live fleet broadcast on /topic/vehicles: one frame per tick instead of one message per vehicle
+ * Producers (simulation, telemetry) only record the latest state of a vehicle; every tick the changes are
+ * serialized once into a compact JSON frame that all subscribers share.
+ *
+ * <pre>
+ * {"seq": 42, "key": false, "ts": 1700000000000, "v": [{"id": 7, "lat": 12, "lng": -3, "km": 1}], "gone": [9]}
+ * </pre>
+ *
+ * lat / lng are in 1e-5 degrees and km in 0.1 km. A keyframe ("key": true, every keyframe-interval-ms)
+ * carries absolute values for every vehicle on the map (plus "gone" for those deleted since the previous frame -
+ * a client also drops any vehicle of its previous frame the keyframe omits); the frames in between carry,
+ * per changed vehicle, only the fields that changed, as differences against the previous frame (status as is).
+ * A client applies deltas only after its first keyframe and waits for the next one if seq skips a number.
+ *
+ * The same changes are also routed to /topic/vehicles/tile/{z}/{x}/{y}, but only for tiles with subscribers
+ * (TileSubscriptionRegistry): absolute values of the changed vehicles in the tile, "gone" for those that left it.
+ * On keyframe ticks every subscribed tile gets a keyframe instead ("key": true, all vehicles in the tile;
+ * the ones not listed are gone). A map view subscribes to the tiles of its viewport and loads their initial
+ * state over REST.
+ *
+ * Delta frames are marked conflatable: SlowConsumerPolicy skips them for a session that is falling behind; once
+ * it keeps up again, the next tick sends that session alone a keyframe (fleet and / or tile, from the state of
+ * the last frame, with the current seq) for every topic it missed frames on, instead of leaving it frozen until
+ * the next global keyframe.
+ *
+ * With several backend nodes, the vehicles changed locally are also relayed once per tick to the other
+ * nodes (ClusterRelay), which apply them to their position store and include them in their own frames -
+ * so every node's stream (and keyframes) covers the whole fleet, whichever node a dashboard is connected to.
+ * Only the live fields travel (ClusterVehicleStateDTO, stamped with the vehicle's change clock so a late or
+ * duplicate state never overwrites a newer one), at most app.cluster.max-states-per-message per message;
+ * a vehicle whose details changed (publishDetails) is reloaded from DB by the other nodes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FleetBroadcaster {
+
+    public static final String TOPIC = "/topic/vehicles";
+    public static final String CLUSTER_TOPIC = "vehicles";
+    public static final double COORDINATE_SCALE = 1e5;
+    public static final double KM_SCALE = 10;
+
+    private final VehiclePositionStore positionStore;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final TileSubscriptionRegistry tileSubscriptions;
+    private final ClusterRelay clusterRelay;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    @Value("${app.broadcast.keyframe-interval-ms:10000}")
+    private long keyframeIntervalMs;
+
+    @Value("${app.cluster.max-states-per-message:1000}")
+    private int maxStatesPerMessage;
+
+    private final Map<Long, VehicleResponseDTO> pending = new ConcurrentHashMap<>();
+    private final Set<Long> removed = ConcurrentHashMap.newKeySet();
+
+    // Vehiculele schimbate pe acest nod, de trimis celorlalte noduri (starea se citeste din store la trimitere)
+    private final Set<Long> relayPending = ConcurrentHashMap.newKeySet();
+    private final Set<Long> relayReloaded = ConcurrentHashMap.newKeySet();
+    private final Set<Long> relayRemoved = ConcurrentHashMap.newKeySet();
+
+    // Starea trimisa in ultimul cadru (doar thread-ul de tick o atinge)
+    private Map<Long, SentState> sent = new HashMap<>();
+    private long seq;
+    private long lastKeyframeMillis;
+
+    private final AtomicLong keyframes = new AtomicLong();
+    private final AtomicLong deltaFrames = new AtomicLong();
+    private final AtomicLong tileFrames = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong resyncFrames = new AtomicLong();
+    private volatile int lastFrameVehicles;
+    private volatile int lastFrameBytes;
+    private boolean keyframeOverBuffer;
+
+    @PostConstruct
+    public void init() {
+        clusterRelay.subscribe(CLUSTER_TOPIC, this::applyRemote);
+    }
+
+    /**
+     * Queue the latest state of a vehicle for the next frame (repeated calls in one tick keep the last one)
+     */
+    public void publish(VehicleResponseDTO vehicle) {
+        if (vehicle == null || vehicle.getId() == null)
+            return;
+        pending.put(vehicle.getId(), vehicle);
+        if (clusterRelay.isEnabled())
+            relayPending.add(vehicle.getId());
+    }
+
+    /**
+     * Like publish, after a change of the vehicle's details (create, edit, service) - the other nodes reload it from DB
+     */
+    public void publishDetails(VehicleResponseDTO vehicle) {
+        publish(vehicle);
+        if (vehicle != null && vehicle.getId() != null && clusterRelay.isEnabled())
+            relayReloaded.add(vehicle.getId());
+    }
+
+    public void publishAll(Iterable<VehicleResponseDTO> vehicles) {
+        vehicles.forEach(this::publish);
+    }
+
+    /**
+     * The vehicle was deleted - clients drop it on the next frame
+     */
+    public void publishRemoval(Long id) {
+        pending.remove(id);
+        removed.add(id);
+        if (clusterRelay.isEnabled()) {
+            relayPending.remove(id);
+            relayReloaded.remove(id);
+            relayRemoved.add(id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.broadcast.tick-ms:500}")
+    public synchronized void tick() {
+        relayToCluster();
+        long now = System.currentTimeMillis();
+        boolean keyframe = now - lastKeyframeMillis >= keyframeIntervalMs;
+        List<Change> changes = keyframe ? collectAll() : collectPending();
+        try {
+            if (keyframe || !changes.isEmpty())
+                seq++;
+            if (keyframe) {
+                byte[] frame = encodeKeyframe(changes, now);
+                warnIfOverSendBuffer(frame.length);
+                send(TOPIC, frame, false);
+                lastKeyframeMillis = now;
+                keyframes.incrementAndGet();
+                lastFrameVehicles = sent.size();
+                sendTileKeyframes(now);
+            } else if (!changes.isEmpty()) {
+                send(TOPIC, encodeDelta(changes, now), true);
+                deltaFrames.incrementAndGet();
+                lastFrameVehicles = changes.size();
+                sendTileFrames(changes, now);
+            }
+            resyncSessions(keyframe, now);
+        } catch (IOException e) {
+            log.error("Cannot encode fleet frame: {}", e.getMessage());
+        }
+    }
+
+    public FleetBroadcastStatsDTO getStats() {
+        return new FleetBroadcastStatsDTO(seq, keyframes.get(), deltaFrames.get(), tileFrames.get(),
+                resyncFrames.get(), bytesSent.get(), lastFrameVehicles, lastFrameBytes, pending.size(),
+                tileSubscriptions.getSubscribedTileCount());
+    }
+
+    // Cel mult maxStatesPerMessage stari per mesaj; doar campurile live, cu ceasul vehiculului
+    private void relayToCluster() {
+        if (relayPending.isEmpty() && relayReloaded.isEmpty() && relayRemoved.isEmpty())
+            return;
+        ClusterVehicleBatchDTO batch = new ClusterVehicleBatchDTO();
+        for (Long id : relayRemoved) {
+            relayRemoved.remove(id);
+            batch.getRemoved().add(id);
+        }
+        for (Long id : relayReloaded) {
+            relayReloaded.remove(id);
+            batch.getReloaded().add(id);
+        }
+        for (Long id : relayPending) {
+            relayPending.remove(id);
+            // Ceasul inaintea starii: o stare mai noua cu ceas vechi e corectata de urmatorul mesaj,
+            // invers (stare veche cu ceas nou) ar bloca starea mai noua la celelalte noduri
+            long stamp = positionStore.getStateStamp(id);
+            VehicleResponseDTO v = positionStore.get(id).orElse(null);
+            if (v == null)
+                continue;
+            batch.getUpdated().add(new ClusterVehicleStateDTO(id, v.getLat(), v.getLng(), v.getTotalKm(),
+                    v.getStatus(), stamp));
+            if (batch.getUpdated().size() >= maxStatesPerMessage) {
+                relayBatch(batch);
+                batch = new ClusterVehicleBatchDTO();
+            }
+        }
+        if (!batch.getUpdated().isEmpty() || !batch.getReloaded().isEmpty() || !batch.getRemoved().isEmpty())
+            relayBatch(batch);
+    }
+
+    private void relayBatch(ClusterVehicleBatchDTO batch) {
+        try {
+            clusterRelay.publish(CLUSTER_TOPIC, objectMapper.writeValueAsBytes(batch));
+        } catch (IOException e) {
+            log.error("Cannot encode cluster vehicle batch: {}", e.getMessage());
+        }
+    }
+
+    // Vehicule schimbate pe alt nod: intra in store-ul local si in cadrele acestui nod, fara sa fie re-trimise
+    private void applyRemote(byte[] payload) {
+        ClusterVehicleBatchDTO batch;
+        try {
+            batch = objectMapper.readValue(payload, ClusterVehicleBatchDTO.class);
+        } catch (IOException e) {
+            log.error("Invalid cluster vehicle batch: {}", e.getMessage());
+            return;
+        }
+        for (Long id : batch.getRemoved()) {
+            positionStore.remove(id);
+            pending.remove(id);
+            removed.add(id);
+        }
+        for (Long id : batch.getReloaded())
+            applyReloaded(id);
+        for (ClusterVehicleStateDTO state : batch.getUpdated()) {
+            if (state.getId() == null)
+                continue;
+            // Vehicul necunoscut aici (creat pe alt nod, mesaj de reload pierdut): il luam din DB, apoi starea live
+            if (positionStore.get(state.getId()).isEmpty())
+                applyReloaded(state.getId());
+            VehicleResponseDTO next = positionStore.applyRemote(state);
+            if (next != null)
+                pending.put(next.getId(), next);
+        }
+    }
+
+    private void applyReloaded(Long id) {
+        VehicleResponseDTO next = positionStore.reload(id);
+        if (next != null) {
+            pending.put(id, next);
+            removed.remove(id);
+        }
+    }
+
+    // Keyframe: starea completa din store; schimbarile fata de cadrul anterior (si stergerile) merg in "gone"
+    // si pe topicurile de tile - `removed` e golit pentru ca diferenta fata de `sent` acopera si stergerile
+    private List<Change> collectAll() {
+        pending.clear();
+        removed.clear();
+        Map<Long, SentState> next = new HashMap<>();
+        for (VehicleResponseDTO v : positionStore.getAll()) {
+            SentState state = SentState.of(v);
+            if (state != null)
+                next.put(v.getId(), state);
+        }
+        List<Change> changes = new ArrayList<>();
+        next.forEach((id, state) -> {
+            SentState previous = sent.get(id);
+            if (!state.equals(previous))
+                changes.add(new Change(id, previous, state));
+        });
+        sent.forEach((id, previous) -> {
+            if (!next.containsKey(id))
+                changes.add(new Change(id, previous, null));
+        });
+        sent = next;
+        return changes;
+    }
+
+    private List<Change> collectPending() {
+        List<Change> changes = new ArrayList<>();
+        for (Long id : removed) {
+            removed.remove(id);
+            SentState previous = sent.remove(id);
+            if (previous != null)
+                changes.add(new Change(id, previous, null));
+        }
+        for (Long id : pending.keySet()) {
+            VehicleResponseDTO v = pending.remove(id);
+            SentState next = v != null ? SentState.of(v) : null;
+            if (next == null)
+                continue;
+            SentState previous = sent.put(id, next);
+            if (!next.equals(previous)) // altfel doar viteza / combustibil s-au schimbat
+                changes.add(new Change(id, previous, next));
+        }
+        return changes;
+    }
+
+    private byte[] encodeKeyframe(List<Change> changes, long now) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + 64 * sent.size());
+        try (JsonGenerator json = startFrame(out, now)) {
+            json.writeBooleanField("key", true);
+            json.writeArrayFieldStart("v");
+            for (Map.Entry<Long, SentState> entry : sent.entrySet())
+                writeAbsolute(json, entry.getKey(), entry.getValue());
+            json.writeEndArray();
+            writeGone(json, changes, false);
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] encodeDelta(List<Change> changes, long now) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + 48 * changes.size());
+        try (JsonGenerator json = startFrame(out, now)) {
+            json.writeBooleanField("key", false);
+            json.writeArrayFieldStart("v");
+            for (Change change : changes) {
+                if (change.next == null)
+                    continue;
+                // Vehicul nou pe harta: valori absolute (diferenta fata de 0)
+                SentState previous = change.previous != null ? change.previous : SentState.NONE;
+                json.writeStartObject();
+                json.writeNumberField("id", change.id);
+                if (change.next.lat != previous.lat)
+                    json.writeNumberField("lat", change.next.lat - previous.lat);
+                if (change.next.lng != previous.lng)
+                    json.writeNumberField("lng", change.next.lng - previous.lng);
+                if (change.next.km != previous.km)
+                    json.writeNumberField("km", change.next.km - previous.km);
+                if (!Objects.equals(change.next.status, previous.status))
+                    json.writeStringField("status", change.next.status);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            writeGone(json, changes, false);
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * One frame per tile that has subscribers and was touched this tick: absolute values of the vehicles now
+     * in the tile, plus "gone" for those that left it (moved to another tile or were deleted)
+     */
+    private void sendTileFrames(List<Change> changes, long now) throws IOException {
+        if (changes.isEmpty() || tileSubscriptions.getSubscribedTileCount() == 0)
+            return;
+        for (int z : subscribedZooms()) {
+            Map<Long, List<Change>> arrivals = new HashMap<>();
+            Map<Long, List<Change>> departures = new HashMap<>();
+            for (Change change : changes) {
+                long to = change.next != null ? tileOf(change.next, z) : -1;
+                long from = change.previous != null ? tileOf(change.previous, z) : -1;
+                if (to >= 0 && tileSubscriptions.hasSubscribers(to))
+                    arrivals.computeIfAbsent(to, t -> new ArrayList<>()).add(change);
+                if (from >= 0 && from != to && tileSubscriptions.hasSubscribers(from))
+                    departures.computeIfAbsent(from, t -> new ArrayList<>()).add(change);
+            }
+            Set<Long> tiles = new HashSet<>(arrivals.keySet());
+            tiles.addAll(departures.keySet());
+            for (Long tile : tiles) {
+                List<Change> in = arrivals.getOrDefault(tile, List.of());
+                List<Change> out = departures.getOrDefault(tile, List.of());
+                String destination = TileSubscriptionRegistry.destination(tile);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + 64 * (in.size() + out.size()));
+                try (JsonGenerator json = startFrame(buffer, now)) {
+                    json.writeStringField("tile", destination.substring(TileSubscriptionRegistry.TILE_PREFIX.length()));
+                    json.writeBooleanField("key", false);
+                    json.writeArrayFieldStart("v");
+                    for (Change change : in)
+                        writeAbsolute(json, change.id, change.next);
+                    json.writeEndArray();
+                    writeGone(json, out, true);
+                    json.writeEndObject();
+                }
+                send(destination, buffer.toByteArray(), true);
+                tileFrames.incrementAndGet();
+            }
+        }
+    }
+
+    // Keyframe per tile cu abonati: toate vehiculele din el (din starea tocmai trimisa), si pentru tile-urile goale
+    private void sendTileKeyframes(long now) throws IOException {
+        Set<Long> tiles = tileSubscriptions.getSubscribedTiles();
+        if (tiles.isEmpty())
+            return;
+        for (Map.Entry<Long, byte[]> entry : encodeTileKeyframes(tiles, now).entrySet()) {
+            send(TileSubscriptionRegistry.destination(entry.getKey()), entry.getValue(), false);
+            tileFrames.incrementAndGet();
+        }
+    }
+
+    private Map<Long, byte[]> encodeTileKeyframes(Set<Long> tiles, long now) throws IOException {
+        Map<Long, List<Long>> content = new HashMap<>();
+        Set<Integer> zooms = new HashSet<>();
+        for (Long tile : tiles) {
+            content.put(tile, new ArrayList<>());
+            zooms.add(TileSubscriptionRegistry.zoomOf(tile));
+        }
+        for (int z : zooms) {
+            for (Map.Entry<Long, SentState> entry : sent.entrySet()) {
+                List<Long> ids = content.get(tileOf(entry.getValue(), z));
+                if (ids != null)
+                    ids.add(entry.getKey());
+            }
+        }
+        Map<Long, byte[]> frames = new HashMap<>();
+        for (Map.Entry<Long, List<Long>> entry : content.entrySet()) {
+            String destination = TileSubscriptionRegistry.destination(entry.getKey());
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + 64 * entry.getValue().size());
+            try (JsonGenerator json = startFrame(buffer, now)) {
+                json.writeStringField("tile", destination.substring(TileSubscriptionRegistry.TILE_PREFIX.length()));
+                json.writeBooleanField("key", true);
+                json.writeArrayFieldStart("v");
+                for (Long id : entry.getValue())
+                    writeAbsolute(json, id, sent.get(id));
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            frames.put(entry.getKey(), buffer.toByteArray());
+        }
+        return frames;
+    }
+
+    /**
+     * Keyframes for the sessions that caught up after SlowConsumerPolicy skipped their delta frames, sent to each
+     * of them alone: the state of the last frame with the current seq, so the next delta applies on top of it.
+     * Nothing to do on a global keyframe tick - keyframes are never skipped.
+     */
+    private void resyncSessions(boolean keyframeSent, long now) throws IOException {
+        Map<String, Map<String, String>> requests = slowConsumerPolicy.takeResyncRequests();
+        if (requests.isEmpty() || keyframeSent)
+            return;
+        byte[] fleetKeyframe = null;
+        Set<Long> tiles = new HashSet<>();
+        for (Map<String, String> destinations : requests.values()) {
+            for (String destination : destinations.keySet()) {
+                if (TOPIC.equals(destination) && fleetKeyframe == null)
+                    fleetKeyframe = encodeKeyframe(List.of(), now);
+                long tile = tileSubscriptions.parseTileDestination(destination);
+                if (tile >= 0)
+                    tiles.add(tile);
+            }
+        }
+        Map<Long, byte[]> tileKeyframes = tiles.isEmpty() ? Map.of() : encodeTileKeyframes(tiles, now);
+        for (Map.Entry<String, Map<String, String>> request : requests.entrySet()) {
+            for (Map.Entry<String, String> subscription : request.getValue().entrySet()) {
+                String destination = subscription.getKey();
+                byte[] frame = TOPIC.equals(destination) ? fleetKeyframe
+                        : tileKeyframes.get(tileSubscriptions.parseTileDestination(destination));
+                if (frame == null)
+                    continue;
+                slowConsumerPolicy.sendToSession(request.getKey(), subscription.getValue(), destination, frame);
+                bytesSent.addAndGet(frame.length);
+                resyncFrames.incrementAndGet();
+            }
+        }
+    }
+
+    // Doar zoom-urile la care cineva urmareste macar un tile
+    private int[] subscribedZooms() {
+        int[] zooms = tileSubscriptions.getZooms();
+        boolean[] used = new boolean[zooms.length];
+        for (long tile : tileSubscriptions.getSubscribedTiles()) {
+            int index = Arrays.binarySearch(zooms, TileSubscriptionRegistry.zoomOf(tile));
+            if (index >= 0)
+                used[index] = true;
+        }
+        int count = 0;
+        for (int i = 0; i < zooms.length; i++) {
+            if (used[i])
+                zooms[count++] = zooms[i];
+        }
+        return Arrays.copyOf(zooms, count);
+    }
+
+    private JsonGenerator startFrame(ByteArrayOutputStream out, long now) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.writeStartObject();
+        json.writeNumberField("seq", seq);
+        json.writeNumberField("ts", now);
+        return json;
+    }
+
+    private static void writeAbsolute(JsonGenerator json, long id, SentState state) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", id);
+        json.writeNumberField("lat", state.lat);
+        json.writeNumberField("lng", state.lng);
+        json.writeNumberField("km", state.km);
+        if (state.status != null)
+            json.writeStringField("status", state.status);
+        json.writeEndObject();
+    }
+
+    // "gone": pe /topic/vehicles vehiculele sterse, pe un tile si cele care au iesit din el
+    private static void writeGone(JsonGenerator json, List<Change> changes, boolean tile) throws IOException {
+        boolean open = false;
+        for (Change change : changes) {
+            if (!tile && change.next != null)
+                continue;
+            if (!open) {
+                json.writeArrayFieldStart("gone");
+                open = true;
+            }
+            json.writeNumber(change.id);
+        }
+        if (open)
+            json.writeEndArray();
+    }
+
+    private static long tileOf(SentState state, int z) {
+        double scale = 1L << z;
+        long max = (1L << z) - 1;
+        long x = Math.min(max, (long) (WebMercator.x(state.lng / COORDINATE_SCALE) * scale));
+        long y = Math.min(max, (long) (WebMercator.y(state.lat / COORDINATE_SCALE) * scale));
+        return TileSubscriptionRegistry.tileKey(z, x, y);
+    }
+
+    // Un keyframe mai mare decat buffer-ul sesiunii inchide orice sesiune la care ajunge in spatele unui write lent
+    private void warnIfOverSendBuffer(int frameBytes) {
+        boolean over = frameBytes > slowConsumerPolicy.getSendBufferLimitBytes();
+        if (over && !keyframeOverBuffer)
+            log.warn("Fleet keyframe of {} bytes exceeds the WebSocket send buffer ({} bytes); raise "
+                    + "app.broadcast.max-fleet-size or app.websocket.send-buffer-limit-bytes", frameBytes,
+                    slowConsumerPolicy.getSendBufferLimitBytes());
+        keyframeOverBuffer = over;
+    }
+
+    // Un singur Message cu payload-ul deja serializat: brokerul il imparte tuturor abonatilor
+    private void send(String destination, byte[] frame, boolean conflatable) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (conflatable)
+            headers.setHeader(SlowConsumerPolicy.CONFLATABLE_HEADER, Boolean.TRUE);
+        headers.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(frame, headers.getMessageHeaders());
+        messagingTemplate.send(destination, message);
+        if (TOPIC.equals(destination))
+            lastFrameBytes = frame.length;
+        bytesSent.addAndGet(frame.length);
+    }
+
+    private static final class Change {
+        private final long id;
+        private final SentState previous; // null = nou pe harta
+        private final SentState next; // null = sters
+
+        Change(long id, SentState previous, SentState next) {
+            this.id = id;
+            this.previous = previous;
+            this.next = next;
+        }
+    }
+
+    private static final class SentState {
+        static final SentState NONE = new SentState(0, 0, 0, null);
+
+        private final long lat;
+        private final long lng;
+        private final long km;
+        private final String status;
+
+        SentState(long lat, long lng, long km, String status) {
+            this.lat = lat;
+            this.lng = lng;
+            this.km = km;
+            this.status = status;
+        }
+
+        static SentState of(VehicleResponseDTO v) {
+            if (v.getLat() == null || v.getLng() == null)
+                return null;
+            return new SentState(Math.round(v.getLat() * COORDINATE_SCALE), Math.round(v.getLng() * COORDINATE_SCALE),
+                    v.getTotalKm() != null ? Math.round(v.getTotalKm() * KM_SCALE) : 0, v.getStatus());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SentState s && lat == s.lat && lng == s.lng && km == s.km
+                    && Objects.equals(status, s.status);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lat, lng, km, status);
+        }
+    }
+}
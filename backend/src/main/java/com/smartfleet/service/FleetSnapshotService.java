@@ -0,0 +1,175 @@
+package com.smartfleet.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartfleet.dto.FleetDeltaDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized fleet snapshot for the polling clients of GET /api/vehicles
+ * VehiclePositionStore numbers every change; the JSON list (and its gzip) is rebuilt only after that version
+ * moved, at most once per app.vehicles.snapshot.min-rebuild-interval-ms, and shared by every poller.
+ * Each body carries the fleet version it reflects, used as its strong ETag, so an unchanged poll is a 304.
+ * getChangesSince serves ?since=version&epoch=...: only the vehicles changed and the ids removed after that version.
+ * Versions are per backend node and process (VehiclePositionStore epoch): the epoch is part of every ETag and
+ * a since from another epoch gets the whole fleet.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FleetSnapshotService {
+
+    // Sub atat nu merita comprimat (un delta mic)
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final int MAX_CACHED_DELTAS = 256;
+
+    private final VehiclePositionStore positionStore;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.vehicles.snapshot.min-rebuild-interval-ms:500}")
+    private long minRebuildIntervalMs;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Whole fleet as a JSON array (same body as before), rebuilt only if something changed
+     */
+    public Body getSnapshot() {
+        return current().full;
+    }
+
+    /**
+     * Vehicles changed / removed after the given version of the given epoch, as a FleetDeltaDTO
+     * Deltas are cached per version until the next rebuild, so pollers that saw the same version share one body.
+     */
+    public Body getChangesSince(String epoch, long since) {
+        // Alt nod sau alt proces: versiunea nu se compara cu ale noastre
+        if (!positionStore.getEpoch().equals(epoch))
+            since = Long.MIN_VALUE;
+        Snapshot current = current();
+        Body cached = current.deltas.get(since);
+        if (cached != null)
+            return cached;
+
+        FleetDeltaDTO delta = new FleetDeltaDTO();
+        delta.setVersion(current.full.version);
+        delta.setEpoch(positionStore.getEpoch());
+        // Versiune din viitor, din alta epoca sau stergeri uitate: toata flota
+        if (since > current.full.version
+                || !positionStore.collectChangesSince(since, delta.getVehicles(), delta.getRemoved())) {
+            delta.setFull(true);
+            delta.getVehicles().clear();
+            delta.getRemoved().clear();
+            delta.getVehicles().addAll(positionStore.getAll());
+        }
+        Body body = new Body(current.full.version, serialize(delta));
+        if (current.deltas.size() < MAX_CACHED_DELTAS)
+            current.deltas.put(since, body);
+        return body;
+    }
+
+    /**
+     * Fleet version to tag a response with when it is computed right after this call
+     */
+    public long getStableVersion() {
+        return positionStore.getStableVersion();
+    }
+
+    // ETag puternic: aceeasi epoca, aceeasi versiune si aceeasi codare = aceiasi octeti
+    public String etag(long version, boolean gzipped) {
+        return "\"" + positionStore.getEpoch() + "-" + version + (gzipped ? "-gz" : "") + "\"";
+    }
+
+    /**
+     * ETag of a viewport response (all vehicles, no filter) computed after getStableVersion returned this version
+     */
+    public String viewportEtag(long version) {
+        return "\"" + positionStore.getEpoch() + "-" + version + "-viewport\"";
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && (current.full.version == positionStore.getVersion()
+                || System.currentTimeMillis() - current.builtAtMillis < minRebuildIntervalMs))
+            return current;
+        return rebuild();
+    }
+
+    private synchronized Snapshot rebuild() {
+        Snapshot current = snapshot;
+        if (current != null && current.full.version == positionStore.getVersion())
+            return current;
+        long start = System.nanoTime();
+        // Versiunea inainte de citire: tot ce e numerotat pana la ea e deja in lista
+        long version = positionStore.getStableVersion();
+        Body full = new Body(version, serialize(positionStore.getAll()));
+        snapshot = new Snapshot(full, System.currentTimeMillis());
+        log.debug("Fleet snapshot {} rebuilt: {} bytes ({} gzipped) in {} ms", version, full.json.length,
+                full.gzip != null ? full.gzip.length : full.json.length, (System.nanoTime() - start) / 1_000_000);
+        return snapshot;
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot serialize fleet snapshot: " + e.getMessage());
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot compress fleet snapshot: " + e.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * One serialized response: the JSON, its gzip (null if too small) and the fleet version it reflects
+     */
+    public static final class Body {
+        private final long version;
+        private final byte[] json;
+        private final byte[] gzip;
+
+        Body(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+            this.gzip = json.length >= GZIP_MIN_BYTES ? FleetSnapshotService.gzip(json) : null;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+
+    private static final class Snapshot {
+        private final Body full;
+        private final long builtAtMillis;
+        private final Map<Long, Body> deltas = new ConcurrentHashMap<>();
+
+        Snapshot(Body full, long builtAtMillis) {
+            this.full = full;
+            this.builtAtMillis = builtAtMillis;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.smartfleet.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartfleet.cluster.ClusterRelay;
+import com.smartfleet.dto.GeofenceEventDTO;
+import com.smartfleet.dto.GeofenceZoneDTO;
+import com.smartfleet.entity.GeofenceZone;
+import com.smartfleet.geo.GeofenceIndex;
+import com.smartfleet.geo.VehicleGeofenceState;
+import com.smartfleet.repository.GeofenceEventRepository;
+import com.smartfleet.repository.GeofenceZoneRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Geofence zones: admin CRUD (DB) + an immutable in-memory spatial index (GeofenceIndex)
+ * Every position update (telemetry pipeline, simulation) is checked against the index,
+ * which only tests the zones whose bounding box is in the vehicle's grid cell.
+ * The index is rebuilt on every zone change (rare) and swapped atomically.
+ *
+ * Per vehicle a VehicleGeofenceState turns raw containment into ENTER / EXIT events (dwell time +
+ * exit hysteresis against GPS jitter). Only confirmed transitions are logged, broadcast on
+ * /topic/geofence-events and appended in batches to geofence_event. Pending transitions are also
+ * re-checked on a timer, so a vehicle that stops reporting significant moves still gets its dwell confirmed.
+ * In a cluster, events are also relayed to the dashboards of the other nodes, and a zone change makes
+ * every node rebuild its index.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceService {
+
+    private static final long[] NO_ZONES = new long[0];
+
+    private final GeofenceZoneRepository zoneRepository;
+    private final GeofenceEventRepository eventRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterRelay clusterRelay;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.geofence.cell-degrees:0.05}")
+    private double cellDegrees;
+
+    @Value("${app.geofence.max-zones-per-point:32}")
+    private int maxZonesPerPoint;
+
+    @Value("${app.geofence.dwell-ms:10000}")
+    private long dwellMs;
+
+    @Value("${app.geofence.exit-hysteresis-m:50}")
+    private double exitHysteresisMeters;
+
+    @Value("${app.geofence.events.buffer-capacity:100000}")
+    private int eventBufferCapacity;
+
+    @Value("${app.geofence.events.batch-size:1000}")
+    private int eventBatchSize;
+
+    @Value("${app.geofence.events.max-results:1000}")
+    private int maxEventResults;
+
+    private volatile GeofenceIndex index = GeofenceIndex.build(List.of(), 0.05);
+    private volatile Map<Long, String> zoneNames = Map.of();
+    // Starea fiecarui vehicul: zonele confirmate + tranzitiile in asteptare
+    private final Map<Long, VehicleGeofenceState> vehicleStates = new ConcurrentHashMap<>();
+    // Vehiculele cu tranzitii in asteptare - singurele verificate de confirmDwell()
+    private final Set<Long> pendingVehicles = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<long[]> scratch = ThreadLocal.withInitial(() -> new long[maxZonesPerPoint]);
+
+    private BlockingQueue<GeofenceEventDTO> eventBuffer;
+    private final AtomicLong eventsEmitted = new AtomicLong();
+    private final AtomicLong eventsDropped = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        eventBuffer = new ArrayBlockingQueue<>(eventBufferCapacity);
+        try {
+            rebuildIndex();
+        } catch (Exception e) {
+            log.error("Cannot load geofence zones: {}", e.getMessage());
+        }
+        clusterRelay.subscribe("geofence-zones", payload -> rebuildIndex());
+        clusterRelay.subscribe("geofence-events", this::broadcastRemoteEvent);
+    }
+
+    public List<GeofenceZoneDTO> getAllZones() {
+        return zoneRepository.findAll().stream().map(this::toDTO).collect(Collectors.toList());
+    }
+
+    public GeofenceZoneDTO getZoneById(Long id) {
+        return zoneRepository.findById(id).map(this::toDTO)
+                .orElseThrow(() -> new RuntimeException("Geofence zone not found"));
+    }
+
+    public GeofenceZoneDTO createZone(GeofenceZoneDTO dto) {
+        GeofenceZone zone = new GeofenceZone();
+        applyDTO(zone, dto);
+        GeofenceZoneDTO saved = toDTO(zoneRepository.save(zone));
+        zonesChanged();
+        return saved;
+    }
+
+    public GeofenceZoneDTO updateZone(Long id, GeofenceZoneDTO dto) {
+        GeofenceZone zone = zoneRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Geofence zone not found"));
+        applyDTO(zone, dto);
+        GeofenceZoneDTO saved = toDTO(zoneRepository.save(zone));
+        zonesChanged();
+        return saved;
+    }
+
+    public void deleteZone(Long id) {
+        zoneRepository.deleteById(id);
+        zonesChanged();
+    }
+
+    /**
+     * Ids of the active zones containing the point
+     */
+    public long[] zonesAt(double lat, double lng) {
+        long[] found = scratch.get();
+        int count = index.zonesContaining(lat, lng, found);
+        return count == 0 ? NO_ZONES : Arrays.copyOf(found, count);
+    }
+
+    public void onPosition(Long vehicleId, double lat, double lng) {
+        onPosition(vehicleId, lat, lng, System.currentTimeMillis());
+    }
+
+    /**
+     * Check a new vehicle position (taken at atMillis) and emit the transitions it confirms
+     * Positions that do not change a vehicle's state produce no event, log line or DB write.
+     */
+    public void onPosition(Long vehicleId, double lat, double lng, long atMillis) {
+        VehicleGeofenceState state = vehicleStates.computeIfAbsent(vehicleId, id -> new VehicleGeofenceState());
+        // Acelasi vehicul poate veni din pipeline si din simulare - starea se modifica sub lock
+        synchronized (state) {
+            evaluate(vehicleId, state, lat, lng, atMillis);
+        }
+    }
+
+    /**
+     * Confirm the pending transitions whose dwell time has elapsed since the vehicle's last evaluated position
+     * (a parked truck only sends samples the dead-band drops, or reports at the idle interval)
+     */
+    @Scheduled(fixedDelayString = "${app.geofence.dwell-check-interval-ms:1000}")
+    public void confirmDwell() {
+        long now = System.currentTimeMillis();
+        for (Long vehicleId : pendingVehicles) {
+            VehicleGeofenceState state = vehicleStates.get(vehicleId);
+            if (state == null) {
+                pendingVehicles.remove(vehicleId);
+                continue;
+            }
+            synchronized (state) {
+                evaluate(vehicleId, state, state.getLastLat(), state.getLastLng(), now);
+            }
+        }
+    }
+
+    public long[] getVehicleZones(Long vehicleId) {
+        VehicleGeofenceState state = vehicleStates.get(vehicleId);
+        if (state == null)
+            return NO_ZONES;
+        synchronized (state) {
+            return state.getInside();
+        }
+    }
+
+    /**
+     * Vehicles currently inside a zone (confirmed, after the dwell time)
+     */
+    public List<Long> getVehiclesInZone(Long zoneId) {
+        List<Long> vehicles = new ArrayList<>();
+        vehicleStates.forEach((vehicleId, state) -> {
+            synchronized (state) {
+                if (state.isInside(zoneId))
+                    vehicles.add(vehicleId);
+            }
+        });
+        vehicles.sort(Long::compare);
+        return vehicles;
+    }
+
+    public void forgetVehicle(Long vehicleId) {
+        vehicleStates.remove(vehicleId);
+        pendingVehicles.remove(vehicleId);
+    }
+
+    /**
+     * Latest transitions, newest first (from geofence_event)
+     */
+    public List<GeofenceEventDTO> getRecentEvents(Long vehicleId, Long zoneId, int limit) {
+        return eventRepository.findRecent(vehicleId, zoneId, Math.max(1, Math.min(limit, maxEventResults)));
+    }
+
+    public long getEventsEmitted() {
+        return eventsEmitted.get();
+    }
+
+    /**
+     * Append the buffered events in batches; returns false if a batch failed (it is re-queued)
+     */
+    @Scheduled(fixedDelayString = "${app.geofence.events.flush-interval-ms:1000}")
+    public synchronized boolean flushEvents() {
+        List<GeofenceEventDTO> batch = new ArrayList<>(Math.min(eventBatchSize, eventBuffer.size()));
+        while (eventBuffer.drainTo(batch, eventBatchSize) > 0) {
+            try {
+                eventRepository.batchInsert(batch);
+            } catch (Exception e) {
+                log.error("Failed to append {} geofence events, will retry: {}", batch.size(), e.getMessage());
+                batch.forEach(eventBuffer::offer);
+                return false;
+            } finally {
+                batch.clear();
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushEvents();
+    }
+
+    // Apelat sub lock-ul starii
+    private void evaluate(Long vehicleId, VehicleGeofenceState state, double lat, double lng, long atMillis) {
+        GeofenceIndex current = index;
+        long[] found = scratch.get();
+        int count = current.zonesContaining(lat, lng, found);
+        Arrays.sort(found, 0, count);
+        state.evaluate(found, count, current, lat, lng, atMillis, exitHysteresisMeters, dwellMs,
+                (zoneId, entered, sinceMillis) -> emit(vehicleId, zoneId, entered, lat, lng, sinceMillis, atMillis));
+        if (state.getPendingCount() > 0)
+            pendingVehicles.add(vehicleId);
+        else
+            pendingVehicles.remove(vehicleId);
+    }
+
+    private void emit(Long vehicleId, long zoneId, boolean entered, double lat, double lng, long sinceMillis,
+            long atMillis) {
+        GeofenceEventDTO event = new GeofenceEventDTO(null, vehicleId, zoneId, zoneNames.get(zoneId),
+                entered ? "ENTER" : "EXIT", lat, lng, toLocalDateTime(sinceMillis), toLocalDateTime(atMillis));
+        eventsEmitted.incrementAndGet();
+        log.info("Geofence {}: vehicle {} zone {} ({})", event.getType(), vehicleId, zoneId, event.getZoneName());
+
+        messagingTemplate.convertAndSend("/topic/geofence-events", event);
+        if (clusterRelay.isEnabled()) {
+            try {
+                clusterRelay.publish("geofence-events", objectMapper.writeValueAsBytes(event));
+            } catch (IOException e) {
+                log.error("Cannot relay geofence event: {}", e.getMessage());
+            }
+        }
+        if (!eventBuffer.offer(event)) {
+            // DB lent sau cazut - evenimentul a plecat deja pe WebSocket, nu blocam ingestia
+            if (eventsDropped.incrementAndGet() % 1000 == 1) {
+                log.warn("Geofence event buffer full, {} events dropped so far", eventsDropped.get());
+            }
+        }
+    }
+
+    // Evenimentul a fost detectat (si salvat) pe alt nod - aici doar il trimitem dashboard-urilor conectate
+    private void broadcastRemoteEvent(byte[] payload) {
+        try {
+            messagingTemplate.convertAndSend("/topic/geofence-events",
+                    objectMapper.readValue(payload, GeofenceEventDTO.class));
+        } catch (IOException e) {
+            log.error("Invalid relayed geofence event: {}", e.getMessage());
+        }
+    }
+
+    private void zonesChanged() {
+        rebuildIndex();
+        clusterRelay.publish("geofence-zones", new byte[0]);
+    }
+
+    private synchronized void rebuildIndex() {
+        List<GeofenceIndex.Zone> zones = new ArrayList<>();
+        Map<Long, String> names = new HashMap<>();
+        for (GeofenceZone zone : zoneRepository.findByActiveTrue()) {
+            try {
+                zones.add(compile(zone));
+                names.put(zone.getId(), zone.getName());
+            } catch (RuntimeException e) {
+                log.warn("Skipping invalid geofence zone {}: {}", zone.getId(), e.getMessage());
+            }
+        }
+        zoneNames = names;
+        index = GeofenceIndex.build(zones, cellDegrees);
+        log.info("Geofence index rebuilt with {} zones", zones.size());
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private GeofenceIndex.Zone compile(GeofenceZone zone) {
+        if ("CIRCLE".equals(zone.getType()))
+            return GeofenceIndex.Zone.circle(zone.getId(), zone.getCenterLat(), zone.getCenterLng(), zone.getRadiusM());
+        List<List<Double>> points = parsePoints(zone.getPoints());
+        double[] lats = new double[points.size()];
+        double[] lngs = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            lats[i] = points.get(i).get(0);
+            lngs[i] = points.get(i).get(1);
+        }
+        return GeofenceIndex.Zone.polygon(zone.getId(), lats, lngs);
+    }
+
+    private void applyDTO(GeofenceZone zone, GeofenceZoneDTO dto) {
+        if (dto.getName() == null || dto.getName().isBlank())
+            throw new RuntimeException("Geofence zone name is required");
+        String type = dto.getType() != null ? dto.getType().toUpperCase() : null;
+        if ("CIRCLE".equals(type)) {
+            if (!isValidPoint(dto.getCenterLat(), dto.getCenterLng()) || dto.getRadiusM() == null || dto.getRadiusM() <= 0)
+                throw new RuntimeException("A circle zone needs centerLat, centerLng and a positive radiusM");
+            zone.setPoints(null);
+            zone.setCenterLat(dto.getCenterLat());
+            zone.setCenterLng(dto.getCenterLng());
+            zone.setRadiusM(dto.getRadiusM());
+        } else if ("POLYGON".equals(type)) {
+            if (dto.getPoints() == null || dto.getPoints().size() < 3 || dto.getPoints().stream()
+                    .anyMatch(p -> p == null || p.size() != 2 || !isValidPoint(p.get(0), p.get(1))))
+                throw new RuntimeException("A polygon zone needs at least 3 valid [lat, lng] points");
+            zone.setPoints(dto.getPoints().stream().map(p -> p.get(0) + "," + p.get(1))
+                    .collect(Collectors.joining(";")));
+            zone.setCenterLat(null);
+            zone.setCenterLng(null);
+            zone.setRadiusM(null);
+        } else {
+            throw new RuntimeException("Geofence zone type must be POLYGON or CIRCLE");
+        }
+        zone.setName(dto.getName());
+        zone.setType(type);
+        if (dto.getActive() != null)
+            zone.setActive(dto.getActive());
+    }
+
+    private GeofenceZoneDTO toDTO(GeofenceZone zone) {
+        return new GeofenceZoneDTO(zone.getId(), zone.getName(), zone.getType(),
+                zone.getPoints() != null ? parsePoints(zone.getPoints()) : null,
+                zone.getCenterLat(), zone.getCenterLng(), zone.getRadiusM(), zone.getActive());
+    }
+
+    private static List<List<Double>> parsePoints(String points) {
+        List<List<Double>> result = new ArrayList<>();
+        if (points == null || points.isBlank())
+            return result;
+        for (String point : points.split(";")) {
+            String[] parts = point.split(",");
+            result.add(List.of(Double.parseDouble(parts[0]), Double.parseDouble(parts[1])));
+        }
+        return result;
+    }
+
+    private static boolean isValidPoint(Double lat, Double lng) {
+        return lat != null && lng != null && lat >= -90 && lat <= 90 && lng >= -180 && lng <= 180;
+    }
+}
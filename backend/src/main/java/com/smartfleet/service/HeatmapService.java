@@ -0,0 +1,367 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.HeatmapCellDTO;
+import com.smartfleet.dto.VehiclePositionDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.geo.WebMercator;
+import com.smartfleet.repository.PositionRollupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Historical density heatmap: how many position samples fell in each grid cell, and how long vehicles stood idle there
+ * Every history batch that reaches vehicle_position is also counted per hour and per day bucket, per
+ * Web Mercator grid level and per vehicle type, and added to position_rollup (upsert) - so a query
+ * reads at most 24 + 24 hourly buckets plus one row per day and cell, never the raw history.
+ * Idle time: an idle sample weighs the time until the same vehicle's next sample (at most idle-max-dwell-s),
+ * so a truck reporting every 2 s and one reporting every 30 s count the same for the same stop.
+ * Rollups trail the history by up to one flush interval; old hourly / daily rows are deleted every night.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HeatmapService {
+
+    // Nivelul grilei = zoom + 2 -> celule de 64 px, ca la clustere
+    private static final int LEVEL_OFFSET = 2;
+    private static final char HOURLY = 'H';
+    private static final char DAILY = 'D';
+
+    private final PositionRollupRepository rollupRepository;
+    private final VehiclePositionStore positionStore;
+
+    @Value("${app.heatmap.levels:8,11,14}")
+    private int[] configuredLevels;
+
+    @Value("${app.heatmap.idle-speed-kmh:2}")
+    private double idleSpeedKmh;
+
+    @Value("${app.heatmap.max-range-days:93}")
+    private int maxRangeDays;
+
+    @Value("${app.heatmap.max-pending-cells:500000}")
+    private int maxPendingCells;
+
+    @Value("${app.heatmap.idle-max-dwell-s:300}")
+    private long idleMaxDwellSeconds;
+
+    @Value("${app.heatmap.retention.hourly-days:35}")
+    private int hourlyRetentionDays;
+
+    @Value("${app.heatmap.retention.daily-days:400}")
+    private int dailyRetentionDays;
+
+    private int[] levels;
+    private Map<RollupKey, long[]> pending = new HashMap<>();
+    // Ultima mostra numarata a fiecarui vehicul: primeste timpul pana la urmatoarea (metrica idle)
+    private final Map<Long, LastSample> lastSamples = new HashMap<>();
+    private long droppedSamples;
+    // Read: scrierea in istoric + numararea (PositionHistoryService.flush); write: rebuild
+    private final ReentrantReadWriteLock rebuildFence = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void init() {
+        levels = configuredLevels.clone();
+        Arrays.sort(levels);
+        if (levels.length == 0 || levels[0] < 0 || levels[levels.length - 1] > 24)
+            throw new IllegalStateException("app.heatmap.levels must be between 0 and 24");
+        try {
+            rollupRepository.createTable();
+        } catch (Exception e) {
+            log.error("Cannot prepare position_rollup table: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Held by the history flush around "append to vehicle_position + accumulate", so a rebuild sees every point
+     * either in the table (and recounts it) or not yet written - never counted twice
+     */
+    public Lock getHistoryWriteFence() {
+        return rebuildFence.readLock();
+    }
+
+    /**
+     * Count a batch that was just appended to the history (called by PositionHistoryService.flush)
+     */
+    public void accumulate(List<VehiclePositionDTO> points) {
+        Map<Long, String> types = new HashMap<>();
+        long maxDwellMillis = idleMaxDwellSeconds * 1000;
+        synchronized (this) {
+            for (VehiclePositionDTO p : points) {
+                if (p.getLat() == null || p.getLng() == null || p.getRecordedAt() == null)
+                    continue;
+                String type = types.computeIfAbsent(p.getVehicleId(), id -> positionStore.get(id)
+                        .map(VehicleResponseDTO::getType).orElse(""));
+                boolean idle = "IDLE".equals(p.getStatus()) || (p.getSpeed() != null && p.getSpeed() < idleSpeedKmh);
+                LastSample sample = new LastSample(p.getRecordedAt(), WebMercator.x(p.getLng()),
+                        WebMercator.y(p.getLat()), idle, type);
+                addToCells(sample, 1, 0);
+
+                // Timpul de la mostra anterioara (idle) pana la asta se adauga celulei mostrei anterioare
+                LastSample previous = lastSamples.get(p.getVehicleId());
+                if (previous != null && previous.recordedAt.isAfter(p.getRecordedAt()))
+                    continue; // mostra intarziata: numarata, dar nu muta ultima mostra inapoi
+                if (previous != null && previous.idle) {
+                    long dwell = Math.min(Duration.between(previous.recordedAt, p.getRecordedAt()).toMillis(),
+                            maxDwellMillis);
+                    if (dwell > 0)
+                        addToCells(previous, 0, dwell);
+                }
+                lastSamples.put(p.getVehicleId(), sample);
+            }
+        }
+    }
+
+    /**
+     * Upsert the pending counters; on failure they are kept and merged into the next flush
+     */
+    @Scheduled(fixedDelayString = "${app.heatmap.flush-interval-ms:5000}")
+    public void flush() {
+        Map<RollupKey, long[]> batch;
+        synchronized (this) {
+            if (pending.isEmpty())
+                return;
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        batch.forEach((key, counts) -> rows.add(new Object[] {String.valueOf(key.granularity), key.level,
+                Timestamp.valueOf(key.bucketStart), key.cellX, key.cellY, key.vehicleType, counts[0], counts[1]}));
+        try {
+            rollupRepository.batchUpsert(rows);
+        } catch (Exception e) {
+            log.error("Failed to upsert {} heatmap rollups, will retry: {}", rows.size(), e.getMessage());
+            synchronized (this) {
+                if (pending.size() + batch.size() > maxPendingCells) {
+                    log.warn("Heatmap rollup buffer full, {} cells dropped (use POST /api/heatmap/rebuild)",
+                            batch.size());
+                    return;
+                }
+                batch.forEach((key, counts) -> {
+                    long[] target = pending.computeIfAbsent(key, k -> new long[2]);
+                    target[0] += counts[0];
+                    target[1] += counts[1];
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Density per 64 px cell at the given zoom, in [from, to) (rounded outwards to whole hours)
+     * metric = density (all samples) or idle (cells where vehicles stood IDLE / stationary); empty cells are omitted.
+     * Edges older than the hourly retention are widened to whole days (only daily rows are left there).
+     */
+    public List<HeatmapCellDTO> getHeatmap(LocalDateTime from, LocalDateTime to, int zoom, String bbox, String type,
+            String metric) {
+        if (zoom < 0 || zoom > 22)
+            throw new RuntimeException("zoom must be between 0 and 22");
+        boolean idleOnly = "idle".equalsIgnoreCase(metric);
+        if (metric != null && !idleOnly && !"density".equalsIgnoreCase(metric))
+            throw new RuntimeException("metric must be density or idle");
+        if (!from.isBefore(to))
+            throw new RuntimeException("Invalid time window: 'from' must be before 'to'");
+        if (Duration.between(from, to).toDays() > maxRangeDays)
+            throw new RuntimeException("Time window must not exceed " + maxRangeDays + " days");
+        double[] box = bbox != null ? VehicleService.parseBoundingBox(bbox) : new double[] {-90, -180, 90, 180};
+        String vehicleType = type != null && !type.isBlank() ? type : null;
+
+        // Cel mai putin fin nivel stocat care e cel putin la fel de fin ca cel cerut (restul se comaseaza in SQL)
+        int gridLevel = zoom + LEVEL_OFFSET;
+        int storedLevel = levels[levels.length - 1];
+        for (int level : levels) {
+            if (level >= gridLevel) {
+                storedLevel = level;
+                break;
+            }
+        }
+        int shift = Math.max(0, storedLevel - gridLevel);
+        int outputLevel = storedLevel - shift;
+        long minX = cellIndex(WebMercator.x(box[1]), storedLevel);
+        long maxX = cellIndex(WebMercator.x(box[3]), storedLevel);
+        long minY = cellIndex(WebMercator.y(box[2]), storedLevel); // y creste spre sud
+        long maxY = cellIndex(WebMercator.y(box[0]), storedLevel);
+
+        // Orele incomplete de la capete din bucket-urile orare, zilele intregi din cele zilnice
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = to.truncatedTo(ChronoUnit.HOURS);
+        if (end.isBefore(to))
+            end = end.plusHours(1);
+        LocalDateTime hourlyKept = LocalDate.now().minusDays(hourlyRetentionDays).atStartOfDay();
+        if (start.isBefore(hourlyKept))
+            start = start.truncatedTo(ChronoUnit.DAYS);
+        if (end.isBefore(hourlyKept) && end.isAfter(end.truncatedTo(ChronoUnit.DAYS)))
+            end = end.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        LocalDateTime firstDay = start.truncatedTo(ChronoUnit.DAYS);
+        if (firstDay.isBefore(start))
+            firstDay = firstDay.plusDays(1);
+        LocalDateTime lastDay = end.truncatedTo(ChronoUnit.DAYS);
+
+        Map<Long, long[]> cells = new HashMap<>();
+        long size = 1L << outputLevel;
+        PositionRollupRepository.CellHandler handler = (x, y, samples, idleMillis) -> {
+            long[] counts = cells.computeIfAbsent(y * size + x, k -> new long[2]);
+            counts[0] += samples;
+            counts[1] += idleMillis;
+        };
+        if (firstDay.isBefore(lastDay)) {
+            if (start.isBefore(firstDay))
+                rollupRepository.sumCells(HOURLY, storedLevel, shift, start, firstDay, minX, maxX, minY, maxY,
+                        vehicleType, handler);
+            rollupRepository.sumCells(DAILY, storedLevel, shift, firstDay, lastDay, minX, maxX, minY, maxY,
+                    vehicleType, handler);
+            if (lastDay.isBefore(end))
+                rollupRepository.sumCells(HOURLY, storedLevel, shift, lastDay, end, minX, maxX, minY, maxY,
+                        vehicleType, handler);
+        } else {
+            rollupRepository.sumCells(HOURLY, storedLevel, shift, start, end, minX, maxX, minY, maxY, vehicleType,
+                    handler);
+        }
+
+        List<HeatmapCellDTO> result = new ArrayList<>(cells.size());
+        cells.forEach((key, counts) -> {
+            if (idleOnly && counts[1] == 0)
+                return;
+            long x = key % size;
+            long y = key / size;
+            result.add(new HeatmapCellDTO(outputLevel - LEVEL_OFFSET, x, y, WebMercator.lat((y + 0.5) / size),
+                    WebMercator.lng((x + 0.5) / size), counts[0], counts[1] / 1000));
+        });
+        return result;
+    }
+
+    /**
+     * Recompute the rollups of [from, to) (whole days) from vehicle_position, e.g. after a failed flush
+     * History appends wait meanwhile (see getHistoryWriteFence); counters already pending for the range are
+     * dropped, since the rebuild reads their points from the table.
+     */
+    public int rebuild(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime end = to.truncatedTo(ChronoUnit.DAYS);
+        if (end.isBefore(to))
+            end = end.plusDays(1);
+        if (!start.isBefore(end))
+            throw new RuntimeException("Invalid time window: 'from' must be before 'to'");
+        LocalDateTime rangeStart = start;
+        LocalDateTime rangeEnd = end;
+        rebuildFence.writeLock().lock();
+        try {
+            flush();
+            synchronized (this) {
+                pending.keySet().removeIf(key -> !key.bucketStart.isBefore(rangeStart)
+                        && key.bucketStart.isBefore(rangeEnd));
+            }
+            int rows = rollupRepository.rebuild(start, end, levels, idleSpeedKmh, idleMaxDwellSeconds * 1000);
+            log.info("Rebuilt heatmap rollups for [{}, {}): {} rows", start, end, rows);
+            return rows;
+        } finally {
+            rebuildFence.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Nightly retention: hourly rows are only needed for the partial hours at the edges of recent queries,
+     * daily rows are kept much longer
+     */
+    @Scheduled(cron = "${app.heatmap.retention-cron:0 15 0 * * *}")
+    public void applyRetention() {
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        int hourly = rollupRepository.deleteOlderThan(HOURLY, today.minusDays(hourlyRetentionDays));
+        int daily = rollupRepository.deleteOlderThan(DAILY, today.minusDays(dailyRetentionDays));
+        synchronized (this) {
+            // Vehicule sterse / oprite de mult - ultima lor mostra nu mai primeste timp
+            lastSamples.values().removeIf(s -> s.recordedAt.isBefore(today.minusDays(1)));
+        }
+        log.info("Heatmap retention: deleted {} hourly and {} daily rollup rows", hourly, daily);
+    }
+
+    private void addToCells(LastSample sample, long samples, long idleMillis) {
+        LocalDateTime hour = sample.recordedAt.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime day = hour.truncatedTo(ChronoUnit.DAYS);
+        for (int level : levels) {
+            int cellX = cellIndex(sample.x, level);
+            int cellY = cellIndex(sample.y, level);
+            add(new RollupKey(HOURLY, level, hour, cellX, cellY, sample.type), samples, idleMillis);
+            add(new RollupKey(DAILY, level, day, cellX, cellY, sample.type), samples, idleMillis);
+        }
+    }
+
+    private void add(RollupKey key, long samples, long idleMillis) {
+        long[] counts = pending.get(key);
+        if (counts == null) {
+            if (pending.size() >= maxPendingCells) {
+                // DB-ul nu mai primeste upsert-uri de mult; istoricul brut ramane, rebuild le poate reface
+                if (droppedSamples++ % 10000 == 0)
+                    log.warn("Heatmap rollup buffer full, {} samples not counted so far", droppedSamples);
+                return;
+            }
+            counts = new long[2];
+            pending.put(key, counts);
+        }
+        counts[0] += samples;
+        counts[1] += idleMillis;
+    }
+
+    private static int cellIndex(double normalized, int level) {
+        long size = 1L << level;
+        return (int) Math.max(0, Math.min(size - 1, (long) Math.floor(normalized * size)));
+    }
+
+    private static final class LastSample {
+        private final LocalDateTime recordedAt;
+        private final double x;
+        private final double y;
+        private final boolean idle;
+        private final String type;
+
+        LastSample(LocalDateTime recordedAt, double x, double y, boolean idle, String type) {
+            this.recordedAt = recordedAt;
+            this.x = x;
+            this.y = y;
+            this.idle = idle;
+            this.type = type;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class RollupKey {
+        private final char granularity;
+        private final int level;
+        private final LocalDateTime bucketStart;
+        private final int cellX;
+        private final int cellY;
+        private final String vehicleType;
+
+        RollupKey(char granularity, int level, LocalDateTime bucketStart, int cellX, int cellY, String vehicleType) {
+            this.granularity = granularity;
+            this.level = level;
+            this.bucketStart = bucketStart;
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.vehicleType = vehicleType;
+        }
+    }
+}
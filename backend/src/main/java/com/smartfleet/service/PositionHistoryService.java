@@ -0,0 +1,176 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.VehiclePositionDTO;
+import com.smartfleet.repository.VehiclePositionHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Append-only position history (trail) for every vehicle
+ * Accepted samples are buffered in memory and appended in bulk to the day-partitioned
+ * vehicle_position table; partitions older than the retention window are dropped whole.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PositionHistoryService {
+
+    private final VehiclePositionHistoryRepository historyRepository;
+    private final HeatmapService heatmapService;
+
+    @Value("${app.history.buffer-capacity:500000}")
+    private int bufferCapacity;
+
+    @Value("${app.history.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${app.history.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${app.history.max-track-points:10000}")
+    private int maxTrackPoints;
+
+    private BlockingQueue<VehiclePositionDTO> buffer;
+    // Batch-ul care nu a putut fi scris; reincercat primul, nu pus inapoi in buffer (unde s-ar putea pierde)
+    private final List<VehiclePositionDTO> pendingBatch = new ArrayList<>();
+    private final Set<LocalDate> knownPartitions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        try {
+            historyRepository.createParentTable();
+            ensurePartition(LocalDate.now());
+            ensurePartition(LocalDate.now().plusDays(1));
+        } catch (Exception e) {
+            log.error("Cannot prepare vehicle_position table: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queue a point for the history; never blocks the ingest path
+     * Returns false when the buffer is full (DB slow or down) and the point was not queued.
+     */
+    public boolean record(Long vehicleId, Double lat, Double lng, Double speed, String status, LocalDateTime at) {
+        return record(new VehiclePositionDTO(vehicleId, at, lat, lng, speed, status));
+    }
+
+    public boolean record(VehiclePositionDTO point) {
+        if (buffer.offer(point))
+            return true;
+        // Bufferul e plin - nu blocam camioanele; apelantul decide (pipeline-ul reincearca, WAL-ul il pastreaza)
+        if (dropped.incrementAndGet() % 10000 == 1) {
+            log.warn("Position history buffer full, {} points rejected so far", dropped.get());
+        }
+        return false;
+    }
+
+    /**
+     * Append everything buffered so far; returns false if a batch failed (it is re-queued)
+     */
+    @Scheduled(fixedDelayString = "${app.history.flush-interval-ms:1000}")
+    public synchronized boolean flush() {
+        List<VehiclePositionDTO> batch = pendingBatch;
+        while (!batch.isEmpty() || buffer.drainTo(batch, batchSize) > 0) {
+            // Scriere + numarare in heatmap impreuna: un rebuild al rollup-urilor nu le vede pe jumatate
+            Lock fence = heatmapService.getHistoryWriteFence();
+            fence.lock();
+            try {
+                try {
+                    batch.stream().map(p -> p.getRecordedAt().toLocalDate()).distinct().forEach(this::ensurePartition);
+                    historyRepository.batchInsert(batch);
+                } catch (Exception e) {
+                    log.error("Failed to append {} history points, will retry: {}", batch.size(), e.getMessage());
+                    return false;
+                }
+                // Doar punctele scrise efectiv ajung in rollup-urile heatmap-ului
+                heatmapService.accumulate(batch);
+            } finally {
+                fence.unlock();
+            }
+            batch.clear();
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Daily maintenance: pre-create tomorrow's partition and drop the expired ones
+     */
+    @Scheduled(cron = "${app.history.retention-cron:0 5 0 * * *}")
+    public void maintainPartitions() {
+        ensurePartition(LocalDate.now().plusDays(1));
+
+        LocalDate oldestKept = LocalDate.now().minusDays(retentionDays);
+        Set<LocalDate> expired = new TreeSet<>();
+        for (String name : historyRepository.findPartitionNames()) {
+            if (!name.startsWith(VehiclePositionHistoryRepository.PARTITION_PREFIX))
+                continue;
+            try {
+                LocalDate day = LocalDate.parse(name.substring(VehiclePositionHistoryRepository.PARTITION_PREFIX.length()),
+                        VehiclePositionHistoryRepository.PARTITION_SUFFIX);
+                if (day.isBefore(oldestKept))
+                    expired.add(day);
+            } catch (DateTimeParseException e) {
+                log.warn("Ignoring unexpected partition {}", name);
+            }
+        }
+
+        for (LocalDate day : expired) {
+            historyRepository.dropPartition(day);
+            knownPartitions.remove(day);
+            log.info("Dropped position history partition for {}", day);
+        }
+    }
+
+    /**
+     * Trail of a vehicle in [from, to), oldest first
+     */
+    public List<VehiclePositionDTO> getTrack(Long vehicleId, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to))
+            throw new RuntimeException("Invalid time window: 'from' must be before 'to'");
+        return historyRepository.findTrack(vehicleId, from, to, maxTrackPoints);
+    }
+
+    /**
+     * Where was the vehicle at the given moment (last point at or before it, same or previous day)
+     */
+    public Optional<VehiclePositionDTO> getPositionAt(Long vehicleId, LocalDateTime at) {
+        return historyRepository.findPositionAt(vehicleId, at, at.minusDays(1));
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void ensurePartition(LocalDate day) {
+        if (knownPartitions.contains(day))
+            return;
+        historyRepository.createPartition(day);
+        knownPartitions.add(day);
+    }
+}
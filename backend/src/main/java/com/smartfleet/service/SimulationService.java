@@ -1,80 +1,316 @@
 package com.smartfleet.service;
 
-import com.smartfleet.entity.Trip;
-import com.smartfleet.entity.Vehicle;
+import com.smartfleet.dto.ActiveTripDTO;
+import com.smartfleet.dto.SimulationStatsDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.geo.RoutePolyline;
 import com.smartfleet.repository.TripRepository;
-import com.smartfleet.repository.VehicleRepository;
+import com.smartfleet.repository.VehicleLocationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Serviciu care simulează mișcarea vehiculelor și verifică starea lor.
+ * Vehiculele active sunt impartite pe shard-uri (id % workers); fiecare worker avanseaza
+ * vehiculele lui in memorie (VehiclePositionStore) si le scrie in DB cu un singur batch JDBC.
+ * In modul "route" fiecare cursa primeste un traseu precalculat intre start si destinatie
+ * (RoutePolyline) pe care vehiculul inainteaza cu viteza * dt; kilometrajul e distanta reala parcursa.
+ * Cursele fara coordonate (sau modul "random") folosesc vechiul random walk.
+ * In cluster fiecare vehicul e simulat de un singur nod (id % app.cluster.node-count == node-index);
+ * celelalte noduri primesc starea lui prin FleetBroadcaster.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SimulationService {
 
-    private final VehicleRepository vehicleRepository;
     private final TripRepository tripRepository;
-    private final SimpMessagingTemplate messagingTemplate; // Pentru WebSocket
-    private final Random random = new Random();
+    private final VehicleLocationRepository vehicleLocationRepository;
+    private final FleetBroadcaster fleetBroadcaster; // Pentru WebSocket (un cadru per tick)
+    private final VehiclePositionStore positionStore;
+    private final PositionHistoryService positionHistoryService;
+    private final GeofenceService geofenceService;
 
-    // Rulează la fiecare 5 secunde
-    @Scheduled(fixedRate = 5000)
-    @Transactional
+    // 0 = cate un worker per core
+    @Value("${app.simulation.workers:0}")
+    private int workers;
+
+    @Value("${app.simulation.tick-ms:5000}")
+    private long tickMs;
+
+    // route = urmeaza traseul cursei, random = random walk in jurul pozitiei curente
+    @Value("${app.simulation.mode:route}")
+    private String mode;
+
+    @Value("${app.simulation.speed-kmh:70}")
+    private double speedKmh;
+
+    @Value("${app.simulation.route-step-m:50}")
+    private double routeStepMeters;
+
+    @Value("${app.simulation.route-max-points:2000}")
+    private int routeMaxPoints;
+
+    // Nodul care simuleaza un vehicul: id % nodeCount == nodeIndex
+    @Value("${app.cluster.node-index:0}")
+    private int nodeIndex;
+
+    @Value("${app.cluster.node-count:1}")
+    private int nodeCount;
+
+    // Traseul si progresul per vehicul; o intrare e atinsa doar de worker-ul shard-ului ei
+    private final Map<Long, RouteProgress> routes = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+    private int shardCount;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong totalTickMs = new AtomicLong();
+    private volatile long lastTickMs;
+    private volatile long maxTickMs;
+    private volatile int activeVehicles;
+
+    @PostConstruct
+    public void start() {
+        if (nodeCount < 1 || nodeIndex < 0 || nodeIndex >= nodeCount)
+            throw new IllegalStateException("app.cluster.node-index must be between 0 and app.cluster.node-count - 1");
+        shardCount = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(shardCount, task -> {
+            Thread thread = new Thread(task, "simulation-shard-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Fleet simulation uses {} shard(s), tick {} ms, node {} of {}", shardCount, tickMs, nodeIndex,
+                nodeCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // Rulează la fiecare 5 secunde (app.simulation.tick-ms); un tick nu porneste pana nu s-a terminat cel anterior
+    @Scheduled(fixedRateString = "${app.simulation.tick-ms:5000}")
     public void simulateFleetMovement() {
-        List<Trip> activeTrips = tripRepository.findByStatus("IN_PROGRESS");
+        long start = System.nanoTime();
+        // Un vehicul pe mai multe curse IN_PROGRESS: ultima cursa castiga; doar vehiculele acestui nod
+        Map<Long, ActiveTripDTO> trips = new LinkedHashMap<>();
+        for (ActiveTripDTO trip : tripRepository.findActiveTripsByStatus("IN_PROGRESS")) {
+            if (Math.floorMod(trip.getVehicleId(), (long) nodeCount) == nodeIndex)
+                trips.put(trip.getVehicleId(), trip);
+        }
+        activeVehicles = trips.size();
+        routes.keySet().retainAll(trips.keySet());
+        if (trips.isEmpty())
+            return;
 
-        if (activeTrips.isEmpty())
+        // Shard stabil per vehicul: acelasi worker il avanseaza la fiecare tick
+        // (id / nodeCount: id-urile unui nod au acelasi rest, deci id % shardCount ar umple doar o parte din shard-uri)
+        List<List<ActiveTripDTO>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>(trips.size() / shardCount + 1));
+        }
+        for (ActiveTripDTO trip : trips.values()) {
+            shards.get((int) Math.floorMod(Math.floorDiv(trip.getVehicleId(), (long) nodeCount), (long) shardCount))
+                    .add(trip);
+        }
+
+        List<Callable<Integer>> tasks = new ArrayList<>(shardCount);
+        for (List<ActiveTripDTO> shard : shards) {
+            if (!shard.isEmpty())
+                tasks.add(() -> simulateShard(shard));
+        }
+
+        try {
+            for (Future<Integer> result : executor.invokeAll(tasks)) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    log.error("Simulation shard failed: {}", e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return;
+        }
 
-        for (Trip trip : activeTrips) {
-            Vehicle vehicle = trip.getVehicle();
+        recordTick(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), trips.size());
+    }
+
+    public SimulationStatsDTO getStats() {
+        long count = ticks.get();
+        return new SimulationStatsDTO(shardCount, tickMs, activeVehicles, count, overruns.get(), lastTickMs,
+                maxTickMs, count == 0 ? 0 : (double) totalTickMs.get() / count);
+    }
+
+    private int simulateShard(List<ActiveTripDTO> trips) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<VehicleResponseDTO> moved = new ArrayList<>(trips.size());
+        double[] point = new double[2];
+
+        for (ActiveTripDTO trip : trips) {
+            Long id = trip.getVehicleId();
+            // Pornim de la pozitia live (poate fi mai noua decat cea din DB)
+            VehicleResponseDTO vehicle = positionStore.get(id).orElse(null);
             if (vehicle == null)
                 continue;
 
-            // 1. Simulare Mișcare (Random Walk simplu în jurul poziției curente)
-            // Într-un sistem real, am interpola între startLocation și endLocation
-            double latChange = (random.nextDouble() - 0.5) * 0.002; // aprox +/- 100m
-            double lngChange = (random.nextDouble() - 0.5) * 0.002;
-
-            vehicle.setLat(vehicle.getLat() + latChange);
-            vehicle.setLng(vehicle.getLng() + lngChange);
+            // 1. Simulare Mișcare: de-a lungul traseului cursei sau random walk
+            RouteProgress progress = routeFor(trip, vehicle);
+            double lat;
+            double lng;
+            double distantaParcursa; // km in acest tick
+            Double speed = null;
+            if (progress != null) {
+                distantaParcursa = progress.advance(System.nanoTime(), tickMs, point) / 1000.0;
+                lat = point[0];
+                lng = point[1];
+                speed = distantaParcursa > 0 ? progress.speedKmh : 0.0;
+            } else if (vehicle.getLat() != null && vehicle.getLng() != null) {
+                lat = vehicle.getLat() + (random.nextDouble() - 0.5) * 0.002; // aprox +/- 100m
+                lng = vehicle.getLng() + (random.nextDouble() - 0.5) * 0.002;
+                distantaParcursa = 0.5;
+            } else {
+                continue;
+            }
 
             // 2. Actualizare Kilometraj
-            double distantaParcursa = 0.5; // km per tick
-            vehicle.setTotalKm((vehicle.getTotalKm() != null ? vehicle.getTotalKm() : 0) + distantaParcursa);
-
-            // 3. Verificare Geofencing (Ex: Distanță față de centru Cluj > 50km)
-            // Centru Cluj: 46.7712, 23.5889
-            double distFromCenter = Math
-                    .sqrt(Math.pow(vehicle.getLat() - 46.7712, 2) + Math.pow(vehicle.getLng() - 23.5889, 2));
-            if (distFromCenter > 0.5) { // Aprox 50km în grade (foarte simplificat)
-                log.warn("🚨 GEOFENCE ALERT: Vehicle {} is out of bounds!", vehicle.getPlate());
-            }
+            double totalKm = (vehicle.getTotalKm() != null ? vehicle.getTotalKm() : 0) + distantaParcursa;
+
+            // 3. Verificare Geofencing: zonele definite de admin (GeofenceService, index spatial)
+            geofenceService.onPosition(id, lat, lng);
 
             // 4. Verificare Mentenanță
             // Dacă a mers 10.000 km de la ultima revizie
-            double kmSinceService = vehicle.getTotalKm()
-                    - (vehicle.getLastServiceKm() != null ? vehicle.getLastServiceKm() : 0);
-            if (kmSinceService > 10000) {
-                vehicle.setStatus("MAINTENANCE");
+            String status = vehicle.getStatus();
+            double kmSinceService = totalKm - (vehicle.getLastServiceKm() != null ? vehicle.getLastServiceKm() : 0);
+            if (kmSinceService > 10000 && !"MAINTENANCE".equals(status)) {
+                status = "MAINTENANCE";
                 log.warn("🔧 MAINTENANCE ALERT: Vehicle {} needs service immediately!", vehicle.getPlate());
             }
 
-            vehicleRepository.save(vehicle);
+            // Ajuns la destinatie: nimic nou de scris sau trimis
+            if (distantaParcursa == 0 && Objects.equals(lat, vehicle.getLat()) && Objects.equals(lng, vehicle.getLng())
+                    && Objects.equals(status, vehicle.getStatus()) && Objects.equals(speed, vehicle.getSpeed()))
+                continue;
+
+            VehicleResponseDTO next = positionStore.applySimulation(id, lat, lng, totalKm, status, speed);
+            if (next != null)
+                moved.add(next);
+        }
+
+        // O singura scriere in DB pentru tot shard-ul
+        try {
+            vehicleLocationRepository.batchUpdateSimulated(moved);
+        } catch (Exception e) {
+            log.error("Failed to persist {} simulated vehicles: {}", moved.size(), e.getMessage());
+            // Flush-ul write-behind scrie aceeasi stare (inclusiv total_km) si reincearca pana reuseste
+            positionStore.markDirty(moved.stream().map(VehicleResponseDTO::getId).toList());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (VehicleResponseDTO vehicle : moved) {
+            positionHistoryService.record(vehicle.getId(), vehicle.getLat(), vehicle.getLng(), vehicle.getSpeed(),
+                    vehicle.getStatus(), now);
+            // 5. Trimite actualizarea prin WebSocket la Frontend (Live Map), comasata in cadrul urmator
+            fleetBroadcaster.publish(vehicle);
+        }
+        return moved.size();
+    }
+
+    /**
+     * Route of the vehicle's current trip, built on first use; null for random-walk vehicles
+     */
+    private RouteProgress routeFor(ActiveTripDTO trip, VehicleResponseDTO vehicle) {
+        if (!"route".equalsIgnoreCase(mode) || trip.getEndLat() == null || trip.getEndLng() == null)
+            return null;
+        RouteProgress progress = routes.get(vehicle.getId());
+        if (progress != null && progress.tripId == trip.getTripId())
+            return progress;
+
+        // Fara punct de start pornim de unde se afla vehiculul
+        Double startLat = trip.getStartLat() != null ? trip.getStartLat() : vehicle.getLat();
+        Double startLng = trip.getStartLng() != null ? trip.getStartLng() : vehicle.getLng();
+        if (startLat == null || startLng == null)
+            return null;
 
-            // 5. Trimite actualizarea prin WebSocket la Frontend (Live Map)
-            // Trimitem JSON direct
-            messagingTemplate.convertAndSend("/topic/vehicles", vehicle);
+        RoutePolyline route = RoutePolyline.between(startLat, startLng, trip.getEndLat(), trip.getEndLng(),
+                trip.getTripId(), routeStepMeters, routeMaxPoints);
+        // Viteza de croaziera variaza +/-15% intre curse, dar e stabila pentru aceeasi cursa
+        double tripSpeedKmh = speedKmh * (0.85 + 0.3 * new Random(trip.getTripId()).nextDouble());
+        progress = new RouteProgress(trip.getTripId(), route, tripSpeedKmh);
+        // Dupa un restart / o cursa preluata vehiculul e deja pe drum: continuam de unde este, nu de la start
+        if (vehicle.getLat() != null && vehicle.getLng() != null)
+            progress.distanceMeters = route.distanceAlong(vehicle.getLat(), vehicle.getLng());
+        routes.put(vehicle.getId(), progress);
+        return progress;
+    }
+
+    private void recordTick(long durationMs, int vehicles) {
+        ticks.incrementAndGet();
+        totalTickMs.addAndGet(durationMs);
+        lastTickMs = durationMs;
+        if (durationMs > maxTickMs)
+            maxTickMs = durationMs;
+        if (durationMs > tickMs) {
+            overruns.incrementAndGet();
+            log.warn("Simulation tick took {} ms for {} vehicles (interval {} ms)", durationMs, vehicles, tickMs);
+        }
+    }
+
+    private static final class RouteProgress {
+        private final long tripId;
+        private final RoutePolyline route;
+        private final double speedKmh;
+        private double distanceMeters;
+        private long lastAdvanceNanos;
+
+        private RouteProgress(long tripId, RoutePolyline route, double speedKmh) {
+            this.tripId = tripId;
+            this.route = route;
+            this.speedKmh = speedKmh;
+        }
+
+        /**
+         * Move forward by speed * dt (dt = real time since the previous tick, at most 2 ticks);
+         * writes the new position into point and returns the metres covered
+         */
+        private double advance(long nowNanos, long tickMs, double[] point) {
+            double covered = 0;
+            if (lastAdvanceNanos != 0) {
+                double dtSeconds = Math.min((nowNanos - lastAdvanceNanos) / 1e9, 2 * tickMs / 1000.0);
+                double next = Math.min(route.getLengthMeters(), distanceMeters + speedKmh / 3.6 * dtSeconds);
+                covered = next - distanceMeters;
+                distanceMeters = next;
+            }
+            lastAdvanceNanos = nowNanos;
+            route.positionAt(distanceMeters, point);
+            return covered;
         }
     }
-}
\ No newline at end of file
+}
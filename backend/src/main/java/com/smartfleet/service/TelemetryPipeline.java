@@ -0,0 +1,400 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.dto.TelemetryStatsDTO;
+import com.smartfleet.dto.VehiclePositionDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.telemetry.TelemetryRingBuffer;
+import com.smartfleet.telemetry.VehicleSequenceTracker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Telemetry ingestion pipeline: many producers (REST, STOMP), one consumer thread
+ * Controllers only publish samples into a bounded ring buffer and return immediately.
+ * The consumer drains the ring in batches and runs validation -> dedup -> dead-band ->
+ * persistence (position store + history) -> geofences -> WebSocket broadcast, once per batch.
+ * When the ring is full publishing fails fast, so callers can answer 429 instead of
+ * tying up request threads. A sample is appended to the WAL before it is queued, so an
+ * accepted sample is never lost (see TelemetryWalService). A sample counts as applied in the WAL only once its
+ * history point is queued too; while the history buffer is full the point is retried, so a checkpoint never
+ * deletes a segment holding a point that only the WAL still has. A sample whose processing throws is not marked
+ * applied either: its segment stays until the next start replays it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryPipeline {
+
+    // vehicle.status e VARCHAR(20)
+    private static final int MAX_STATUS_LENGTH = 20;
+    // Ora dispozitivului e folosita doar in fereastra [-7 zile, +1 minut] fata de server
+    private static final long MAX_CLOCK_SKEW_MS = 60_000;
+    private static final long MAX_SAMPLE_AGE_MS = 7L * 24 * 3600 * 1000;
+
+    private final VehiclePositionStore positionStore;
+    private final PositionHistoryService positionHistoryService;
+    private final FleetBroadcaster fleetBroadcaster;
+    private final DeadBandFilter deadBandFilter;
+    private final TelemetryWalService walService;
+    private final TelemetryRecorder recorder;
+    private final GeofenceService geofenceService;
+
+    @Value("${app.telemetry.pipeline.capacity:65536}")
+    private int capacity;
+
+    @Value("${app.telemetry.pipeline.batch-size:1024}")
+    private int batchSize;
+
+    @Value("${app.telemetry.pipeline.idle-park-micros:500}")
+    private long idleParkMicros;
+
+    @Value("${app.telemetry.pipeline.history-retry-capacity:100000}")
+    private int historyRetryCapacity;
+
+    @Value("${app.telemetry.sequence.reset-window:100000}")
+    private long sequenceResetWindow;
+
+    private TelemetryRingBuffer<Entry> ring;
+    // Scris si citit DOAR de thread-ul consumator
+    private VehicleSequenceTracker sequenceTracker;
+    private final ArrayDeque<HistoryRetry> historyRetries = new ArrayDeque<>();
+    private Thread consumer;
+    private volatile boolean running;
+
+    // Contoare (scrise de producatori sau de consumator, citite de /api/telemetry/stats)
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong walErrors = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong unknownVehicle = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+    private final AtomicLong deadBandSuppressed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong historyDeferred = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile int lastBatchSize;
+
+    @PostConstruct
+    public void start() {
+        ring = new TelemetryRingBuffer<>(capacity);
+        sequenceTracker = new VehicleSequenceTracker(positionStore.getAll().size() * 2, sequenceResetWindow);
+        // Marcajele din replay-ul WAL (walService e initializat inaintea pipeline-ului)
+        VehicleSequenceTracker replayMarks = walService.takeReplayMarks();
+        if (replayMarks != null)
+            sequenceTracker.putAll(replayMarks);
+        running = true;
+        consumer = new Thread(this::runConsumer, "telemetry-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+        log.info("Telemetry pipeline started (capacity {}, batch size {})", ring.getCapacity(), batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Log the sample to the WAL and queue it; returns false if the pipeline is full
+     * (or the WAL cannot be written), so the caller never acknowledges a sample that could be lost
+     */
+    public boolean publish(LocationSampleDTO sample) {
+        return publishAll(Collections.singletonList(sample)) == 1;
+    }
+
+    /**
+     * Like publish, for a sample replayed from a recording: it is not recorded again (TelemetryReplayService)
+     */
+    public boolean publishReplayed(LocationSampleDTO sample) {
+        return publishAll(Collections.singletonList(sample), false) == 1;
+    }
+
+    /**
+     * Queue a batch all or nothing: the ring slots are reserved for every sample at once (0 if they do not fit),
+     * then each sample is logged to the WAL. Returns how many were queued - fewer only if the WAL failed.
+     */
+    public int publishAll(List<LocationSampleDTO> samples) {
+        return publishAll(samples, true);
+    }
+
+    private int publishAll(List<LocationSampleDTO> samples, boolean record) {
+        if (samples.isEmpty())
+            return 0;
+        long first = ring.tryClaim(samples.size());
+        if (first < 0) {
+            rejectedQueueFull.addAndGet(samples.size());
+            return 0;
+        }
+
+        long receivedAtMillis = System.currentTimeMillis();
+        int queued = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            // Slotul e deja rezervat: daca WAL-ul nu merge, il umplem cu o intrare pe care consumatorul o sare
+            Entry entry = SKIPPED;
+            try {
+                entry = new Entry(samples.get(i), receivedAtMillis, walService.append(samples.get(i),
+                        receivedAtMillis), record);
+                queued++;
+            } catch (Exception e) {
+                if (walErrors.incrementAndGet() % 1000 == 1) {
+                    log.error("Telemetry WAL append failed, rejecting samples: {}", e.getMessage());
+                }
+            }
+            ring.set(first + i, entry);
+        }
+        published.addAndGet(queued);
+        return queued;
+    }
+
+    /**
+     * Adaptive rate hint for a truck (see DeadBandFilter)
+     */
+    public boolean isKnownVehicle(Long vehicleId) {
+        return positionStore.get(vehicleId).isPresent();
+    }
+
+    public long getReportIntervalMs(Long vehicleId) {
+        return deadBandFilter.getReportIntervalMs(vehicleId);
+    }
+
+    public TelemetryStatsDTO getStats() {
+        return new TelemetryStatsDTO(ring.getCapacity(), ring.size(), published.get(), rejectedQueueFull.get(),
+                processed.get(), invalid.get(), unknownVehicle.get(), duplicates.get(), late.get(),
+                deadBandSuppressed.get(), batches.get(), lastBatchSize, walErrors.get(), walService.getSegmentCount());
+    }
+
+    private void runConsumer() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || ring.size() > 0) {
+            retryHistory();
+            // Prea multe puncte de istoric in asteptare (DB cazut): nu mai consumam, ring-ul se umple si
+            // producatorii primesc 429 - mai bine decat sa pierdem puncte care exista doar in WAL
+            if (historyRetries.size() >= historyRetryCapacity) {
+                if (!running)
+                    break; // ce a ramas in ring e in WAL si se reia la urmatorul start
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+            if (ring.drainTo(batch, batchSize) == 0) {
+                recorder.flush();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(idleParkMicros));
+                continue;
+            }
+            try {
+                process(batch);
+            } catch (Exception e) {
+                log.error("Telemetry batch of {} samples failed: {}", batch.size(), e.getMessage(), e);
+            }
+            // Doar intrarile procesate complet; restul raman neaplicate in WAL
+            markApplied(batch);
+            batch.clear();
+        }
+    }
+
+    // Intrarile vin in ordinea din WAL, deci segmentele formeaza secvente continue
+    private void markApplied(List<Entry> batch) {
+        long segment = -1;
+        int run = 0;
+        for (Entry entry : batch) {
+            // Punctul de istoric asteapta in historyRetries; se marcheaza aplicat cand intra in buffer
+            if (!entry.applied || entry.historyPending)
+                continue;
+            if (entry.walSegment != segment) {
+                walService.markApplied(segment, run);
+                segment = entry.walSegment;
+                run = 0;
+            }
+            run++;
+        }
+        walService.markApplied(segment, run);
+    }
+
+    private void process(List<Entry> batch) {
+        // Un singur broadcast per vehicul per batch (ultima stare castiga)
+        Map<Long, VehicleResponseDTO> changed = new LinkedHashMap<>();
+
+        for (Entry entry : batch) {
+            if (entry == SKIPPED)
+                continue;
+            try {
+                processEntry(entry, changed);
+                entry.applied = true;
+            } catch (RuntimeException e) {
+                // Mostra ramane neaplicata in WAL: segmentul ei nu se sterge si e reluata la urmatorul start
+                if (failed.incrementAndGet() % 1000 == 1) {
+                    log.error("Telemetry sample for vehicle {} failed ({} so far): {}",
+                            entry.sample != null ? entry.sample.getVehicleId() : null, failed.get(), e.getMessage(), e);
+                }
+            }
+        }
+
+        // 5. Broadcast catre dashboard-uri
+        fleetBroadcaster.publishAll(changed.values());
+
+        processed.addAndGet(batch.size());
+        batches.incrementAndGet();
+        lastBatchSize = batch.size();
+    }
+
+    private void processEntry(Entry entry, Map<Long, VehicleResponseDTO> changed) {
+        LocationSampleDTO sample = entry.sample;
+        // 0. Inregistrare (optional) a tot ce intra, pentru replay pe un mediu de dev (fara mostrele reluate)
+        if (entry.record)
+            recorder.record(sample, entry.receivedAtMillis);
+
+        // 1. Validare
+        if (!isValidSample(sample)) {
+            invalid.incrementAndGet();
+            return;
+        }
+
+        // 2. Dedup (camionul a retrimis exact aceeasi stare)
+        VehicleResponseDTO current = positionStore.get(sample.getVehicleId()).orElse(null);
+        if (current == null) {
+            unknownVehicle.incrementAndGet();
+            return;
+        }
+        VehicleSequenceTracker.Verdict verdict = sequenceTracker.check(sample.getVehicleId(),
+                orNone(sample.getSequence()), orNone(sample.getTimestamp()));
+        if (verdict == VehicleSequenceTracker.Verdict.DUPLICATE) {
+            duplicates.incrementAndGet();
+            return;
+        }
+        if (verdict == VehicleSequenceTracker.Verdict.LATE) {
+            // Retry intarziat: doar in istoric, nu muta camionul inapoi pe harta
+            late.incrementAndGet();
+            recordHistory(entry, new VehiclePositionDTO(current.getId(), sampleTime(sample, entry.receivedAtMillis),
+                    sample.getLat(), sample.getLng(), sample.getSpeed(),
+                    sample.getStatus() != null ? sample.getStatus() : current.getStatus()));
+            return;
+        }
+        if (isDuplicate(current, sample)) {
+            duplicates.incrementAndGet();
+            return;
+        }
+
+        // 3. Dead-band: miscare de cativa metri, acelasi status (fata de starea live) -> doar in memorie
+        if (!deadBandFilter.accept(sample, current.getStatus(), entry.receivedAtMillis)) {
+            positionStore.applySample(sample, false);
+            deadBandSuppressed.incrementAndGet();
+            return;
+        }
+
+        // 4. Persistare: pozitia live (write-behind) + istoric
+        VehicleResponseDTO live = positionStore.applySample(sample);
+        if (live == null) {
+            unknownVehicle.incrementAndGet();
+            return;
+        }
+        recordHistory(entry, new VehiclePositionDTO(live.getId(), sampleTime(sample, entry.receivedAtMillis),
+                live.getLat(), live.getLng(), sample.getSpeed(), live.getStatus()));
+        geofenceService.onPosition(live.getId(), live.getLat(), live.getLng(),
+                sampleTimeMillis(sample, entry.receivedAtMillis));
+        changed.put(live.getId(), live);
+    }
+
+    static boolean isValidSample(LocationSampleDTO sample) {
+        return sample != null
+                && sample.getVehicleId() != null
+                && sample.getLat() != null && sample.getLat() >= -90 && sample.getLat() <= 90
+                && sample.getLng() != null && sample.getLng() >= -180 && sample.getLng() <= 180
+                && (sample.getStatus() == null || sample.getStatus().length() <= MAX_STATUS_LENGTH);
+    }
+
+    /**
+     * When the point was recorded: device time if it is plausible, otherwise when the server received it
+     */
+    static LocalDateTime sampleTime(LocationSampleDTO sample, long receivedAtMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(sampleTimeMillis(sample, receivedAtMillis)),
+                ZoneId.systemDefault());
+    }
+
+    static long sampleTimeMillis(LocationSampleDTO sample, long receivedAtMillis) {
+        Long timestamp = sample.getTimestamp();
+        boolean plausible = timestamp != null
+                && timestamp <= receivedAtMillis + MAX_CLOCK_SKEW_MS
+                && timestamp >= receivedAtMillis - MAX_SAMPLE_AGE_MS;
+        return plausible ? timestamp : receivedAtMillis;
+    }
+
+    static long orNone(Long value) {
+        return value == null ? VehicleSequenceTracker.NONE : value;
+    }
+
+    private boolean isDuplicate(VehicleResponseDTO current, LocationSampleDTO sample) {
+        return sample.getLat().equals(current.getLat())
+                && sample.getLng().equals(current.getLng())
+                && (sample.getStatus() == null || sample.getStatus().equals(current.getStatus()))
+                && (sample.getSpeed() == null || sample.getSpeed().equals(current.getSpeed()))
+                && (sample.getFuelLevel() == null || sample.getFuelLevel().equals(current.getFuelLevel()));
+    }
+
+    private void recordHistory(Entry entry, VehiclePositionDTO point) {
+        if (positionHistoryService.record(point))
+            return;
+        // Buffer plin: mostra nu se marcheaza aplicata in WAL, deci checkpoint-ul nu sterge segmentul
+        entry.historyPending = true;
+        if (historyDeferred.incrementAndGet() % 10000 == 1) {
+            log.warn("History buffer full, {} points deferred so far ({} waiting)", historyDeferred.get(),
+                    historyRetries.size() + 1);
+        }
+        historyRetries.add(new HistoryRetry(point, entry.walSegment));
+    }
+
+    // In ordinea in care au fost amanate; ne oprim la primul care tot nu incape
+    private void retryHistory() {
+        while (!historyRetries.isEmpty() && positionHistoryService.record(historyRetries.peek().point)) {
+            walService.markApplied(historyRetries.poll().walSegment, 1);
+        }
+    }
+
+    private static final Entry SKIPPED = new Entry(null, 0, -1, false);
+
+    private static final class HistoryRetry {
+        private final VehiclePositionDTO point;
+        private final long walSegment;
+
+        private HistoryRetry(VehiclePositionDTO point, long walSegment) {
+            this.point = point;
+            this.walSegment = walSegment;
+        }
+    }
+
+    private static final class Entry {
+        private final LocationSampleDTO sample;
+        private final long receivedAtMillis;
+        private final long walSegment;
+        private final boolean record;
+        // Scrise / citite doar de consumator
+        private boolean applied;
+        private boolean historyPending;
+
+        private Entry(LocationSampleDTO sample, long receivedAtMillis, long walSegment, boolean record) {
+            this.sample = sample;
+            this.receivedAtMillis = receivedAtMillis;
+            this.walSegment = walSegment;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.telemetry.RecordedSample;
+import com.smartfleet.telemetry.TelemetryRecordingWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Records every incoming telemetry sample into a compact binary file per day
+ * (app.telemetry.recording.dir/telemetry-yyyyMMdd.rec.gz), for accelerated replay on a dev instance.
+ * Called only by the pipeline consumer thread, so the writer needs no locking.
+ */
+@Service
+@Slf4j
+public class TelemetryRecorder {
+
+    static final String FILE_PREFIX = "telemetry-";
+    static final String FILE_SUFFIX = ".rec.gz";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Value("${app.telemetry.recording.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.telemetry.recording.dir:data/recordings}")
+    private String directory;
+
+    private final RecordedSample scratch = new RecordedSample();
+    private TelemetryRecordingWriter writer;
+    private LocalDate writerDay;
+    private volatile long recorded;
+    private boolean unflushed;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(LocationSampleDTO sample, long receivedAtMillis) {
+        if (!enabled || sample == null || sample.getVehicleId() == null || sample.getLat() == null
+                || sample.getLng() == null)
+            return;
+        try {
+            LocalDate day = Instant.ofEpochMilli(receivedAtMillis).atZone(ZoneId.systemDefault()).toLocalDate();
+            if (!day.equals(writerDay))
+                rotate(day, receivedAtMillis);
+
+            scratch.receivedAtMillis = receivedAtMillis;
+            scratch.vehicleId = sample.getVehicleId();
+            scratch.lat = sample.getLat();
+            scratch.lng = sample.getLng();
+            scratch.speed = sample.getSpeed() != null ? sample.getSpeed() : Double.NaN;
+            scratch.fuelLevel = sample.getFuelLevel() != null ? sample.getFuelLevel() : Double.NaN;
+            scratch.status = sample.getStatus();
+            scratch.sequence = sample.getSequence() != null ? sample.getSequence() : RecordedSample.NO_VALUE;
+            scratch.timestamp = sample.getTimestamp() != null ? sample.getTimestamp() : RecordedSample.NO_VALUE;
+            writer.write(scratch);
+            recorded++;
+            unflushed = true;
+        } catch (IOException e) {
+            // Inregistrarea e un instrument de dev - nu oprim ingestia pentru ea
+            log.error("Telemetry recording failed, recording disabled: {}", e.getMessage());
+            enabled = false;
+            closeWriter();
+        }
+    }
+
+    /**
+     * Push buffered samples to the file (the consumer calls this when it goes idle)
+     */
+    public void flush() {
+        if (writer == null || !unflushed)
+            return;
+        try {
+            unflushed = false;
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Telemetry recording flush failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        closeWriter();
+    }
+
+    public long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Recording files available for replay, newest first
+     */
+    public List<String> listRecordings() throws IOException {
+        Path dir = Paths.get(directory);
+        if (!Files.isDirectory(dir))
+            return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = new ArrayList<>(files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX))
+                    .sorted()
+                    .toList());
+            Collections.reverse(names);
+            return names;
+        }
+    }
+
+    /**
+     * Resolve a recording name inside the recording directory (no path traversal)
+     */
+    public Path resolveRecording(String name) {
+        if (name == null || !name.matches("[A-Za-z0-9_.-]+") || !name.endsWith(FILE_SUFFIX))
+            throw new IllegalArgumentException("Invalid recording name: " + name);
+        return Paths.get(directory).resolve(name);
+    }
+
+    private void rotate(LocalDate day, long startMillis) throws IOException {
+        closeWriter();
+        Path dir = Files.createDirectories(Paths.get(directory));
+        Path file = dir.resolve(FILE_PREFIX + DAY.format(day) + FILE_SUFFIX);
+        if (Files.exists(file)) {
+            // Repornire in aceeasi zi: fisier nou, nu stricam stream-ul gzip existent
+            file = dir.resolve(FILE_PREFIX + DAY.format(day) + "-" + startMillis + FILE_SUFFIX);
+        }
+        OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW);
+        writer = new TelemetryRecordingWriter(out, startMillis);
+        writerDay = day;
+        log.info("Recording telemetry to {}", file);
+    }
+
+    private void closeWriter() {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Closing telemetry recording failed: {}", e.getMessage());
+        }
+        writer = null;
+        writerDay = null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.dto.TelemetryReplayStatusDTO;
+import com.smartfleet.telemetry.RecordedSample;
+import com.smartfleet.telemetry.TelemetryRecordingReader;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a telemetry recording through the normal ingest path (TelemetryPipeline.publishReplayed)
+ * at 1x, 10x, 100x... One reader thread keeps the recorded order, so per-vehicle ordering holds;
+ * a full pipeline makes the replay wait instead of dropping samples.
+ * Device timestamps are shifted (and compressed by the speed factor) to the replay start,
+ * so history and sequence checks see them as fresh samples. Replayed samples are never recorded again,
+ * even when recording is enabled on this node.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryReplayService {
+
+    private static final long BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final TelemetryPipeline telemetryPipeline;
+    private final TelemetryRecorder recorder;
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private volatile Thread replayThread;
+    private volatile String file;
+    private volatile double speed;
+    private volatile long lagMs;
+    private volatile String error;
+
+    /**
+     * Start replaying a recording; only one replay runs at a time
+     */
+    public synchronized void start(String recording, double speedFactor) {
+        if (speedFactor <= 0 || speedFactor > 10_000)
+            throw new IllegalArgumentException("Speed must be between 0 and 10000");
+        if (replayThread != null && replayThread.isAlive())
+            throw new IllegalStateException("A replay is already running: " + file);
+        Path path = recorder.resolveRecording(recording);
+        if (!Files.exists(path))
+            throw new IllegalArgumentException("Recording not found: " + recording);
+
+        file = recording;
+        speed = speedFactor;
+        error = null;
+        lagMs = 0;
+        replayed.set(0);
+        backpressureWaits.set(0);
+        replayThread = new Thread(() -> replay(path, speedFactor), "telemetry-replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+        log.info("Replaying {} at {}x", recording, speedFactor);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        Thread thread = replayThread;
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    public TelemetryReplayStatusDTO getStatus() {
+        Thread thread = replayThread;
+        return new TelemetryReplayStatusDTO(file, speed, thread != null && thread.isAlive(), replayed.get(),
+                backpressureWaits.get(), lagMs, error);
+    }
+
+    private void replay(Path path, double speedFactor) {
+        RecordedSample recorded = new RecordedSample();
+        try (TelemetryRecordingReader reader = new TelemetryRecordingReader(Files.newInputStream(path))) {
+            long recordingStart = -1;
+            long replayStartNanos = System.nanoTime();
+            long replayStartMillis = System.currentTimeMillis();
+
+            while (!Thread.currentThread().isInterrupted() && reader.next(recorded)) {
+                if (recordingStart < 0)
+                    recordingStart = recorded.receivedAtMillis;
+
+                // Pastram distanta in timp dintre mostre, comprimata de factorul de viteza
+                long dueNanos = replayStartNanos
+                        + (long) (TimeUnit.MILLISECONDS.toNanos(recorded.receivedAtMillis - recordingStart) / speedFactor);
+                long now = System.nanoTime();
+                if (dueNanos > now) {
+                    lagMs = 0;
+                    LockSupport.parkNanos(dueNanos - now);
+                } else {
+                    lagMs = TimeUnit.NANOSECONDS.toMillis(now - dueNanos);
+                }
+
+                LocationSampleDTO sample = toSample(recorded, recordingStart, replayStartMillis, speedFactor);
+                while (!telemetryPipeline.publishReplayed(sample)) {
+                    if (Thread.currentThread().isInterrupted())
+                        return;
+                    backpressureWaits.incrementAndGet();
+                    LockSupport.parkNanos(BACKOFF_NANOS);
+                }
+                replayed.incrementAndGet();
+            }
+            log.info("Replay of {} finished: {} samples", path.getFileName(), replayed.get());
+        } catch (IOException e) {
+            error = e.getMessage();
+            log.error("Replay of {} failed: {}", path.getFileName(), e.getMessage());
+        }
+    }
+
+    private static LocationSampleDTO toSample(RecordedSample recorded, long recordingStart, long replayStartMillis,
+            double speedFactor) {
+        Long timestamp = null;
+        if (recorded.timestamp != RecordedSample.NO_VALUE)
+            timestamp = replayStartMillis + (long) ((recorded.timestamp - recordingStart) / speedFactor);
+        return new LocationSampleDTO(recorded.vehicleId, recorded.lat, recorded.lng, recorded.status,
+                Double.isNaN(recorded.speed) ? null : recorded.speed,
+                Double.isNaN(recorded.fuelLevel) ? null : recorded.fuelLevel,
+                recorded.sequence != RecordedSample.NO_VALUE ? recorded.sequence : null, timestamp);
+    }
+}
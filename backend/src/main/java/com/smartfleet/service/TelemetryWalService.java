@@ -0,0 +1,244 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.dto.VehiclePositionDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.telemetry.TelemetryWal;
+import com.smartfleet.telemetry.VehicleSequenceTracker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Durability for accepted telemetry
+ * Every sample is appended to a memory-mapped WAL before the truck gets its acknowledgement,
+ * so samples still sitting in the ring buffer / write-behind store survive a crash.
+ * On startup the WAL is replayed into the position store and history with the same ordering and dead-band rules
+ * as the pipeline, flushed, then deleted.
+ * While running, sealed segments whose samples were all applied are deleted after the store
+ * and history have been flushed successfully (checkpoint).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryWalService {
+
+    // v2: + sequence si timestamp de pe dispozitiv
+    private static final byte RECORD_VERSION = 2;
+    private static final int MAX_STATUS_BYTES = 64;
+    private static final int MAX_RECORD_SIZE = 96 + MAX_STATUS_BYTES;
+    private static final int REPLAY_FLUSH_EVERY = 10000;
+    private static final long REPLAY_RETRY_MS = 1000;
+
+    private final VehiclePositionStore positionStore;
+    private final PositionHistoryService positionHistoryService;
+    private final DeadBandFilter deadBandFilter;
+
+    @Value("${app.telemetry.wal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.telemetry.wal.dir:data/wal}")
+    private String directory;
+
+    @Value("${app.telemetry.wal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    private TelemetryWal wal;
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_SIZE));
+    private int replayedSinceFlush;
+    private VehicleSequenceTracker replayTracker;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("Telemetry WAL disabled");
+            return;
+        }
+        wal = new TelemetryWal(Paths.get(directory), segmentSizeMb * 1024 * 1024);
+        replayTracker = new VehicleSequenceTracker(1024, Long.MAX_VALUE);
+        int[] replayed = {0};
+        List<Long> segments = wal.replayAndOpen((segment, payload) -> {
+            replay(payload);
+            replayed[0]++;
+        });
+        if (segments.isEmpty())
+            return;
+
+        // Datele reluate trebuie sa ajunga in DB inainte sa stergem segmentele
+        if (positionStore.flush() && positionHistoryService.flush()) {
+            wal.deleteSegments(segments);
+        }
+        log.info("Replayed {} telemetry samples from {} WAL segment(s)", replayed[0], segments.size());
+    }
+
+    /**
+     * Append a sample; returns the WAL segment it went to, or -1 when the WAL is disabled
+     */
+    public long append(LocationSampleDTO sample, long receivedAtMillis) throws IOException {
+        if (wal == null)
+            return -1;
+        ByteBuffer buffer = scratch.get();
+        buffer.clear();
+        encode(sample, receivedAtMillis, buffer);
+        buffer.flip();
+        return wal.append(buffer);
+    }
+
+    /**
+     * The consumer applied count samples from this segment to the position store
+     */
+    public void markApplied(long segment, int count) {
+        if (wal != null && segment >= 0)
+            wal.markApplied(segment, count);
+    }
+
+    @Scheduled(fixedDelayString = "${app.telemetry.wal.fsync-interval-ms:1000}")
+    public void force() {
+        if (wal != null)
+            wal.force();
+    }
+
+    @Scheduled(fixedDelayString = "${app.telemetry.wal.checkpoint-interval-ms:5000}")
+    public void checkpoint() {
+        if (wal == null)
+            return;
+        // Candidatii se aleg INAINTE de flush: tot ce au aplicat e deja in store
+        List<Long> candidates = wal.fullyAppliedSegments();
+        if (candidates.isEmpty())
+            return;
+        if (positionStore.flush() && positionHistoryService.flush()) {
+            wal.deleteSegments(candidates);
+            log.debug("WAL checkpoint deleted {} segment(s)", candidates.size());
+        }
+    }
+
+    /**
+     * Runs after the pipeline stopped (the pipeline depends on this bean): seal the active
+     * segment and, if the final flush succeeds, leave nothing to replay
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (wal == null)
+            return;
+        wal.close();
+        checkpoint();
+    }
+
+    /**
+     * High-water marks reached while replaying, handed over once to the live pipeline (null if nothing to hand over)
+     * Without them a retry of a replayed sample would look new again and move the truck back.
+     */
+    public VehicleSequenceTracker takeReplayMarks() {
+        VehicleSequenceTracker marks = replayTracker;
+        replayTracker = null;
+        return marks;
+    }
+
+    public int getSegmentCount() {
+        return wal == null ? 0 : wal.getSegmentCount();
+    }
+
+    private void replay(ByteBuffer payload) {
+        byte version = payload.get();
+        if (version < 1 || version > RECORD_VERSION)
+            return;
+        LocationSampleDTO sample = new LocationSampleDTO(payload.getLong(), payload.getDouble(), payload.getDouble(),
+                null, toNullable(payload.getDouble()), toNullable(payload.getDouble()), null, null);
+        if (version >= 2) {
+            sample.setSequence(toNullable(payload.getLong()));
+            sample.setTimestamp(toNullable(payload.getLong()));
+        }
+        long receivedAtMillis = payload.getLong();
+        int statusLength = payload.get();
+        if (statusLength >= 0) {
+            byte[] status = new byte[statusLength];
+            payload.get(status);
+            sample.setStatus(new String(status, StandardCharsets.UTF_8));
+        }
+
+        if (!TelemetryPipeline.isValidSample(sample) || positionStore.get(sample.getVehicleId()).isEmpty())
+            return;
+        // Aceleasi reguli de ordine ca in pipeline: un retry intarziat nu muta camionul inapoi
+        VehicleSequenceTracker.Verdict verdict = replayTracker.check(sample.getVehicleId(),
+                TelemetryPipeline.orNone(sample.getSequence()), TelemetryPipeline.orNone(sample.getTimestamp()));
+        if (verdict == VehicleSequenceTracker.Verdict.DUPLICATE)
+            return;
+        VehicleResponseDTO current = positionStore.get(sample.getVehicleId()).orElse(null);
+        if (verdict == VehicleSequenceTracker.Verdict.LATE) {
+            recordHistory(new VehiclePositionDTO(sample.getVehicleId(),
+                    TelemetryPipeline.sampleTime(sample, receivedAtMillis), sample.getLat(), sample.getLng(),
+                    sample.getSpeed(), sample.getStatus() != null ? sample.getStatus() : current.getStatus()));
+            return;
+        }
+        // Acelasi dead-band ca in pipeline: miscarile mici raman doar in memorie, fara punct de istoric
+        if (!deadBandFilter.accept(sample, current.getStatus(), receivedAtMillis)) {
+            positionStore.applySample(sample, false);
+            return;
+        }
+
+        VehicleResponseDTO live = positionStore.applySample(sample);
+        if (live == null)
+            return;
+        recordHistory(new VehiclePositionDTO(live.getId(), TelemetryPipeline.sampleTime(sample, receivedAtMillis),
+                live.getLat(), live.getLng(), sample.getSpeed(), live.getStatus()));
+        if (++replayedSinceFlush >= REPLAY_FLUSH_EVERY) {
+            // Bufferul de istoric e limitat - golim periodic in timpul unui replay mare
+            positionHistoryService.flush();
+            replayedSinceFlush = 0;
+        }
+    }
+
+    // Segmentele se sterg dupa replay, deci un punct nu are voie sa se piarda: asteptam sa se goleasca bufferul
+    private void recordHistory(VehiclePositionDTO point) {
+        while (!positionHistoryService.record(point)) {
+            if (!positionHistoryService.flush()) {
+                log.warn("WAL replay waiting for the position history to be writable");
+                try {
+                    Thread.sleep(REPLAY_RETRY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("WAL replay interrupted", e);
+                }
+            }
+        }
+    }
+
+    private static void encode(LocationSampleDTO sample, long receivedAtMillis, ByteBuffer buffer) {
+        buffer.put(RECORD_VERSION);
+        buffer.putLong(sample.getVehicleId() == null ? -1 : sample.getVehicleId());
+        buffer.putDouble(sample.getLat() == null ? Double.NaN : sample.getLat());
+        buffer.putDouble(sample.getLng() == null ? Double.NaN : sample.getLng());
+        buffer.putDouble(sample.getSpeed() == null ? Double.NaN : sample.getSpeed());
+        buffer.putDouble(sample.getFuelLevel() == null ? Double.NaN : sample.getFuelLevel());
+        buffer.putLong(sample.getSequence() == null ? Long.MIN_VALUE : sample.getSequence());
+        buffer.putLong(sample.getTimestamp() == null ? Long.MIN_VALUE : sample.getTimestamp());
+        buffer.putLong(receivedAtMillis);
+        if (sample.getStatus() == null) {
+            buffer.put((byte) -1);
+        } else {
+            // Un status mai lung decat coloana (20) e respins oricum de validare
+            byte[] status = sample.getStatus().getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(status.length, MAX_STATUS_BYTES);
+            buffer.put((byte) length);
+            buffer.put(status, 0, length);
+        }
+    }
+
+    private static Double toNullable(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static Long toNullable(long value) {
+        return value == Long.MIN_VALUE ? null : value;
+    }
+}
@@ -0,0 +1,135 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.telemetry.TelemetryFrame;
+import com.smartfleet.telemetry.TelemetryFrameCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional UDP listener for hardware trackers that cannot do HTTP
+ * Reads compact HMAC-signed binary frames (see TelemetryFrameCodec) from a DatagramChannel into one
+ * reused direct buffer and publishes them into the same TelemetryPipeline as the REST / STOMP endpoints.
+ * Frames whose device timestamp is further than max-clock-skew-s from the server clock are rejected, so a
+ * captured frame cannot be re-sent later; inside that window the sequence tracker drops repeats.
+ * Every queued frame is answered with a signed ack carrying the reportIntervalMs hint.
+ * Enabled with app.telemetry.udp.enabled=true; test locally with UdpTelemetrySender.
+ */
+@Component
+@ConditionalOnProperty(name = "app.telemetry.udp.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class UdpTelemetryListener {
+
+    private final TelemetryPipeline telemetryPipeline;
+
+    @Value("${app.telemetry.udp.port:9999}")
+    private int port;
+
+    @Value("${app.telemetry.udp.hmac-secret}")
+    private String hmacSecret;
+
+    @Value("${app.telemetry.udp.max-clock-skew-s:30}")
+    private long maxClockSkewSeconds;
+
+    private DatagramChannel channel;
+    private Thread receiver;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejectedFrames = new AtomicLong();
+    private final AtomicLong staleFrames = new AtomicLong();
+    private final AtomicLong droppedQueueFull = new AtomicLong();
+    private final AtomicLong ackErrors = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        receiver = new Thread(this::receiveLoop, "telemetry-udp");
+        receiver.setDaemon(true);
+        receiver.start();
+        log.info("UDP telemetry listener on port {}", port);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        channel.close();
+        receiver.join(5000);
+        log.info("UDP telemetry listener stopped: {} frames received, {} rejected, {} stale, {} dropped (queue full)",
+                received.get(), rejectedFrames.get(), staleFrames.get(), droppedQueueFull.get());
+    }
+
+    private void receiveLoop() {
+        // Buffer-ul, frame-ul si codec-ul sunt refolosite pentru fiecare datagrama
+        ByteBuffer buffer = ByteBuffer.allocateDirect(512);
+        ByteBuffer ack = ByteBuffer.allocateDirect(TelemetryFrameCodec.ACK_SIZE);
+        TelemetryFrame frame = new TelemetryFrame();
+        TelemetryFrameCodec codec = new TelemetryFrameCodec(hmacSecret);
+
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress source = channel.receive(buffer);
+                if (source == null)
+                    continue;
+                buffer.flip();
+                received.incrementAndGet();
+
+                if (!codec.decode(buffer, frame)) {
+                    // Dimensiune / versiune gresita sau HMAC invalid
+                    rejectedFrames.incrementAndGet();
+                    continue;
+                }
+
+                // Frame semnat dar vechi (sau din viitor): posibil retrimis de altcineva
+                long now = System.currentTimeMillis();
+                long maxSkewMs = maxClockSkewSeconds * 1000;
+                if (frame.timestamp < now - maxSkewMs || frame.timestamp > now + maxSkewMs) {
+                    staleFrames.incrementAndGet();
+                    continue;
+                }
+
+                LocationSampleDTO sample = new LocationSampleDTO((long) frame.vehicleId, frame.lat, frame.lng,
+                        frame.status, frame.speed, frame.fuelLevel, frame.sequence, frame.timestamp);
+                if (!telemetryPipeline.publish(sample)) {
+                    // Fara ack: tracker-ul retrimite
+                    droppedQueueFull.incrementAndGet();
+                    continue;
+                }
+                sendAck(frame, source, ack, codec);
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (Exception e) {
+                log.error("UDP telemetry receive failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Ack semnat cu reportIntervalMs - singurul canal prin care un tracker UDP afla cat de des sa raporteze
+    private void sendAck(TelemetryFrame frame, SocketAddress source, ByteBuffer ack, TelemetryFrameCodec codec) {
+        try {
+            ack.clear();
+            codec.encodeAck(frame.vehicleId, frame.sequence,
+                    telemetryPipeline.getReportIntervalMs((long) frame.vehicleId), ack);
+            ack.flip();
+            channel.send(ack, source);
+        } catch (IOException e) {
+            if (ackErrors.incrementAndGet() % 1000 == 1) {
+                log.warn("UDP telemetry ack to {} failed: {}", source, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.VehiclePositionDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.geo.WebMercator;
+import com.smartfleet.repository.VehiclePositionHistoryRepository;
+import com.smartfleet.tiles.MvtEncoder;
+import com.smartfleet.tiles.TileCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Mapbox Vector Tiles (binary, protobuf) for the live map, encoded in-process - no external tile server
+ * vehicles: one point per vehicle, read from the live spatial index of VehiclePositionStore.
+ * history: one line per vehicle from the vehicle_position trail in a time window.
+ * Encoded tiles are cached per z/x/y (vehicles for a second, closed history windows much longer).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VectorTileService {
+
+    // Buffer in jurul tile-ului (in unitati de tile) ca markerele / liniile de la margine sa nu fie taiate
+    private static final double TILE_BUFFER = 64.0 / MvtEncoder.EXTENT;
+    private static final String[] VEHICLE_TAGS = {"plate", "brand", "type", "status", "speed", "fuelLevel"};
+    private static final String[] HISTORY_TAGS = {"vehicleId", "points"};
+
+    private final VehiclePositionStore positionStore;
+    private final VehiclePositionHistoryRepository historyRepository;
+
+    @Value("${app.tiles.cache-max-entries:5000}")
+    private int cacheMaxEntries;
+
+    @Value("${app.tiles.vehicles.ttl-ms:1000}")
+    private long vehiclesTtlMs;
+
+    @Value("${app.tiles.history.ttl-ms:600000}")
+    private long historyTtlMs;
+
+    @Value("${app.tiles.history.live-ttl-ms:30000}")
+    private long historyLiveTtlMs;
+
+    @Value("${app.tiles.history.default-window-minutes:60}")
+    private long defaultWindowMinutes;
+
+    @Value("${app.tiles.history.max-window-hours:24}")
+    private long maxWindowHours;
+
+    @Value("${app.tiles.history.max-points:200000}")
+    private int maxHistoryPoints;
+
+    @Value("${app.tiles.history.min-zoom:10}")
+    private int historyMinZoom;
+
+    @Value("${app.tiles.history.max-gap-s:300}")
+    private long maxGapSeconds;
+
+    private TileCache cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new TileCache(cacheMaxEntries);
+    }
+
+    public TileCache.Tile getVehicleTile(int z, long x, long y) {
+        validate(z, x, y);
+        String key = "vehicles/" + z + "/" + x + "/" + y;
+        long now = System.currentTimeMillis();
+        TileCache.Tile cached = cache.get(key, now);
+        if (cached != null)
+            return cached;
+
+        double[] bounds = WebMercator.tileBounds(z, x, y, TILE_BUFFER);
+        MvtEncoder encoder = new MvtEncoder();
+        MvtEncoder.Layer layer = encoder.layer("vehicles");
+        double scale = 1L << z;
+        for (VehicleResponseDTO v : positionStore.findInBox(bounds[0], bounds[1], bounds[2], bounds[3], s -> true)) {
+            layer.addPoint(v.getId(), tileX(v.getLng(), scale, x), tileY(v.getLat(), scale, y), VEHICLE_TAGS,
+                    new Object[] {v.getPlate(), v.getBrand(), v.getType(), v.getStatus(), v.getSpeed(),
+                            v.getFuelLevel()});
+        }
+        TileCache.Tile tile = new TileCache.Tile(encoder.encode(), now + vehiclesTtlMs);
+        cache.put(key, tile);
+        return tile;
+    }
+
+    /**
+     * Trails in [from, to) (default: the last defaultWindowMinutes, aligned to the minute), optionally of one vehicle
+     * A trail is split where two consecutive points are more than maxGapSeconds apart.
+     * Below historyMinZoom a tile covers too much road to read raw points - the heatmap rollups serve that view.
+     */
+    public TileCache.Tile getHistoryTile(int z, long x, long y, LocalDateTime from, LocalDateTime to, Long vehicleId) {
+        validate(z, x, y);
+        if (z < historyMinZoom)
+            throw new RuntimeException("History tiles start at zoom " + historyMinZoom + "; use /api/heatmap below it");
+        if (to == null)
+            to = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        if (from == null)
+            from = to.minusMinutes(defaultWindowMinutes);
+        if (!from.isBefore(to))
+            throw new RuntimeException("Invalid time window: 'from' must be before 'to'");
+        if (Duration.between(from, to).toHours() >= maxWindowHours)
+            throw new RuntimeException("Time window must be shorter than " + maxWindowHours + " hours");
+
+        String key = "history/" + z + "/" + x + "/" + y + "/" + from + "/" + to + "/" + vehicleId;
+        long now = System.currentTimeMillis();
+        TileCache.Tile cached = cache.get(key, now);
+        if (cached != null)
+            return cached;
+
+        double[] bounds = WebMercator.tileBounds(z, x, y, TILE_BUFFER);
+        List<VehiclePositionDTO> points = historyRepository.findInBox(from, to, bounds[0], bounds[1], bounds[2],
+                bounds[3], vehicleId, maxHistoryPoints);
+        if (points.size() == maxHistoryPoints)
+            log.warn("History tile {}/{}/{} truncated at {} points", z, x, y, maxHistoryPoints);
+
+        MvtEncoder encoder = new MvtEncoder();
+        MvtEncoder.Layer layer = encoder.layer("history");
+        double scale = 1L << z;
+        int[] xs = new int[Math.max(2, points.size())];
+        int[] ys = new int[xs.length];
+        int count = 0;
+        long gapMillis = maxGapSeconds * 1000;
+        for (int i = 0; i < points.size(); i++) {
+            VehiclePositionDTO p = points.get(i);
+            if (count > 0) {
+                VehiclePositionDTO previous = points.get(i - 1);
+                boolean sameTrail = previous.getVehicleId().equals(p.getVehicleId())
+                        && Duration.between(previous.getRecordedAt(), p.getRecordedAt()).toMillis() <= gapMillis;
+                if (!sameTrail) {
+                    layer.addLineString(previous.getVehicleId(), xs, ys, count, HISTORY_TAGS,
+                            new Object[] {previous.getVehicleId(), count});
+                    count = 0;
+                }
+            }
+            xs[count] = tileX(p.getLng(), scale, x);
+            ys[count] = tileY(p.getLat(), scale, y);
+            count++;
+        }
+        if (count > 0) {
+            Long last = points.get(points.size() - 1).getVehicleId();
+            layer.addLineString(last, xs, ys, count, HISTORY_TAGS, new Object[] {last, count});
+        }
+
+        // O fereastra inchisa nu se mai schimba (istoricul e append-only); cea curenta expira repede
+        long ttl = isClosedWindow(to) ? historyTtlMs : historyLiveTtlMs;
+        TileCache.Tile tile = new TileCache.Tile(encoder.encode(), now + ttl);
+        cache.put(key, tile);
+        return tile;
+    }
+
+    /**
+     * True if no new history can still arrive for a window ending at to
+     */
+    public boolean isClosedWindow(LocalDateTime to) {
+        return to != null
+                && to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                        < System.currentTimeMillis() - historyLiveTtlMs;
+    }
+
+    private static void validate(int z, long x, long y) {
+        if (!WebMercator.isValidTile(z, x, y))
+            throw new RuntimeException("Invalid tile " + z + "/" + x + "/" + y);
+    }
+
+    private static int tileX(double lng, double scale, long x) {
+        return (int) Math.round((WebMercator.x(lng) * scale - x) * MvtEncoder.EXTENT);
+    }
+
+    private static int tileY(double lat, double scale, long y) {
+        return (int) Math.round((WebMercator.y(lat) * scale - y) * MvtEncoder.EXTENT);
+    }
+}
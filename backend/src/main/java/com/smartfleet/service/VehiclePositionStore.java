@@ -0,0 +1,473 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.ClusterVehicleStateDTO;
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.dto.NearbyVehicleDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.entity.Vehicle;
+import com.smartfleet.geo.ClusterGrid;
+import com.smartfleet.geo.VehicleSpatialIndex;
+import com.smartfleet.repository.VehicleLocationRepository;
+import com.smartfleet.repository.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-memory store with the latest state of every vehicle (write-behind cache in front of the vehicle table)
+ * GPS pings only update memory; dirty vehicles are flushed periodically with one batched UPDATE,
+ * so many pings for the same vehicle collapse into a single DB write.
+ * Snapshots are immutable once stored - every change replaces the DTO for that vehicle.
+ * A VehicleSpatialIndex and the map ClusterGrid follow every position change (under the same
+ * per-vehicle lock), so nearest / bounding-box / cluster queries never scan the whole fleet.
+ * Every change also gets a fleet version number (monotonic, seeded from the clock so it keeps growing
+ * across restarts), which lets pollers ask what changed since the version they last saw. Versions only mean
+ * something together with the store's epoch (random per process, so per node and per restart).
+ * getStableVersion is lock-free: each writer thread announces a lower bound of the version it is about to take
+ * until its snapshot is installed, and the stable version stops just below the oldest announced bound.
+ * Local changes also stamp the vehicle with a change clock (wall-clock millis, strictly increasing per vehicle)
+ * that travels with its relayed state, so a node applies another node's states only in order.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VehiclePositionStore {
+
+    private final VehicleRepository vehicleRepository;
+    private final VehicleLocationRepository vehicleLocationRepository;
+
+    private final Map<Long, VehicleResponseDTO> snapshots = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // Versiunea ultimei schimbari per vehicul si, pentru cele sterse, versiunea stergerii
+    private static final int MAX_TOMBSTONES = 10000;
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+    private final Map<Long, Long> removedAt = new ConcurrentHashMap<>();
+    // Stergerile de dinainte de pornire nu sunt cunoscute: o versiune mai veche primeste toata flota
+    private volatile long tombstoneFloor = version.get();
+    // Ceasul ultimei schimbari locale (sau aplicate de la alt nod) per vehicul
+    private final Map<Long, Long> stateStamps = new ConcurrentHashMap<>();
+    // Per thread care scrie: limita inferioara a versiunii schimbarii in curs, IDLE intre schimbari
+    private static final long IDLE = Long.MAX_VALUE;
+    private final Queue<AtomicLong> changeSlots = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<AtomicLong> changeSlot = ThreadLocal.withInitial(() -> {
+        AtomicLong slot = new AtomicLong(IDLE);
+        changeSlots.add(slot);
+        return slot;
+    });
+
+    @Value("${app.vehicles.index.cell-degrees:0.05}")
+    private double indexCellDegrees;
+
+    @Value("${app.vehicles.clusters.levels:4,7,10,13}")
+    private int[] clusterLevels;
+
+    private VehicleSpatialIndex spatialIndex;
+    private ClusterGrid clusterGrid;
+
+    @PostConstruct
+    public void loadAll() {
+        spatialIndex = new VehicleSpatialIndex(indexCellDegrees);
+        clusterGrid = new ClusterGrid(clusterLevels);
+        vehicleRepository.findAll().forEach(this::put);
+        log.info("Vehicle position store loaded {} vehicles", snapshots.size());
+    }
+
+    /**
+     * Latest state of all vehicles, ordered by id
+     */
+    public List<VehicleResponseDTO> getAll() {
+        List<VehicleResponseDTO> all = new ArrayList<>(snapshots.values());
+        all.sort(Comparator.comparing(VehicleResponseDTO::getId));
+        return all;
+    }
+
+    public Optional<VehicleResponseDTO> get(Long id) {
+        return Optional.ofNullable(snapshots.get(id));
+    }
+
+    /**
+     * Vehicles inside a bounding box that match the filter, ordered by id
+     */
+    public List<VehicleResponseDTO> findInBox(double minLat, double minLng, double maxLat, double maxLng,
+            Predicate<VehicleResponseDTO> filter) {
+        List<VehicleResponseDTO> result = new ArrayList<>();
+        spatialIndex.forEachInBox(minLat, minLng, maxLat, maxLng, (id, lat, lng) -> {
+            VehicleResponseDTO snapshot = snapshots.get(id);
+            if (snapshot != null && filter.test(snapshot))
+                result.add(snapshot);
+        });
+        result.sort(Comparator.comparing(VehicleResponseDTO::getId));
+        return result;
+    }
+
+    /**
+     * Map clusters (count, status breakdown, centroid) at a grid level, read from the live aggregates
+     */
+    public List<ClusterGrid.Cluster> findClusters(int gridLevel, double minLat, double minLng, double maxLat,
+            double maxLng) {
+        return clusterGrid.clusters(gridLevel, minLat, minLng, maxLat, maxLng);
+    }
+
+    /**
+     * The k vehicles closest to the point (haversine) that match the filter, nearest first
+     */
+    public List<NearbyVehicleDTO> findNearest(double lat, double lng, int k, Predicate<VehicleResponseDTO> filter) {
+        long[] ids = new long[k];
+        double[] meters = new double[k];
+        int found = spatialIndex.nearest(lat, lng, k, id -> {
+            VehicleResponseDTO snapshot = snapshots.get(id);
+            return snapshot != null && filter.test(snapshot);
+        }, ids, meters);
+
+        List<NearbyVehicleDTO> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            VehicleResponseDTO snapshot = snapshots.get(ids[i]);
+            if (snapshot != null)
+                result.add(new NearbyVehicleDTO(snapshot, meters[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Refresh the snapshot after a JPA write (create, update, simulation, service...)
+     */
+    public VehicleResponseDTO put(Vehicle vehicle) {
+        VehicleResponseDTO snapshot = toDTO(vehicle);
+        boolean[] kmAhead = {false};
+        VehicleResponseDTO result = versioned(() -> snapshots.compute(vehicle.getId(), (id, previous) -> {
+            // Telemetria live nu exista in entitate - o pastram din snapshot-ul anterior
+            if (previous != null) {
+                snapshot.setSpeed(previous.getSpeed());
+                snapshot.setFuelLevel(previous.getFuelLevel());
+                // Kilometrajul doar creste: simularea il poate mari intre citirea entitatii si save
+                if (previous.getTotalKm() != null
+                        && (snapshot.getTotalKm() == null || previous.getTotalKm() > snapshot.getTotalKm())) {
+                    snapshot.setTotalKm(previous.getTotalKm());
+                    kmAhead[0] = true;
+                }
+            }
+            index(previous, snapshot);
+            touch(id);
+            return snapshot;
+        }));
+        // Save-ul JPA a scris in DB un kilometraj mai vechi - il rescrie urmatorul flush
+        if (kmAhead[0])
+            dirty.add(vehicle.getId());
+        return result;
+    }
+
+    public void remove(Long id) {
+        versioned(() -> snapshots.computeIfPresent(id, (key, current) -> {
+            index(current, null);
+            stateStamps.remove(key);
+            return null;
+        }));
+        dirty.remove(id);
+    }
+
+    /**
+     * Copy the live (possibly not yet flushed) position, status and mileage onto an entity loaded from DB,
+     * so a JPA save does not move the vehicle back to its last flushed state
+     */
+    public void mergeInto(Vehicle vehicle) {
+        VehicleResponseDTO live = snapshots.get(vehicle.getId());
+        if (live != null) {
+            vehicle.setLat(live.getLat());
+            vehicle.setLng(live.getLng());
+            vehicle.setStatus(live.getStatus());
+            if (live.getTotalKm() != null)
+                vehicle.setTotalKm(live.getTotalKm());
+        }
+    }
+
+    /**
+     * Apply a GPS sample in memory and mark the vehicle dirty
+     * Returns the new snapshot, or null if the vehicle is unknown
+     */
+    public VehicleResponseDTO applySample(LocationSampleDTO sample) {
+        return applySample(sample, true);
+    }
+
+    /**
+     * Apply a GPS sample in memory; with markDirty = false the DB is not touched
+     * (insignificant movement filtered by the dead-band - the next significant sample is flushed anyway)
+     */
+    public VehicleResponseDTO applySample(LocationSampleDTO sample, boolean markDirty) {
+        Long vehicleId = sample.getVehicleId();
+        VehicleResponseDTO updated = versioned(() -> snapshots.computeIfPresent(vehicleId, (id, current) -> {
+            VehicleResponseDTO next = copyOf(current);
+            next.setLat(sample.getLat());
+            next.setLng(sample.getLng());
+            next.setStatus(resolveStatus(current.getStatus(), sample.getStatus()));
+            if (sample.getSpeed() != null)
+                next.setSpeed(sample.getSpeed());
+            if (sample.getFuelLevel() != null)
+                next.setFuelLevel(sample.getFuelLevel());
+            index(current, next);
+            touch(id);
+            return next;
+        }));
+        if (updated != null && markDirty)
+            dirty.add(sample.getVehicleId());
+        return updated;
+    }
+
+    /**
+     * Move a vehicle in memory on behalf of the simulation, which persists its shard itself
+     * Returns the new snapshot, or null if the vehicle is unknown
+     */
+    public VehicleResponseDTO applySimulation(Long id, double lat, double lng, double totalKm, String status,
+            Double speed) {
+        return versioned(() -> snapshots.computeIfPresent(id, (key, current) -> {
+            VehicleResponseDTO next = copyOf(current);
+            next.setLat(lat);
+            next.setLng(lng);
+            next.setTotalKm(totalKm);
+            next.setStatus(status);
+            if (speed != null)
+                next.setSpeed(speed);
+            index(current, next);
+            touch(key);
+            return next;
+        }));
+    }
+
+    /**
+     * Take over the live state of a vehicle changed on another backend node (cluster fan-out)
+     * In memory only - the node that changed it persists it. Returns null if the vehicle is unknown here
+     * or the state is not newer than the one already applied (late or duplicate message).
+     */
+    public VehicleResponseDTO applyRemote(ClusterVehicleStateDTO state) {
+        boolean[] applied = {false};
+        VehicleResponseDTO result = versioned(() -> snapshots.computeIfPresent(state.getId(), (id, current) -> {
+            if (state.getStamp() <= stateStamps.getOrDefault(id, 0L))
+                return current;
+            VehicleResponseDTO next = copyOf(current);
+            next.setLat(state.getLat());
+            next.setLng(state.getLng());
+            next.setTotalKm(state.getTotalKm());
+            next.setStatus(state.getStatus());
+            index(current, next);
+            stateStamps.put(id, state.getStamp());
+            applied[0] = true;
+            return next;
+        }));
+        return applied[0] ? result : null;
+    }
+
+    /**
+     * Reload a vehicle changed on another node from DB: details from the entity, live fields kept from memory
+     * (they arrive as stamped states and may be ahead of the DB). Returns null if it no longer exists.
+     */
+    public VehicleResponseDTO reload(Long vehicleId) {
+        Optional<Vehicle> vehicle = vehicleRepository.findById(vehicleId);
+        if (vehicle.isEmpty())
+            return null;
+        VehicleResponseDTO snapshot = toDTO(vehicle.get());
+        return versioned(() -> snapshots.compute(vehicleId, (id, previous) -> {
+            if (previous != null) {
+                snapshot.setLat(previous.getLat());
+                snapshot.setLng(previous.getLng());
+                snapshot.setStatus(previous.getStatus());
+                snapshot.setTotalKm(previous.getTotalKm());
+                snapshot.setSpeed(previous.getSpeed());
+                snapshot.setFuelLevel(previous.getFuelLevel());
+            }
+            index(previous, snapshot);
+            return snapshot;
+        }));
+    }
+
+    /**
+     * Change clock of the vehicle's current state (0 if never stamped)
+     */
+    public long getStateStamp(Long id) {
+        return stateStamps.getOrDefault(id, 0L);
+    }
+
+    /**
+     * Latest fleet version; may count a change whose snapshot is not visible yet (cheap "did anything change" check)
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Fleet version such that every change numbered up to it is visible (stops before in-flight changes, never waits)
+     */
+    public long getStableVersion() {
+        // Versiunea inaintea sloturilor: o schimbare numerotata pana la ea si-a anuntat deja slotul
+        long stable = version.get();
+        for (AtomicLong slot : changeSlots) {
+            long bound = slot.get();
+            if (bound != IDLE && bound - 1 < stable)
+                stable = bound - 1;
+        }
+        return stable;
+    }
+
+    /**
+     * Id of this store instance (node and process); versions of another epoch are not comparable
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Vehicles changed and ids removed after the given version (ordered by id)
+     * Returns false if the removals of that period are no longer known and the caller needs the whole fleet.
+     */
+    public boolean collectChangesSince(long since, List<VehicleResponseDTO> changed, List<Long> removed) {
+        if (since < tombstoneFloor)
+            return false;
+        changedAt.forEach((id, changeVersion) -> {
+            VehicleResponseDTO snapshot = changeVersion > since ? snapshots.get(id) : null;
+            if (snapshot != null)
+                changed.add(snapshot);
+        });
+        removedAt.forEach((id, removeVersion) -> {
+            if (removeVersion > since)
+                removed.add(id);
+        });
+        changed.sort(Comparator.comparing(VehicleResponseDTO::getId));
+        removed.sort(Comparator.naturalOrder());
+        return true;
+    }
+
+    /**
+     * Have the next flush write these vehicles (e.g. after a failed direct write)
+     */
+    public void markDirty(Collection<Long> ids) {
+        dirty.addAll(ids);
+    }
+
+    /**
+     * Write all dirty vehicles to DB in a single JDBC batch
+     * Returns false if the write failed (the vehicles stay dirty and are retried).
+     */
+    @Scheduled(fixedDelayString = "${app.telemetry.flush-interval-ms:1000}")
+    public synchronized boolean flush() {
+        if (dirty.isEmpty())
+            return true;
+
+        List<VehicleResponseDTO> batch = new ArrayList<>();
+        for (Long id : dirty) {
+            // Scoatem marcajul INAINTE de citire: un ping venit intre timp il pune la loc
+            dirty.remove(id);
+            VehicleResponseDTO snapshot = snapshots.get(id);
+            if (snapshot != null)
+                batch.add(snapshot);
+        }
+
+        try {
+            vehicleLocationRepository.batchUpdateState(batch);
+            log.debug("Flushed {} vehicle positions", batch.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to flush {} vehicle positions, will retry: {}", batch.size(), e.getMessage());
+            batch.forEach(snapshot -> dirty.add(snapshot.getId()));
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+
+    // Slotul se anunta inainte ca index() sa ia versiunea si se elibereaza dupa ce snapshot-ul e instalat
+    private <T> T versioned(Supplier<T> change) {
+        AtomicLong slot = changeSlot.get();
+        slot.set(version.get() + 1);
+        try {
+            return change.get();
+        } finally {
+            slot.set(IDLE);
+        }
+    }
+
+    // Apelat sub lock-ul vehiculului din snapshots, deci indexurile vad schimbarile in aceeasi ordine
+    private void index(VehicleResponseDTO previous, VehicleResponseDTO next) {
+        long changeVersion = version.incrementAndGet();
+        if (next != null) {
+            changedAt.put(next.getId(), changeVersion);
+            removedAt.remove(next.getId());
+        } else if (previous != null) {
+            changedAt.remove(previous.getId());
+            if (removedAt.size() >= MAX_TOMBSTONES) {
+                // Cine a ramas in urma de atunci primeste din nou toata flota
+                tombstoneFloor = changeVersion;
+                removedAt.clear();
+            }
+            removedAt.put(previous.getId(), changeVersion);
+        }
+
+        if (next != null && next.getLat() != null && next.getLng() != null)
+            spatialIndex.update(next.getId(), next.getLat(), next.getLng());
+        else if (previous != null)
+            spatialIndex.remove(previous.getId());
+
+        clusterGrid.move(previous != null ? previous.getLat() : null, previous != null ? previous.getLng() : null,
+                previous != null ? previous.getStatus() : null, next != null ? next.getLat() : null,
+                next != null ? next.getLng() : null, next != null ? next.getStatus() : null);
+    }
+
+    // Ora curenta, dar strict peste ceasul anterior al vehiculului (doua schimbari in aceeasi milisecunda)
+    private void touch(Long id) {
+        stateStamps.merge(id, System.currentTimeMillis(), (last, now) -> Math.max(now, last + 1));
+    }
+
+    // Statusul trimis de camion are prioritate; altfel AVAILABLE/IDLE devine ON_TRIP
+    private String resolveStatus(String current, String reported) {
+        if (reported != null)
+            return reported;
+        if ("AVAILABLE".equals(current) || "IDLE".equals(current))
+            return "ON_TRIP";
+        return current;
+    }
+
+    private VehicleResponseDTO toDTO(Vehicle v) {
+        VehicleResponseDTO dto = new VehicleResponseDTO();
+        dto.setId(v.getId());
+        dto.setPlate(v.getPlate());
+        dto.setBrand(v.getBrand());
+        dto.setType(v.getType());
+        dto.setStatus(v.getStatus());
+        dto.setLat(v.getLat());
+        dto.setLng(v.getLng());
+        dto.setTotalKm(v.getTotalKm());
+        dto.setLastServiceKm(v.getLastServiceKm());
+        return dto;
+    }
+
+    private VehicleResponseDTO copyOf(VehicleResponseDTO s) {
+        return new VehicleResponseDTO(s.getId(), s.getPlate(), s.getBrand(), s.getType(), s.getStatus(),
+                s.getLat(), s.getLng(), s.getTotalKm(), s.getLastServiceKm(), s.getSpeed(), s.getFuelLevel());
+    }
+}
@@ -1,34 +1,162 @@
 package com.smartfleet.service;
 
+import com.smartfleet.dto.NearbyVehicleDTO;
+import com.smartfleet.dto.VehicleClusterDTO;
 import com.smartfleet.dto.VehicleCreateDTO;
 import com.smartfleet.dto.VehicleResponseDTO;
+import com.smartfleet.dto.ViewportMarkerDTO;
 import com.smartfleet.entity.Driver;
 import com.smartfleet.entity.Vehicle;
+import com.smartfleet.geo.ClusterGrid;
+import com.smartfleet.geo.WebMercator;
 import com.smartfleet.repository.DriverRepository;
 import com.smartfleet.repository.VehicleRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class VehicleService {
 
+    // Nivelul grilei = zoom + 2 -> celule de 64 px pe tile-uri de 256 px
+    private static final int CLUSTER_LEVEL_OFFSET = 2;
+
     private final VehicleRepository vehicleRepository;
     private final DriverRepository driverRepository;
+    private final VehiclePositionStore positionStore;
+    private final DeadBandFilter deadBandFilter;
+    private final GeofenceService geofenceService;
+    private final FleetBroadcaster fleetBroadcaster;
+
+    @Value("${app.vehicles.nearby.max-k:100}")
+    private int maxNearby;
 
+    @Value("${app.vehicles.viewport.min-pixel-spacing:4}")
+    private int minPixelSpacing;
+
+    // Citirile vin din memorie (VehiclePositionStore), nu din DB
     public List<VehicleResponseDTO> getAllVehicles() {
-        return vehicleRepository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+        return positionStore.getAll();
     }
 
     public List<VehicleResponseDTO> getAvailableVehicles() {
-        return vehicleRepository.findByStatus("AVAILABLE").stream() // Sau "IDLE" daca asa ai in DB
-                .filter(v -> !driverRepository.existsByVehicleId(v.getId()))
-                .map(this::mapToDTO).collect(Collectors.toList());
+        return positionStore.getAll().stream()
+                .filter(availableFilter())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Vehicles visible in a map viewport, bbox = "minLat,minLng,maxLat,maxLng"
+     */
+    public List<VehicleResponseDTO> getVehiclesInViewport(String bbox, boolean availableOnly) {
+        double[] box = parseBoundingBox(bbox);
+        return positionStore.findInBox(box[0], box[1], box[2], box[3], availableOnly ? availableFilter() : v -> true);
+    }
+
+    /**
+     * Viewport markers for a zoom level: vehicles closer than minPixelSpacing pixels on screen are drawn as one
+     * (the first found) carrying the number of vehicles it stands for, so the payload follows what can be drawn,
+     * not how many vehicles are in the area - and no vehicle disappears without being counted.
+     */
+    public List<ViewportMarkerDTO> getViewportMarkers(String bbox, int zoom, boolean availableOnly) {
+        if (zoom < 0 || zoom > 22)
+            throw new RuntimeException("zoom must be between 0 and 22");
+        List<VehicleResponseDTO> inBox = getVehiclesInViewport(bbox, availableOnly);
+
+        // Coordonate Web Mercator in pixeli la zoom-ul dat, grupate in celule de minPixelSpacing
+        double worldPixels = 256.0 * (1L << zoom) / Math.max(1, minPixelSpacing);
+        Map<Long, ViewportMarkerDTO> markers = new LinkedHashMap<>();
+        for (VehicleResponseDTO v : inBox) {
+            long x = (long) (WebMercator.x(v.getLng()) * worldPixels);
+            long y = (long) (WebMercator.y(v.getLat()) * worldPixels);
+            ViewportMarkerDTO marker = markers.get((y << 32) | x);
+            if (marker == null)
+                markers.put((y << 32) | x, new ViewportMarkerDTO(v, 1));
+            else
+                marker.setCount(marker.getCount() + 1);
+        }
+        return List.copyOf(markers.values());
+    }
+
+    /**
+     * Map clusters for a zoom level (64 px cells), optionally only inside bbox
+     * Served from the aggregates the position store keeps up to date; above the finest stored level
+     * the clusters of that level are returned (zoom in the response says which).
+     */
+    public List<VehicleClusterDTO> getClusters(String bbox, int zoom) {
+        if (zoom < 0 || zoom > 22)
+            throw new RuntimeException("zoom must be between 0 and 22");
+        double[] box = bbox != null ? parseBoundingBox(bbox) : new double[] {-90, -180, 90, 180};
+
+        List<VehicleClusterDTO> result = new ArrayList<>();
+        for (ClusterGrid.Cluster cluster : positionStore.findClusters(zoom + CLUSTER_LEVEL_OFFSET,
+                box[0], box[1], box[2], box[3])) {
+            Map<String, Integer> statuses = new LinkedHashMap<>();
+            for (int s = 0; s < ClusterGrid.STATUSES.length; s++) {
+                if (cluster.getStatusCount(s) > 0)
+                    statuses.put(ClusterGrid.STATUSES[s], cluster.getStatusCount(s));
+            }
+            result.add(new VehicleClusterDTO(cluster.getLevel() - CLUSTER_LEVEL_OFFSET, cluster.getX(), cluster.getY(),
+                    cluster.getCount(), cluster.getCentroidLat(), cluster.getCentroidLng(), statuses));
+        }
+        return result;
+    }
+
+    /**
+     * The k closest vehicles to a point, optionally with a given status
+     * status=AVAILABLE also excludes vehicles that already have a driver (same rule as getAvailableVehicles).
+     */
+    public List<NearbyVehicleDTO> findNearby(double lat, double lng, int k, String status) {
+        if (lat < -90 || lat > 90 || lng < -180 || lng > 180)
+            throw new RuntimeException("Invalid coordinates");
+        if (k < 1 || k > maxNearby)
+            throw new RuntimeException("k must be between 1 and " + maxNearby);
+
+        Predicate<VehicleResponseDTO> filter = v -> true;
+        if (status != null && !status.isBlank()) {
+            String wanted = status.toUpperCase();
+            filter = "AVAILABLE".equals(wanted) ? availableFilter() : v -> wanted.equals(v.getStatus());
+        }
+        return positionStore.findNearest(lat, lng, k, filter);
+    }
+
+    // AVAILABLE si fara sofer; o singura interogare pentru toate asignarile, nu una per vehicul
+    private Predicate<VehicleResponseDTO> availableFilter() {
+        Set<Long> assigned = new HashSet<>(driverRepository.findAssignedVehicleIds());
+        return v -> "AVAILABLE".equals(v.getStatus()) && !assigned.contains(v.getId()); // Sau "IDLE" daca asa ai in DB
+    }
+
+    static double[] parseBoundingBox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4)
+            throw new RuntimeException("bbox must be minLat,minLng,maxLat,maxLng");
+        double[] box = new double[4];
+        try {
+            for (int i = 0; i < 4; i++)
+                box[i] = Double.parseDouble(parts[i].trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("bbox must be minLat,minLng,maxLat,maxLng");
+        }
+        // Leaflet poate da longitudini in afara [-180, 180] dupa un pan lung - le limitam
+        box[0] = Math.max(-90, box[0]);
+        box[2] = Math.min(90, box[2]);
+        box[1] = Math.max(-180, box[1]);
+        box[3] = Math.min(180, box[3]);
+        if (box[0] > box[2] || box[1] > box[3])
+            throw new RuntimeException("bbox min must not exceed max");
+        return box;
     }
 
     public VehicleResponseDTO createVehicle(VehicleCreateDTO dto) {
@@ -40,17 +168,19 @@ public class VehicleService {
         vehicle.setLat(dto.getLat() != null ? dto.getLat() : 46.7712);
         vehicle.setLng(dto.getLng() != null ? dto.getLng() : 23.5889);
 
-        return mapToDTO(vehicleRepository.save(vehicle));
+        return broadcast(positionStore.put(vehicleRepository.save(vehicle)));
     }
 
     public VehicleResponseDTO getVehicleById(Long id) {
-        return vehicleRepository.findById(id).map(this::mapToDTO)
-                .orElseThrow(() -> new RuntimeException("Vehicle not found"));
+        return positionStore.get(id)
+                .orElseGet(() -> vehicleRepository.findById(id).map(positionStore::put)
+                        .orElseThrow(() -> new RuntimeException("Vehicle not found")));
     }
 
     public VehicleResponseDTO updateVehicle(Long id, VehicleCreateDTO dto) {
         Vehicle vehicle = vehicleRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Vehicle not found"));
+        positionStore.mergeInto(vehicle);
 
         vehicle.setPlate(dto.getPlate());
         vehicle.setBrand(dto.getBrand());
@@ -62,23 +192,7 @@ public class VehicleService {
         if (dto.getLng() != null)
             vehicle.setLng(dto.getLng());
 
-        return mapToDTO(vehicleRepository.save(vehicle));
-    }
-
-    // === METODĂ NOUĂ CRITICĂ PENTRU SIMULARE ===
-    @Transactional
-    public void updateLocation(Long id, Double lat, Double lng) {
-        Vehicle vehicle = vehicleRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Vehicle not found"));
-
-        vehicle.setLat(lat);
-        vehicle.setLng(lng);
-        // Putem actualiza si statusul automat daca e cazul
-        if ("AVAILABLE".equals(vehicle.getStatus()) || "IDLE".equals(vehicle.getStatus())) {
-            vehicle.setStatus("ON_TRIP");
-        }
-
-        vehicleRepository.save(vehicle);
+        return broadcast(positionStore.put(vehicleRepository.save(vehicle)));
     }
 
     @Transactional
@@ -90,19 +204,14 @@ public class VehicleService {
             driverRepository.save(driver);
         }
         vehicleRepository.deleteById(id);
+        positionStore.remove(id);
+        deadBandFilter.forget(id);
+        geofenceService.forgetVehicle(id);
+        fleetBroadcaster.publishRemoval(id);
     }
 
-    private VehicleResponseDTO mapToDTO(Vehicle v) {
-        VehicleResponseDTO dto = new VehicleResponseDTO();
-        dto.setId(v.getId());
-        dto.setPlate(v.getPlate());
-        dto.setBrand(v.getBrand());
-        dto.setType(v.getType());
-        dto.setStatus(v.getStatus());
-        dto.setLat(v.getLat());
-        dto.setLng(v.getLng());
-        dto.setTotalKm(v.getTotalKm());
-        dto.setLastServiceKm(v.getLastServiceKm());
-        return dto;
+    private VehicleResponseDTO broadcast(VehicleResponseDTO vehicle) {
+        fleetBroadcaster.publishDetails(vehicle);
+        return vehicle;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package com.smartfleet.telemetry;
+
+/**
+ * Mutable holder for one sample of a telemetry recording (see TelemetryRecordingWriter)
+ * Optional values use NaN (doubles), NO_VALUE (longs) or null (status).
+ */
+public class RecordedSample {
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    public long receivedAtMillis;
+    public long vehicleId;
+    public double lat;
+    public double lng;
+    public double speed = Double.NaN;     // km/h
+    public double fuelLevel = Double.NaN; // procent 0-100
+    public String status;
+    public long sequence = NO_VALUE;
+    public long timestamp = NO_VALUE;     // ora dispozitivului, epoch ms
+}
@@ -0,0 +1,17 @@
+package com.smartfleet.telemetry;
+
+/**
+ * Mutable holder for one decoded binary telemetry frame
+ * Reused by the UDP listener for every datagram; the codec reads it with absolute indices from its own scratch
+ * array, so decoding allocates no buffers (only the boxed key-cache lookup when the vehicle id changes).
+ */
+public class TelemetryFrame {
+    public int vehicleId;
+    public long sequence;
+    public long timestamp;   // ora dispozitivului, epoch ms
+    public double lat;
+    public double lng;
+    public double speed;     // km/h
+    public double fuelLevel; // procent 0-100
+    public String status;    // null = neschimbat
+}
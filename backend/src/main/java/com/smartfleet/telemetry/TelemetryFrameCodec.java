@@ -0,0 +1,244 @@
+package com.smartfleet.telemetry;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary telemetry frame for UDP trackers (big-endian, 37 bytes)
+ *
+ * <pre>
+ *  0  version    u8   (2)
+ *  1  vehicleId  u32  0..2^31-1; a frame with the top bit set is rejected before its HMAC is computed
+ *  5  sequence   u32
+ *  9  timestamp  i64  device time, epoch ms (signed, so an old frame cannot be re-sent later)
+ * 17  lat        i32  degrees * 1e7
+ * 21  lng        i32  degrees * 1e7
+ * 25  speed      u16  km/h * 10
+ * 27  fuel       u8   percent
+ * 28  status     u8   0 = unchanged, see STATUS_CODES
+ * 29  hmac       8 bytes = first 8 bytes of HMAC-SHA256(vehicleKey, bytes 0..28)
+ * </pre>
+ *
+ * The listener answers every accepted frame with an ack (big-endian, 21 bytes), signed with the same key:
+ *
+ * <pre>
+ *  0  version           u8   (0x81)
+ *  1  vehicleId         u32
+ *  5  sequence          u32  sequence of the acknowledged frame
+ *  9  reportIntervalMs  u32  how often the tracker should report from now on
+ * 13  hmac              8 bytes = first 8 bytes of HMAC-SHA256(vehicleKey, bytes 0..12)
+ * </pre>
+ *
+ * Every vehicle has its own key, derived from the server secret (see deriveVehicleKey),
+ * so a leaked tracker key cannot be used to move other vehicles.
+ * One codec instance per thread: it keeps a Mac, the derived keys and scratch arrays.
+ * A received frame only adds its key to the cache after the HMAC has been verified, so forged
+ * frames with random vehicle ids cost one derivation each but never evict the real trackers' keys.
+ */
+public class TelemetryFrameCodec {
+
+    // v2: + timestamp (v1 nu avea nimic care sa impiedice retrimiterea unui frame vechi)
+    public static final byte VERSION = 2;
+    public static final int PAYLOAD_SIZE = 29;
+    public static final int HMAC_SIZE = 8;
+    public static final int FRAME_SIZE = PAYLOAD_SIZE + HMAC_SIZE;
+
+    public static final byte ACK_VERSION = (byte) 0x81;
+    public static final int ACK_PAYLOAD_SIZE = 13;
+    public static final int ACK_SIZE = ACK_PAYLOAD_SIZE + HMAC_SIZE;
+
+    public static final String[] STATUS_CODES = {null, "ON_TRIP", "IDLE", "MAINTENANCE", "AVAILABLE"};
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final double COORD_SCALE = 1e7;
+    private static final int MAX_CACHED_KEYS = 100_000;
+
+    private final byte[] masterSecret;
+    private final Mac mac;
+    private final byte[] payload = new byte[PAYLOAD_SIZE];
+    private final byte[] ackPayload = new byte[ACK_PAYLOAD_SIZE];
+    private final byte[] receivedTag = new byte[HMAC_SIZE];
+    private final byte[] expectedTag = new byte[HMAC_SIZE];
+    private final byte[] fullMac = new byte[32];
+    private final Map<Integer, SecretKeySpec> vehicleKeys = new HashMap<>();
+    private int currentVehicleId = -1;
+    private SecretKeySpec currentKey;
+    private boolean currentKeyCached;
+
+    public TelemetryFrameCodec(String masterSecret) {
+        this.masterSecret = masterSecret.getBytes(StandardCharsets.UTF_8);
+        try {
+            this.mac = Mac.getInstance(HMAC_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * Per-vehicle key = HMAC-SHA256(masterSecret, "vehicle:" + vehicleId)
+     */
+    public static byte[] deriveVehicleKey(byte[] masterSecret, int vehicleId) {
+        try {
+            Mac kdf = Mac.getInstance(HMAC_ALGORITHM);
+            kdf.init(new SecretKeySpec(masterSecret, HMAC_ALGORITHM));
+            return kdf.doFinal(("vehicle:" + vehicleId).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot derive vehicle key", e);
+        }
+    }
+
+    /**
+     * Decode and authenticate one frame from the buffer (position..limit)
+     * Returns false for a wrong size / version or a bad HMAC; frame is then left in an undefined state.
+     */
+    public boolean decode(ByteBuffer in, TelemetryFrame frame) {
+        if (in.remaining() != FRAME_SIZE)
+            return false;
+
+        in.get(payload);
+        in.get(receivedTag);
+        if (payload[0] != VERSION)
+            return false;
+
+        // Citire cu indici absoluti direct din array (fara ByteBuffer.wrap - nicio alocare per frame)
+        frame.vehicleId = getInt(payload, 1);
+        // Id-urile sunt Long pozitive in restul aplicatiei; bitul de sus setat = frame invalid, fara derivare de cheie
+        if (frame.vehicleId < 0)
+            return false;
+        frame.sequence = Integer.toUnsignedLong(getInt(payload, 5));
+        frame.timestamp = getLong(payload, 9);
+        frame.lat = getInt(payload, 17) / COORD_SCALE;
+        frame.lng = getInt(payload, 21) / COORD_SCALE;
+        frame.speed = getUnsignedShort(payload, 25) / 10.0;
+        frame.fuelLevel = Byte.toUnsignedInt(payload[27]);
+        int statusCode = Byte.toUnsignedInt(payload[28]);
+        frame.status = statusCode < STATUS_CODES.length ? STATUS_CODES[statusCode] : null;
+
+        sign(frame.vehicleId, payload, expectedTag, false);
+        if (!MessageDigest.isEqual(receivedTag, expectedTag))
+            return false;
+
+        cacheCurrentKey();
+        return true;
+    }
+
+    /**
+     * Encode and sign one frame into the buffer (used by trackers / UdpTelemetrySender)
+     */
+    public void encode(TelemetryFrame frame, ByteBuffer out) {
+        if (frame.vehicleId < 0)
+            throw new IllegalArgumentException("vehicleId must be between 0 and 2^31-1: " + frame.vehicleId);
+        payload[0] = VERSION;
+        putInt(payload, 1, frame.vehicleId);
+        putInt(payload, 5, (int) frame.sequence);
+        putInt(payload, 9, (int) (frame.timestamp >>> 32));
+        putInt(payload, 13, (int) frame.timestamp);
+        putInt(payload, 17, (int) Math.round(frame.lat * COORD_SCALE));
+        putInt(payload, 21, (int) Math.round(frame.lng * COORD_SCALE));
+        int speed = (int) Math.min(0xFFFF, Math.round(frame.speed * 10));
+        payload[25] = (byte) (speed >>> 8);
+        payload[26] = (byte) speed;
+        payload[27] = (byte) Math.max(0, Math.min(100, Math.round(frame.fuelLevel)));
+        payload[28] = (byte) statusCode(frame.status);
+
+        sign(frame.vehicleId, payload, expectedTag, true);
+        out.put(payload);
+        out.put(expectedTag);
+    }
+
+    /**
+     * Encode and sign the ack for an accepted frame (server -> tracker)
+     */
+    public void encodeAck(int vehicleId, long sequence, long reportIntervalMs, ByteBuffer out) {
+        ackPayload[0] = ACK_VERSION;
+        putInt(ackPayload, 1, vehicleId);
+        putInt(ackPayload, 5, (int) sequence);
+        putInt(ackPayload, 9, (int) Math.min(0xFFFFFFFFL, reportIntervalMs));
+
+        sign(vehicleId, ackPayload, expectedTag, true);
+        out.put(ackPayload);
+        out.put(expectedTag);
+    }
+
+    /**
+     * Decode and authenticate an ack for the given vehicle; returns its reportIntervalMs, or -1 if it is invalid
+     */
+    public long decodeAckInterval(ByteBuffer in, int vehicleId) {
+        if (in.remaining() != ACK_SIZE)
+            return -1;
+
+        in.get(ackPayload);
+        in.get(receivedTag);
+        if (ackPayload[0] != ACK_VERSION || getInt(ackPayload, 1) != vehicleId)
+            return -1;
+        long reportIntervalMs = Integer.toUnsignedLong(getInt(ackPayload, 9));
+
+        sign(vehicleId, ackPayload, expectedTag, true);
+        return MessageDigest.isEqual(receivedTag, expectedTag) ? reportIntervalMs : -1;
+    }
+
+    // Big-endian, ca ByteBuffer
+    private static int getInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        return (long) getInt(data, offset) << 32 | Integer.toUnsignedLong(getInt(data, offset + 4));
+    }
+
+    private static int getUnsignedShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | data[offset + 1] & 0xFF;
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    public static int statusCode(String status) {
+        for (int i = 1; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i].equals(status))
+                return i;
+        }
+        return 0;
+    }
+
+    // Tag-ul = primii 8 bytes din HMAC-SHA256 peste payload; Mac-ul se reinitializeaza doar la schimbarea vehiculului
+    // cache = false pentru frame-uri primite: cheia intra in cache abia dupa verificare (cacheCurrentKey)
+    private void sign(int vehicleId, byte[] data, byte[] tag, boolean cache) {
+        try {
+            if (vehicleId != currentVehicleId) {
+                currentKey = vehicleKeys.get(vehicleId);
+                currentKeyCached = currentKey != null;
+                if (currentKey == null)
+                    currentKey = new SecretKeySpec(deriveVehicleKey(masterSecret, vehicleId), HMAC_ALGORITHM);
+                mac.init(currentKey);
+                currentVehicleId = vehicleId;
+            }
+            if (cache)
+                cacheCurrentKey();
+            mac.update(data);
+            mac.doFinal(fullMac, 0);
+            System.arraycopy(fullMac, 0, tag, 0, HMAC_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign telemetry frame", e);
+        }
+    }
+
+    private void cacheCurrentKey() {
+        // Limita ramane ca plasa de siguranta; doar id-uri verificate (sau proprii) ajung aici
+        if (!currentKeyCached && vehicleKeys.size() < MAX_CACHED_KEYS) {
+            vehicleKeys.put(currentVehicleId, currentKey);
+            currentKeyCached = true;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.smartfleet.telemetry;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static com.smartfleet.telemetry.TelemetryRecordingWriter.*;
+
+/**
+ * Reads a recording written by TelemetryRecordingWriter, one sample at a time
+ * A file cut short (process killed while recording) ends at the last complete sample.
+ */
+public class TelemetryRecordingReader implements Closeable {
+
+    private final DataInputStream in;
+    private final long startMillis;
+    private long previousMillis;
+
+    public TelemetryRecordingReader(InputStream source) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(source, 64 * 1024), 64 * 1024));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("Not a telemetry recording");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported telemetry recording version " + version);
+        startMillis = in.readLong();
+        previousMillis = startMillis;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Read the next sample into the holder; false at the end of the recording
+     */
+    public boolean next(RecordedSample sample) throws IOException {
+        try {
+            long delta = readVarLong();
+            sample.receivedAtMillis = previousMillis + delta;
+            sample.vehicleId = readVarLong();
+            int flags = in.readUnsignedByte();
+            sample.lat = in.readInt() / COORD_SCALE;
+            sample.lng = in.readInt() / COORD_SCALE;
+            sample.speed = (flags & HAS_SPEED) != 0 ? readVarLong() / VALUE_SCALE : Double.NaN;
+            sample.fuelLevel = (flags & HAS_FUEL) != 0 ? readVarLong() / VALUE_SCALE : Double.NaN;
+            sample.sequence = (flags & HAS_SEQUENCE) != 0 ? unZigZag(readVarLong()) : RecordedSample.NO_VALUE;
+            sample.timestamp = (flags & HAS_TIMESTAMP) != 0
+                    ? sample.receivedAtMillis + unZigZag(readVarLong()) : RecordedSample.NO_VALUE;
+            if ((flags & HAS_STATUS_CODE) != 0) {
+                int code = in.readUnsignedByte();
+                String[] codes = TelemetryFrameCodec.STATUS_CODES;
+                sample.status = code < codes.length ? codes[code] : null;
+            } else if ((flags & HAS_STATUS_TEXT) != 0) {
+                byte[] text = new byte[in.readUnsignedByte()];
+                in.readFully(text);
+                sample.status = new String(text, StandardCharsets.UTF_8);
+            } else {
+                sample.status = null;
+            }
+            previousMillis = sample.receivedAtMillis;
+            return true;
+        } catch (EOFException e) {
+            // Sfarsitul fisierului sau fisier trunchiat (gzip fara trailer, tot EOFException) -
+            // ne oprim la ultima mostra completa
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint in telemetry recording");
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
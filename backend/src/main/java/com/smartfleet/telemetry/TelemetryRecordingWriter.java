@@ -0,0 +1,96 @@
+package com.smartfleet.telemetry;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary telemetry recording (gzip stream)
+ * Header: "SFTR", version u8, start time i64 (epoch ms).
+ * Record: varint ms since previous record, varint vehicle id, flags u8, lat/lng i32 (x1e7),
+ * then only the optional fields present in flags - about 15-20 bytes per sample before gzip.
+ */
+public class TelemetryRecordingWriter implements Closeable {
+
+    static final byte[] MAGIC = {'S', 'F', 'T', 'R'};
+    static final byte VERSION = 1;
+    static final double COORD_SCALE = 1e7;
+    static final double VALUE_SCALE = 10;
+
+    static final int HAS_SPEED = 1;
+    static final int HAS_FUEL = 1 << 1;
+    static final int HAS_SEQUENCE = 1 << 2;
+    static final int HAS_TIMESTAMP = 1 << 3;
+    static final int HAS_STATUS_CODE = 1 << 4;
+    static final int HAS_STATUS_TEXT = 1 << 5;
+
+    private final DataOutputStream out;
+    private long previousMillis;
+
+    public TelemetryRecordingWriter(OutputStream target, long startMillis) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(target, 64 * 1024), 64 * 1024));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(startMillis);
+        previousMillis = startMillis;
+    }
+
+    public void write(RecordedSample sample) throws IOException {
+        // Timpul e monoton in inregistrare (ordinea de sosire); un ceas dat inapoi devine delta 0
+        writeVarLong(Math.max(0, sample.receivedAtMillis - previousMillis));
+        previousMillis = Math.max(previousMillis, sample.receivedAtMillis);
+        writeVarLong(sample.vehicleId);
+
+        int statusCode = sample.status == null ? 0 : TelemetryFrameCodec.statusCode(sample.status);
+        int flags = (Double.isNaN(sample.speed) ? 0 : HAS_SPEED)
+                | (Double.isNaN(sample.fuelLevel) ? 0 : HAS_FUEL)
+                | (sample.sequence == RecordedSample.NO_VALUE ? 0 : HAS_SEQUENCE)
+                | (sample.timestamp == RecordedSample.NO_VALUE ? 0 : HAS_TIMESTAMP)
+                | (sample.status == null ? 0 : statusCode != 0 ? HAS_STATUS_CODE : HAS_STATUS_TEXT);
+        out.writeByte(flags);
+        out.writeInt((int) Math.round(sample.lat * COORD_SCALE));
+        out.writeInt((int) Math.round(sample.lng * COORD_SCALE));
+
+        if ((flags & HAS_SPEED) != 0)
+            writeVarLong(Math.round(Math.max(0, sample.speed) * VALUE_SCALE));
+        if ((flags & HAS_FUEL) != 0)
+            writeVarLong(Math.round(Math.max(0, sample.fuelLevel) * VALUE_SCALE));
+        if ((flags & HAS_SEQUENCE) != 0)
+            writeVarLong(zigZag(sample.sequence));
+        if ((flags & HAS_TIMESTAMP) != 0)
+            writeVarLong(zigZag(sample.timestamp - sample.receivedAtMillis));
+        if ((flags & HAS_STATUS_CODE) != 0) {
+            out.writeByte(statusCode);
+        } else if ((flags & HAS_STATUS_TEXT) != 0) {
+            byte[] text = sample.status.getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(text.length, 255);
+            out.writeByte(length);
+            out.write(text, 0, length);
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
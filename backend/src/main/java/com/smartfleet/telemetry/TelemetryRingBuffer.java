@@ -0,0 +1,106 @@
+package com.smartfleet.telemetry;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free ring buffer with many producers and ONE consumer
+ * Producers claim a sequence with a CAS and publish the slot by writing that sequence into
+ * a per-slot marker; the single consumer reads slots in order and frees them in batches.
+ * When the ring is full tryPublish fails immediately - the caller decides the backpressure policy.
+ */
+public class TelemetryRingBuffer<T> {
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] entries;
+    private final AtomicLongArray published;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong();
+
+    public TelemetryRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2)
+            throw new IllegalArgumentException("Ring capacity must be at least 2");
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.entries = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Try to append an item; returns false (without blocking) when the ring is full
+     */
+    public boolean tryPublish(T item) {
+        long sequence = tryClaim(1);
+        if (sequence < 0)
+            return false;
+        set(sequence, item);
+        return true;
+    }
+
+    /**
+     * Claim count consecutive slots at once; returns the first sequence, or -1 (without blocking) if they do not
+     * all fit. Every claimed slot must then be filled with set(), otherwise the consumer stops there.
+     */
+    public long tryClaim(int count) {
+        if (count <= 0 || count > capacity)
+            return -1;
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence + count - consumerSequence.get() > capacity)
+                return -1;
+            if (claimSequence.compareAndSet(sequence, sequence + count))
+                return sequence;
+        }
+    }
+
+    /**
+     * Publish the item of a slot claimed with tryClaim
+     */
+    public void set(long sequence, T item) {
+        int index = (int) (sequence & mask);
+        entries[index] = item;
+        // Release: consumatorul vede entries[index] dupa ce vede secventa
+        published.lazySet(index, sequence);
+    }
+
+    /**
+     * Move up to maxItems published items into target, in publish order (consumer thread only)
+     * Stops at the first slot that is claimed but not yet published.
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<T> target, int maxItems) {
+        long next = consumerSequence.get();
+        int count = 0;
+        while (count < maxItems) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next)
+                break;
+            target.add((T) entries[index]);
+            entries[index] = null;
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            // Eliberam sloturile pentru producatori
+            consumerSequence.lazySet(next);
+        }
+        return count;
+    }
+
+    public int size() {
+        return (int) Math.max(0, claimSequence.get() - consumerSequence.get());
+    }
+
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
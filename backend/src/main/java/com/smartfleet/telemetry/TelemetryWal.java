@@ -0,0 +1,228 @@
+package com.smartfleet.telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped write-ahead log made of fixed-size segment files
+ * Record layout: [int length][int crc32c(payload)][payload]; a zero length marks the end of a segment.
+ * Writes land in the page cache as soon as append returns (safe against a process crash);
+ * force() makes them durable against an OS crash.
+ *
+ * Every segment counts appended and applied records. A segment can be deleted once it is sealed
+ * (a newer segment exists) and everything in it was applied - the caller decides when "applied"
+ * data is really persisted (see fullyAppliedSegments / deleteSegments).
+ */
+public class TelemetryWal implements Closeable {
+
+    public interface RecordHandler {
+        void onRecord(long segmentIndex, ByteBuffer payload);
+    }
+
+    private static final String FILE_PREFIX = "telemetry-";
+    private static final String FILE_SUFFIX = ".wal";
+    private static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Set<Path> pendingDeletes = ConcurrentHashMap.newKeySet();
+    private final CRC32C crc = new CRC32C();
+    private volatile Segment active;
+    private volatile boolean closed;
+
+    public TelemetryWal(Path directory, int segmentSize) {
+        if (segmentSize < 1024)
+            throw new IllegalArgumentException("WAL segment size must be at least 1 KB");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Replay every existing segment in order, then open a fresh active segment
+     * Returns the replayed segment indexes; they are sealed and already count as applied,
+     * so the caller can delete them once the replayed data is persisted.
+     * A record with a bad checksum (torn write) ends the replay of its segment.
+     */
+    public List<Long> replayAndOpen(RecordHandler handler) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> existing = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                existing.put(Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())), file);
+            }
+        }
+
+        List<Long> replayed = new ArrayList<>();
+        CRC32C check = new CRC32C();
+        for (Map.Entry<Long, Path> entry : existing.entrySet()) {
+            int records = 0;
+            try (FileChannel channel = FileChannel.open(entry.getValue(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= HEADER_SIZE) {
+                    int length = buffer.getInt();
+                    int expectedCrc = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining())
+                        break;
+                    ByteBuffer payload = buffer.slice(buffer.position(), length);
+                    check.reset();
+                    check.update(payload.duplicate());
+                    if ((int) check.getValue() != expectedCrc)
+                        break;
+                    handler.onRecord(entry.getKey(), payload);
+                    buffer.position(buffer.position() + length);
+                    records++;
+                }
+            }
+            Segment segment = new Segment(entry.getKey(), entry.getValue());
+            segment.appended.set(records);
+            segment.applied.set(records);
+            segment.sealed = true;
+            segments.put(segment.index, segment);
+            replayed.add(segment.index);
+        }
+
+        openSegment(existing.isEmpty() ? 0 : existing.lastKey() + 1);
+        return replayed;
+    }
+
+    /**
+     * Append one record (payload position..limit) and return the index of the segment it went to
+     */
+    public synchronized long append(ByteBuffer payload) throws IOException {
+        if (closed)
+            throw new IllegalStateException("WAL is closed");
+        int length = payload.remaining();
+        if (HEADER_SIZE + length > segmentSize)
+            throw new IllegalArgumentException("WAL record too large: " + length + " bytes");
+
+        if (active.buffer.remaining() < HEADER_SIZE + length) {
+            roll();
+        }
+
+        crc.reset();
+        crc.update(payload.duplicate());
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        // Lungimea se scrie ULTIMA: un cititor nu vede niciodata un record pe jumatate
+        buffer.position(start + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        buffer.putInt(start, length);
+        active.appended.incrementAndGet();
+        return active.index;
+    }
+
+    public void markApplied(long segmentIndex, int count) {
+        Segment segment = segments.get(segmentIndex);
+        if (segment != null)
+            segment.applied.addAndGet(count);
+    }
+
+    /**
+     * Sealed segments whose records were all applied
+     */
+    public List<Long> fullyAppliedSegments() {
+        List<Long> result = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment.sealed && segment.applied.get() >= segment.appended.get())
+                result.add(segment.index);
+        }
+        return result;
+    }
+
+    /**
+     * Delete segments (and retry earlier deletes that failed, e.g. a file still mapped on Windows)
+     */
+    public void deleteSegments(List<Long> indexes) {
+        for (Long index : indexes) {
+            Segment segment = segments.get(index);
+            if (segment != null && segment.sealed) {
+                segments.remove(index);
+                pendingDeletes.add(segment.path);
+            }
+        }
+        pendingDeletes.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Flush the active segment to disk (msync)
+     */
+    public void force() {
+        Segment current = active;
+        if (current != null && !closed)
+            current.buffer.force();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Force and seal the active segment; no more appends are accepted
+     */
+    @Override
+    public synchronized void close() {
+        if (closed || active == null)
+            return;
+        active.buffer.force();
+        active.sealed = true;
+        closed = true;
+    }
+
+    private void roll() throws IOException {
+        active.buffer.force();
+        active.sealed = true;
+        openSegment(active.index + 1);
+    }
+
+    private void openSegment(long index) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", FILE_PREFIX, index, FILE_SUFFIX));
+        Segment segment = new Segment(index, path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Maparea ramane valida si dupa inchiderea canalului
+            segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segments.put(index, segment);
+        active = segment;
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final Path path;
+        private final AtomicInteger appended = new AtomicInteger();
+        private final AtomicInteger applied = new AtomicInteger();
+        private MappedByteBuffer buffer;
+        private volatile boolean sealed;
+
+        private Segment(long index, Path path) {
+            this.index = index;
+            this.path = path;
+        }
+    }
+}
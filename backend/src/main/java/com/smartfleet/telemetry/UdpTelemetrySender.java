@@ -0,0 +1,74 @@
+package com.smartfleet.telemetry;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Local test sender for the UDP telemetry listener (simulates one tracker)
+ *
+ * <pre>
+ * mvn compile
+ * java -cp target/classes com.smartfleet.telemetry.UdpTelemetrySender localhost 9999 &lt;hmac-secret&gt; &lt;vehicleId&gt; [frames] [intervalMs]
+ * </pre>
+ *
+ * The truck drives from Cluj-Napoca towards Budapest, one frame per interval; once the server acks a frame
+ * the sender switches to the reportIntervalMs it hints.
+ */
+public class UdpTelemetrySender {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Usage: UdpTelemetrySender <host> <port> <hmac-secret> <vehicleId> [frames] [intervalMs]");
+            return;
+        }
+        InetSocketAddress target = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        TelemetryFrameCodec codec = new TelemetryFrameCodec(args[2]);
+        int vehicleId = Integer.parseInt(args[3]);
+        int frames = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        long intervalMs = args.length > 5 ? Long.parseLong(args[5]) : 500;
+
+        // Cluj-Napoca -> Budapest
+        double startLat = 46.7712, startLng = 23.5889;
+        double endLat = 47.4979, endLng = 19.0402;
+
+        TelemetryFrame frame = new TelemetryFrame();
+        frame.vehicleId = vehicleId;
+        frame.status = "ON_TRIP";
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TelemetryFrameCodec.FRAME_SIZE);
+        ByteBuffer ack = ByteBuffer.allocateDirect(TelemetryFrameCodec.ACK_SIZE);
+
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.configureBlocking(false);
+            for (int i = 0; i < frames; i++) {
+                double t = frames > 1 ? (double) i / (frames - 1) : 0;
+                frame.sequence = i + 1;
+                frame.timestamp = System.currentTimeMillis();
+                frame.lat = startLat + (endLat - startLat) * t;
+                frame.lng = startLng + (endLng - startLng) * t;
+                frame.speed = 85 + (i % 10);
+                frame.fuelLevel = Math.max(0, 100 - i * 0.05);
+
+                buffer.clear();
+                codec.encode(frame, buffer);
+                buffer.flip();
+                channel.send(buffer, target);
+
+                System.out.printf("#%d vehicle %d -> %.5f, %.5f%n", frame.sequence, vehicleId, frame.lat, frame.lng);
+                Thread.sleep(intervalMs);
+
+                // Ack-urile primite intre timp: serverul poate cere o rata mai mica (camion parcat)
+                ack.clear();
+                while (channel.receive(ack) != null) {
+                    ack.flip();
+                    long hint = codec.decodeAckInterval(ack, vehicleId);
+                    if (hint > 0 && hint != intervalMs) {
+                        System.out.printf("Server asks for one frame every %d ms%n", hint);
+                        intervalMs = hint;
+                    }
+                    ack.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.smartfleet.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Per-vehicle high-water mark (last sequence number and device timestamp) of accepted samples
+ * Open-addressing map with primitive long keys and values - no boxing, no per-entry objects.
+ * NOT thread-safe: owned by the single telemetry consumer thread (single writer).
+ *
+ * Sequence numbers win over timestamps; a sequence that drops far below the mark
+ * (or comes with a newer device timestamp) is taken as a device restart, not as a late sample.
+ */
+public class VehicleSequenceTracker {
+
+    public enum Verdict { IN_ORDER, DUPLICATE, LATE }
+
+    /** Marker for "no sequence / no timestamp" */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final long resetWindow;
+    private long[] keys;
+    private long[] sequences;
+    private long[] timestamps;
+    private int mask;
+    private int size;
+
+    public VehicleSequenceTracker(int expectedVehicles, long resetWindow) {
+        this.resetWindow = resetWindow;
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedVehicles / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Classify a sample against the vehicle's mark; IN_ORDER samples move the mark forward
+     */
+    public Verdict check(long vehicleId, long sequence, long timestamp) {
+        if (vehicleId == EMPTY_KEY)
+            throw new IllegalArgumentException("Invalid vehicle id");
+
+        int slot = slotOf(vehicleId);
+        if (keys[slot] == EMPTY_KEY) {
+            keys[slot] = vehicleId;
+            sequences[slot] = sequence;
+            timestamps[slot] = timestamp;
+            if (++size > keys.length * LOAD_FACTOR)
+                rehash(keys.length << 1);
+            return Verdict.IN_ORDER;
+        }
+
+        long lastSequence = sequences[slot];
+        long lastTimestamp = timestamps[slot];
+        if (sequence != NONE && lastSequence != NONE) {
+            if (sequence <= lastSequence && !isRestart(sequence, lastSequence, timestamp, lastTimestamp))
+                return sequence == lastSequence ? Verdict.DUPLICATE : Verdict.LATE;
+        } else if (timestamp != NONE && lastTimestamp != NONE) {
+            if (timestamp <= lastTimestamp)
+                return timestamp == lastTimestamp ? Verdict.DUPLICATE : Verdict.LATE;
+        }
+
+        if (sequence != NONE)
+            sequences[slot] = sequence;
+        if (timestamp != NONE)
+            timestamps[slot] = timestamp;
+        return Verdict.IN_ORDER;
+    }
+
+    /**
+     * Copy the marks of another tracker (e.g. the one filled while replaying the WAL); its marks win
+     */
+    public void putAll(VehicleSequenceTracker other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY_KEY)
+                put(other.keys[i], other.sequences[i], other.timestamps[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean isRestart(long sequence, long lastSequence, long timestamp, long lastTimestamp) {
+        return lastSequence - sequence > resetWindow
+                || (timestamp != NONE && lastTimestamp != NONE && timestamp > lastTimestamp);
+    }
+
+    private void put(long vehicleId, long sequence, long timestamp) {
+        int slot = slotOf(vehicleId);
+        boolean added = keys[slot] == EMPTY_KEY;
+        keys[slot] = vehicleId;
+        sequences[slot] = sequence;
+        timestamps[slot] = timestamp;
+        if (added && ++size > keys.length * LOAD_FACTOR)
+            rehash(keys.length << 1);
+    }
+
+    private int slotOf(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        sequences = new long[capacity];
+        timestamps = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldSequences = sequences;
+        long[] oldTimestamps = timestamps;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY_KEY)
+                continue;
+            int slot = slotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            sequences[slot] = oldSequences[i];
+            timestamps[slot] = oldTimestamps[i];
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.smartfleet.tiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal Mapbox Vector Tile (v2.1) encoder - protobuf written by hand, no dependencies
+ *
+ * <pre>
+ * Tile    { repeated Layer layers = 3; }
+ * Layer   { uint32 version = 15; string name = 1; repeated Feature features = 2;
+ *           repeated string keys = 3; repeated Value values = 4; uint32 extent = 5; }
+ * Feature { uint64 id = 1; packed uint32 tags = 2; GeomType type = 3; packed uint32 geometry = 4; }
+ * Value   { string = 1; double = 3; sint64 = 6; bool = 7; }
+ * </pre>
+ *
+ * Coordinates are tile-local integers in [0, extent) (values slightly outside are the tile buffer).
+ * One encoder per tile; not thread-safe.
+ */
+public final class MvtEncoder {
+
+    public static final int EXTENT = 4096;
+    public static final String CONTENT_TYPE = "application/vnd.mapbox-vector-tile";
+
+    private static final int POINT = 1;
+    private static final int LINESTRING = 2;
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+
+    private final List<Layer> layers = new ArrayList<>();
+
+    public Layer layer(String name) {
+        Layer layer = new Layer(name);
+        layers.add(layer);
+        return layer;
+    }
+
+    public byte[] encode() {
+        ProtoWriter tile = new ProtoWriter(256);
+        for (Layer layer : layers) {
+            if (layer.featureCount > 0)
+                tile.writeMessage(3, layer.encode());
+        }
+        return tile.toByteArray();
+    }
+
+    /**
+     * One named layer; keys and values are shared by all its features
+     */
+    public static final class Layer {
+        private final String name;
+        private final ProtoWriter features = new ProtoWriter(1024);
+        private final ProtoWriter feature = new ProtoWriter(64);
+        private final Map<String, Integer> keyIndex = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+        private final Map<Object, Integer> valueIndex = new HashMap<>();
+        private final List<Object> values = new ArrayList<>();
+        private int[] tags = new int[16];
+        private int[] geometry = new int[64];
+        private int featureCount;
+
+        private Layer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Point feature; tagKeys[i] = tagValues[i] (String, Integer / Long, Double / Float, Boolean; nulls skipped)
+         */
+        public void addPoint(long id, int x, int y, String[] tagKeys, Object[] tagValues) {
+            geometry[0] = command(MOVE_TO, 1);
+            geometry[1] = zigZag(x);
+            geometry[2] = zigZag(y);
+            addFeature(id, POINT, 3, tagKeys, tagValues);
+        }
+
+        /**
+         * LineString feature through points [0, count); repeated points are dropped,
+         * a line with fewer than 2 distinct points is skipped. Returns true if it was added.
+         */
+        public boolean addLineString(long id, int[] xs, int[] ys, int count, String[] tagKeys, Object[] tagValues) {
+            if (count < 2)
+                return false;
+            ensureGeometry(2 * count + 2);
+            geometry[1] = zigZag(xs[0]);
+            geometry[2] = zigZag(ys[0]);
+            int length = 4;
+            int cursorX = xs[0];
+            int cursorY = ys[0];
+            for (int i = 1; i < count; i++) {
+                int dx = xs[i] - cursorX;
+                int dy = ys[i] - cursorY;
+                if (dx == 0 && dy == 0)
+                    continue;
+                geometry[length++] = zigZag(dx);
+                geometry[length++] = zigZag(dy);
+                cursorX = xs[i];
+                cursorY = ys[i];
+            }
+            int lineTo = (length - 4) / 2;
+            if (lineTo == 0)
+                return false;
+            geometry[0] = command(MOVE_TO, 1);
+            geometry[3] = command(LINE_TO, lineTo);
+            addFeature(id, LINESTRING, length, tagKeys, tagValues);
+            return true;
+        }
+
+        private void addFeature(long id, int type, int geometryLength, String[] tagKeys, Object[] tagValues) {
+            int tagCount = 0;
+            if (tags.length < 2 * tagKeys.length)
+                tags = new int[2 * tagKeys.length];
+            for (int i = 0; i < tagKeys.length; i++) {
+                if (tagValues[i] == null)
+                    continue;
+                tags[tagCount++] = keyIndex.computeIfAbsent(tagKeys[i], k -> {
+                    keys.add(k);
+                    return keys.size() - 1;
+                });
+                tags[tagCount++] = valueIndex.computeIfAbsent(normalize(tagValues[i]), v -> {
+                    values.add(v);
+                    return values.size() - 1;
+                });
+            }
+
+            feature.reset();
+            feature.writeVarintField(1, id);
+            if (tagCount > 0)
+                feature.writePacked(2, tags, tagCount);
+            feature.writeVarintField(3, type);
+            feature.writePacked(4, geometry, geometryLength);
+            features.writeMessage(2, feature);
+            featureCount++;
+        }
+
+        private ProtoWriter encode() {
+            ProtoWriter layer = new ProtoWriter(features.size() + 256);
+            layer.writeVarintField(15, 2);
+            layer.writeString(1, name);
+            layer.writeRaw(features);
+            for (String key : keys)
+                layer.writeString(3, key);
+            ProtoWriter value = new ProtoWriter(32);
+            for (Object v : values) {
+                value.reset();
+                if (v instanceof String s) {
+                    value.writeString(1, s);
+                } else if (v instanceof Double d) {
+                    value.writeDouble(3, d);
+                } else if (v instanceof Long l) {
+                    value.writeVarintField(6, (l << 1) ^ (l >> 63));
+                } else if (v instanceof Boolean b) {
+                    value.writeVarintField(7, b ? 1 : 0);
+                }
+                layer.writeMessage(4, value);
+            }
+            layer.writeVarintField(5, EXTENT);
+            return layer;
+        }
+
+        private void ensureGeometry(int size) {
+            if (geometry.length < size)
+                geometry = new int[Math.max(size, geometry.length * 2)];
+        }
+
+        private static Object normalize(Object value) {
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+                return ((Number) value).longValue();
+            if (value instanceof Float f)
+                return f.doubleValue();
+            if (value instanceof Long || value instanceof Double || value instanceof Boolean || value instanceof String)
+                return value;
+            return value.toString();
+        }
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    // Buffer protobuf crescator: campuri varint / fixed64 / length-delimited
+    private static final class ProtoWriter {
+        private byte[] buf;
+        private int size;
+
+        ProtoWriter(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        void writeVarintField(int field, long value) {
+            writeVarint((long) field << 3);
+            writeVarint(value);
+        }
+
+        void writeDouble(int field, double value) {
+            writeVarint(((long) field << 3) | 1);
+            ensure(8);
+            long bits = Double.doubleToLongBits(value);
+            for (int i = 0; i < 8; i++)
+                buf[size++] = (byte) (bits >>> (8 * i));
+        }
+
+        void writeString(int field, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(((long) field << 3) | 2);
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeMessage(int field, ProtoWriter message) {
+            writeVarint(((long) field << 3) | 2);
+            writeVarint(message.size);
+            writeRaw(message);
+        }
+
+        void writeRaw(ProtoWriter other) {
+            ensure(other.size);
+            System.arraycopy(other.buf, 0, buf, size, other.size);
+            size += other.size;
+        }
+
+        void writePacked(int field, int[] values, int count) {
+            int length = 0;
+            for (int i = 0; i < count; i++)
+                length += varintSize(values[i] & 0xFFFFFFFFL);
+            writeVarint(((long) field << 3) | 2);
+            writeVarint(length);
+            for (int i = 0; i < count; i++)
+                writeVarint(values[i] & 0xFFFFFFFFL);
+        }
+
+        private void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        private static int varintSize(long value) {
+            int n = 1;
+            while ((value & ~0x7FL) != 0) {
+                value >>>= 7;
+                n++;
+            }
+            return n;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.smartfleet.tiles;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of encoded tiles, each with a strong ETag (SHA-256 of the bytes, first 128 bits)
+ * An expired tile is re-encoded by the caller; if the content did not change the ETag stays the same,
+ * so map clients revalidating with If-None-Match get a 304 instead of the tile.
+ */
+public final class TileCache {
+
+    public static final class Tile {
+        private final byte[] data;
+        private final String etag;
+        private final long expiresAtMillis;
+
+        public Tile(byte[] data, long expiresAtMillis) {
+            this.data = data;
+            this.etag = "\"" + HexFormat.of().formatHex(sha256(data), 0, 16) + "\"";
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private final Map<String, Tile> tiles;
+
+    public TileCache(int maxEntries) {
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Tile> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cached tile, or null if missing / expired
+     */
+    public synchronized Tile get(String key, long nowMillis) {
+        Tile tile = tiles.get(key);
+        return tile != null && tile.expiresAtMillis > nowMillis ? tile : null;
+    }
+
+    public synchronized void put(String key, Tile tile) {
+        tiles.put(key, tile);
+    }
+
+    /**
+     * True if an If-None-Match header matches the ETag: "*", or one of a comma-separated list of tags
+     * (weak comparison, as RFC 9110 requires for If-None-Match - a W/ prefix is ignored)
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null)
+            return false;
+        String wanted = stripWeak(etag.trim());
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || stripWeak(tag).equals(wanted))
+                return true;
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.smartfleet.websocket;
+
+import com.smartfleet.dto.WebSocketOutboundStatsDTO;
+import com.smartfleet.dto.WebSocketSessionStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slow-consumer policy for STOMP sessions, so one dashboard on a bad network does not delay the others
+ * Every WebSocket session is wrapped and each write to the client is timed. A session whose current write has
+ * been blocked for more than app.websocket.slow-consumer.lag-ms is lagging: the delta frames of FleetBroadcaster
+ * (marked with CONFLATABLE_HEADER) are skipped for it on the outbound channel. As soon as a write completes in time
+ * again, the session is queued for a resync: on its next tick FleetBroadcaster sends that session alone a keyframe
+ * for every topic it missed frames on (takeResyncRequests / sendToSession), so its map does not stay frozen until
+ * the global keyframe. Other messages still go out within the send buffer / send time limits set
+ * in WebSocketConfig; a session blocked longer than the send time limit is disconnected.
+ *
+ * The send buffer has to hold at least one whole-fleet keyframe (about KEYFRAME_BYTES_PER_VEHICLE per vehicle,
+ * ~6 MB for 100k vehicles) or a session gets closed as soon as a keyframe queues up behind a slow write;
+ * unless app.websocket.send-buffer-limit-bytes is set, it is sized from app.broadcast.max-fleet-size.
+ */
+@Component
+@Slf4j
+public class SlowConsumerPolicy implements WebSocketHandlerDecoratorFactory, ChannelInterceptor {
+
+    public static final String CONFLATABLE_HEADER = "smartfleetConflatable";
+
+    // Un vehicul intr-un keyframe: {"id":123456,"lat":4677120,"lng":2358890,"km":123456,"st":"ON_TRIP"},
+    public static final int KEYFRAME_BYTES_PER_VEHICLE = 64;
+    private static final int MIN_SEND_BUFFER_BYTES = 2 * 1024 * 1024;
+
+    // 0 = dupa marimea flotei: loc pentru doua keyframe-uri (unul in curs, unul in asteptare)
+    @Value("${app.websocket.send-buffer-limit-bytes:0}")
+    private int sendBufferLimitBytes;
+
+    @Value("${app.broadcast.max-fleet-size:100000}")
+    private int maxFleetSize;
+
+    @Value("${app.websocket.slow-consumer.lag-ms:1000}")
+    private long lagMs;
+
+    @Value("${app.websocket.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    // Lazy: canalul e construit de configurarea brokerului, care are nevoie de aceasta politica
+    @Autowired
+    @Lazy
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+
+    private final Map<String, SessionStats> sessions = new ConcurrentHashMap<>();
+    // Sesiuni care si-au revenit dupa cadre sarite si asteapta un keyframe doar pentru ele
+    private final Set<String> resyncSessions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong framesSkipped = new AtomicLong();
+    private final AtomicLong slowDisconnects = new AtomicLong();
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionStats stats = new SessionStats(session);
+                sessions.put(session.getId(), stats);
+                // Brokerul pune deasupra propriul ConcurrentWebSocketSessionDecorator (buffer + limite)
+                super.afterConnectionEstablished(new MeteredSession(session, stats));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                resyncSessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Outbound channel: drop conflatable frames addressed to a lagging session
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!Boolean.TRUE.equals(message.getHeaders().get(CONFLATABLE_HEADER)))
+            return message;
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionStats stats = sessionId != null ? sessions.get(sessionId) : null;
+        if (stats == null || !stats.isLagging(System.nanoTime()))
+            return message;
+        // Tinem minte abonamentul, ca resync-ul sa ajunga pe acelasi topic
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        if (destination != null && subscriptionId != null)
+            stats.skipped.put(destination, subscriptionId);
+        stats.framesSkipped.incrementAndGet();
+        framesSkipped.incrementAndGet();
+        return null;
+    }
+
+    // Limita de timp a Spring-ului se verifica doar la urmatorul mesaj; aici si pentru sesiunile fara trafic
+    @Scheduled(fixedDelayString = "${app.websocket.slow-consumer.check-interval-ms:1000}")
+    public void disconnectBlockedSessions() {
+        long now = System.nanoTime();
+        for (SessionStats stats : sessions.values()) {
+            if (stats.blockedMillis(now) > sendTimeLimitMs)
+                closeSlow(stats.session, stats.blockedMillis(now));
+        }
+    }
+
+    /**
+     * Per-session send buffer limit: the configured value, or two whole-fleet keyframes for max-fleet-size vehicles
+     */
+    public int getSendBufferLimitBytes() {
+        if (sendBufferLimitBytes > 0)
+            return sendBufferLimitBytes;
+        long sized = 2L * maxFleetSize * KEYFRAME_BYTES_PER_VEHICLE;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_SEND_BUFFER_BYTES, sized));
+    }
+
+    /**
+     * Sessions that caught up after skipped frames: session id -> (destination -> subscription id) to resync
+     */
+    public Map<String, Map<String, String>> takeResyncRequests() {
+        Map<String, Map<String, String>> requests = new HashMap<>();
+        for (String sessionId : resyncSessions) {
+            resyncSessions.remove(sessionId);
+            SessionStats stats = sessions.get(sessionId);
+            if (stats == null)
+                continue;
+            Map<String, String> destinations = new HashMap<>();
+            for (String destination : stats.skipped.keySet()) {
+                String subscriptionId = stats.skipped.remove(destination);
+                if (subscriptionId != null)
+                    destinations.put(destination, subscriptionId);
+            }
+            if (!destinations.isEmpty())
+                requests.put(sessionId, destinations);
+        }
+        return requests;
+    }
+
+    /**
+     * Send a pre-serialized JSON frame to one subscription of one session (bypasses the broker fan-out)
+     */
+    public void sendToSession(String sessionId, String subscriptionId, String destination, byte[] frame) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(frame, headers.getMessageHeaders()));
+    }
+
+    public WebSocketOutboundStatsDTO getStats() {
+        long now = System.nanoTime();
+        List<WebSocketSessionStatsDTO> details = new ArrayList<>(sessions.size());
+        int lagging = 0;
+        for (SessionStats stats : sessions.values()) {
+            boolean isLagging = stats.isLagging(now);
+            if (isLagging)
+                lagging++;
+            details.add(new WebSocketSessionStatsDTO(stats.session.getId(), stats.remoteAddress, stats.connectedAt,
+                    stats.messagesSent.get(), stats.bytesSent.get(), stats.framesSkipped.get(), stats.lastSendMs,
+                    stats.maxSendMs, stats.blockedMillis(now), isLagging));
+        }
+        return new WebSocketOutboundStatsDTO(details.size(), lagging, framesSkipped.get(), slowDisconnects.get(),
+                details);
+    }
+
+    private void closeSlow(WebSocketSession session, long blockedMs) {
+        if (!session.isOpen())
+            return;
+        slowDisconnects.incrementAndGet();
+        log.warn("Closing slow WebSocket session {}: a write has been blocked for {} ms", session.getId(), blockedMs);
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("Cannot close session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private final class MeteredSession extends WebSocketSessionDecorator {
+        private final SessionStats stats;
+
+        MeteredSession(WebSocketSession session, SessionStats stats) {
+            super(session);
+            this.stats = stats;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            // ConcurrentWebSocketSessionDecorator scrie cate un mesaj pe rand, deci un singur write in curs
+            long start = System.nanoTime();
+            stats.sendStartedNanos = start;
+            try {
+                super.sendMessage(message);
+            } finally {
+                stats.sendStartedNanos = 0;
+                stats.sent(message.getPayloadLength(), (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+
+        @Override
+        public void close(CloseStatus status) throws IOException {
+            // Buffer-ul sau limita de timp a sesiunii depasite (ConcurrentWebSocketSessionDecorator)
+            if (status.getCode() == CloseStatus.SESSION_NOT_RELIABLE.getCode() && getDelegate().isOpen()) {
+                slowDisconnects.incrementAndGet();
+                log.warn("Closing slow WebSocket session {}: send buffer or time limit exceeded", getId());
+            }
+            super.close(status);
+        }
+    }
+
+    private final class SessionStats {
+        private final WebSocketSession session;
+        private final String remoteAddress;
+        private final LocalDateTime connectedAt = LocalDateTime.now();
+        private final AtomicLong messagesSent = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong framesSkipped = new AtomicLong();
+        // Topicurile pe care s-au sarit cadre cat a ramas in urma: destinatie -> id abonament
+        private final Map<String, String> skipped = new ConcurrentHashMap<>();
+        private volatile long sendStartedNanos; // 0 = niciun write in curs
+        private volatile long lastSendMs;
+        private volatile long maxSendMs;
+        private volatile boolean lagging;
+
+        SessionStats(WebSocketSession session) {
+            this.session = session;
+            this.remoteAddress = session.getRemoteAddress() != null ? session.getRemoteAddress().toString() : null;
+        }
+
+        long blockedMillis(long now) {
+            long started = sendStartedNanos;
+            return started != 0 ? (now - started) / 1_000_000 : 0;
+        }
+
+        // Ramane in urma pana cand un write se termina din nou sub lag-ms
+        boolean isLagging(long now) {
+            if (!lagging && blockedMillis(now) > lagMs)
+                lagging = true;
+            return lagging;
+        }
+
+        void sent(int bytes, long millis) {
+            messagesSent.incrementAndGet();
+            bytesSent.addAndGet(bytes);
+            lastSendMs = millis;
+            if (millis > maxSendMs)
+                maxSendMs = millis;
+            if (millis <= lagMs) {
+                if (lagging && !skipped.isEmpty())
+                    resyncSessions.add(session.getId());
+                lagging = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.smartfleet.websocket;
+
+import com.smartfleet.geo.WebMercator;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Region topics for the live map: /topic/vehicles/tile/{z}/{x}/{y} (Web Mercator tiles, z in app.broadcast.tile-zooms)
+ * Validates SUBSCRIBE frames for these destinations and counts subscribers per tile, so the broadcaster
+ * only encodes frames for tiles somebody is looking at. A session that ends drops all its subscriptions.
+ * Tiles are keyed by a packed long (z, x, y) - see tileKey - so the broadcaster can route changes without
+ * building a destination String per vehicle and zoom; the String is only built for a tile that gets a frame.
+ */
+@Component
+public class TileSubscriptionRegistry implements ChannelInterceptor {
+
+    public static final String TILE_PREFIX = "/topic/vehicles/tile/";
+
+    @Value("${app.broadcast.tile-zooms:6,9,12}")
+    private int[] configuredZooms;
+
+    @Value("${app.broadcast.max-tiles-per-session:64}")
+    private int maxTilesPerSession;
+
+    private int[] zooms;
+
+    // sessionId -> (subscriptionId -> tile key)
+    private final Map<String, Map<String, Long>> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        zooms = configuredZooms.clone();
+        Arrays.sort(zooms);
+        for (int z : zooms) {
+            if (z < 0 || z > 20)
+                throw new IllegalStateException("app.broadcast.tile-zooms must be between 0 and 20");
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null)
+            return message;
+
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            subscribe(accessor, message);
+        } else if (StompCommand.UNSUBSCRIBE.equals(accessor.getCommand())) {
+            unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+        } else if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
+            disconnect(accessor.getSessionId());
+        }
+        return message;
+    }
+
+    /**
+     * Zoom levels that have tile topics, ascending
+     */
+    public int[] getZooms() {
+        return zooms.clone();
+    }
+
+    public boolean hasSubscribers(long tileKey) {
+        return subscribers.containsKey(tileKey);
+    }
+
+    /**
+     * Keys of the tiles with at least one subscriber (a copy)
+     */
+    public Set<Long> getSubscribedTiles() {
+        return new HashSet<>(subscribers.keySet());
+    }
+
+    public int getSubscribedTileCount() {
+        return subscribers.size();
+    }
+
+    public int getMaxTilesPerSession() {
+        return maxTilesPerSession;
+    }
+
+    /**
+     * Tile (z &lt;= 20, x, y &lt; 2^20) packed into one long: z in the top bits, then x, then y
+     */
+    public static long tileKey(int z, long x, long y) {
+        return ((long) z << 58) | (x << 29) | y;
+    }
+
+    public static int zoomOf(long tileKey) {
+        return (int) (tileKey >>> 58);
+    }
+
+    public static String destination(int z, long x, long y) {
+        return TILE_PREFIX + z + "/" + x + "/" + y;
+    }
+
+    public static String destination(long tileKey) {
+        return destination(zoomOf(tileKey), (tileKey >>> 29) & 0x1FFFFFFFL, tileKey & 0x1FFFFFFFL);
+    }
+
+    private void subscribe(StompHeaderAccessor accessor, Message<?> message) {
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(TILE_PREFIX))
+            return;
+        long tileKey = parseTileDestination(destination);
+        if (tileKey < 0)
+            throw new MessageDeliveryException(message, "Invalid tile topic " + destination
+                    + " (zoom must be one of " + Arrays.toString(zooms) + ")");
+
+        Map<String, Long> subscriptions = sessions.computeIfAbsent(accessor.getSessionId(),
+                id -> new ConcurrentHashMap<>());
+        if (subscriptions.size() >= maxTilesPerSession)
+            throw new MessageDeliveryException(message, "At most " + maxTilesPerSession + " tile topics per session");
+        Long previous = subscriptions.put(accessor.getSubscriptionId(), tileKey);
+        if (previous != null && previous == tileKey)
+            return;
+        if (previous != null)
+            release(previous);
+        subscribers.merge(tileKey, 1, Integer::sum);
+    }
+
+    private void unsubscribe(String sessionId, String subscriptionId) {
+        Map<String, Long> subscriptions = sessionId != null ? sessions.get(sessionId) : null;
+        if (subscriptions == null || subscriptionId == null)
+            return;
+        Long tileKey = subscriptions.remove(subscriptionId);
+        if (tileKey != null)
+            release(tileKey);
+    }
+
+    private void disconnect(String sessionId) {
+        Map<String, Long> subscriptions = sessionId != null ? sessions.remove(sessionId) : null;
+        if (subscriptions != null)
+            subscriptions.values().forEach(this::release);
+    }
+
+    private void release(long tileKey) {
+        subscribers.computeIfPresent(tileKey, (k, count) -> count <= 1 ? null : count - 1);
+    }
+
+    /**
+     * Key of a /topic/vehicles/tile/{z}/{x}/{y} destination, or -1 if it is not a valid tile topic
+     */
+    public long parseTileDestination(String destination) {
+        if (destination == null || !destination.startsWith(TILE_PREFIX))
+            return -1;
+        String[] parts = destination.substring(TILE_PREFIX.length()).split("/");
+        if (parts.length != 3)
+            return -1;
+        try {
+            int z = Integer.parseInt(parts[0]);
+            long x = Long.parseLong(parts[1]);
+            long y = Long.parseLong(parts[2]);
+            // Forma canonica (fara zerouri in fata), altfel "6/01/2" si "6/1/2" ar fi doua topicuri
+            if (Arrays.binarySearch(zooms, z) < 0 || !WebMercator.isValidTile(z, x, y)
+                    || !destination.equals(destination(z, x, y)))
+                return -1;
+            return tileKey(z, x, y);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.smartfleet.service;
+
+import com.smartfleet.dto.LocationSampleDTO;
+import com.smartfleet.dto.VehicleResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TelemetryPipelineWalTest {
+
+    @TempDir
+    Path walDir;
+
+    private VehiclePositionStore positionStore;
+    private PositionHistoryService historyService;
+    private TelemetryWalService walService;
+    private TelemetryPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        positionStore = mock(VehiclePositionStore.class);
+        historyService = mock(PositionHistoryService.class);
+        DeadBandFilter deadBandFilter = mock(DeadBandFilter.class);
+        when(positionStore.getAll()).thenReturn(List.of());
+        when(positionStore.flush()).thenReturn(true);
+        when(historyService.flush()).thenReturn(true);
+        when(historyService.record(any())).thenReturn(true);
+        when(deadBandFilter.accept(any(), any(), anyLong())).thenReturn(true);
+
+        walService = new TelemetryWalService(positionStore, historyService, deadBandFilter);
+        ReflectionTestUtils.setField(walService, "enabled", true);
+        ReflectionTestUtils.setField(walService, "directory", walDir.toString());
+        ReflectionTestUtils.setField(walService, "segmentSizeMb", 1);
+        walService.init();
+
+        pipeline = new TelemetryPipeline(positionStore, historyService, mock(FleetBroadcaster.class), deadBandFilter,
+                walService, mock(TelemetryRecorder.class), mock(GeofenceService.class));
+        ReflectionTestUtils.setField(pipeline, "capacity", 1024);
+        ReflectionTestUtils.setField(pipeline, "batchSize", 1024);
+        ReflectionTestUtils.setField(pipeline, "idleParkMicros", 100L);
+        ReflectionTestUtils.setField(pipeline, "historyRetryCapacity", 1000);
+        ReflectionTestUtils.setField(pipeline, "sequenceResetWindow", 100000L);
+    }
+
+    @Test
+    void segmentOfAFailedSampleSurvivesCheckpoint() throws Exception {
+        when(positionStore.get(1L)).thenReturn(Optional.of(vehicle(1L)));
+        when(positionStore.applySample(any())).thenAnswer(call -> moved(call.getArgument(0)));
+        when(positionStore.applySample(any(), anyBoolean())).thenAnswer(call -> moved(call.getArgument(0)));
+        // Al doilea vehicul arunca in mijlocul batch-ului; al treilea vine dupa el
+        when(positionStore.get(2L)).thenThrow(new IllegalStateException("boom"));
+        when(positionStore.get(3L)).thenReturn(Optional.of(vehicle(3L)));
+
+        runBatch(List.of(sample(1L), sample(2L), sample(3L)));
+
+        assertThat(walService.getSegmentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void fullyAppliedSegmentIsDeletedByCheckpoint() throws Exception {
+        when(positionStore.get(any())).thenAnswer(call -> Optional.of(vehicle(call.getArgument(0))));
+        when(positionStore.applySample(any())).thenAnswer(call -> moved(call.getArgument(0)));
+
+        runBatch(List.of(sample(1L), sample(2L), sample(3L)));
+
+        assertThat(walService.getSegmentCount()).isZero();
+    }
+
+    // Consumatorul goleste ring-ul inainte sa se opreasca; shutdown-ul sigileaza segmentul si face checkpoint
+    private void runBatch(List<LocationSampleDTO> samples) throws Exception {
+        pipeline.start();
+        assertThat(pipeline.publishAll(samples)).isEqualTo(samples.size());
+        pipeline.stop();
+        walService.shutdown();
+    }
+
+    private static LocationSampleDTO sample(Long vehicleId) {
+        return new LocationSampleDTO(vehicleId, 46.77, 23.59, "ON_TRIP", 50.0, 80.0, null, null);
+    }
+
+    private static VehicleResponseDTO vehicle(Long id) {
+        VehicleResponseDTO v = new VehicleResponseDTO();
+        v.setId(id);
+        v.setLat(46.0);
+        v.setLng(23.0);
+        v.setStatus("IDLE");
+        return v;
+    }
+
+    private static VehicleResponseDTO moved(LocationSampleDTO sample) {
+        VehicleResponseDTO v = vehicle(sample.getVehicleId());
+        v.setLat(sample.getLat());
+        v.setLng(sample.getLng());
+        v.setStatus(sample.getStatus());
+        return v;
+    }
+}
@@ -0,0 +1,76 @@
+package com.smartfleet.telemetry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TelemetryFrameCodecTest {
+
+    private static final String SECRET = "test-secret";
+
+    @Test
+    void validFrameRoundTripsAndCachesItsKey() {
+        TelemetryFrameCodec receiver = new TelemetryFrameCodec(SECRET);
+        TelemetryFrame decoded = new TelemetryFrame();
+
+        assertThat(receiver.decode(encode(new TelemetryFrameCodec(SECRET), 42), decoded)).isTrue();
+
+        assertThat(decoded.vehicleId).isEqualTo(42);
+        assertThat(decoded.sequence).isEqualTo(0xFFFFFFF0L);
+        assertThat(decoded.lat).isEqualTo(46.77);
+        assertThat(decoded.status).isEqualTo("ON_TRIP");
+        assertThat(cachedKeys(receiver)).containsOnlyKeys(42);
+    }
+
+    @Test
+    void forgedFramesDoNotEnterTheKeyCache() {
+        TelemetryFrameCodec receiver = new TelemetryFrameCodec(SECRET);
+        TelemetryFrameCodec attacker = new TelemetryFrameCodec("wrong-secret");
+        TelemetryFrame decoded = new TelemetryFrame();
+
+        for (int id = 1; id <= 100; id++)
+            assertThat(receiver.decode(encode(attacker, id), decoded)).isFalse();
+
+        assertThat(cachedKeys(receiver)).isEmpty();
+    }
+
+    @Test
+    void negativeVehicleIdIsRejected() {
+        ByteBuffer buffer = encode(new TelemetryFrameCodec(SECRET), 7);
+        buffer.putInt(1, -7);
+
+        TelemetryFrameCodec receiver = new TelemetryFrameCodec(SECRET);
+        assertThat(receiver.decode(buffer, new TelemetryFrame())).isFalse();
+        assertThat(cachedKeys(receiver)).isEmpty();
+
+        TelemetryFrame frame = new TelemetryFrame();
+        frame.vehicleId = -1;
+        assertThatThrownBy(() -> new TelemetryFrameCodec(SECRET).encode(frame, ByteBuffer.allocate(TelemetryFrameCodec.FRAME_SIZE)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ByteBuffer encode(TelemetryFrameCodec codec, int vehicleId) {
+        TelemetryFrame frame = new TelemetryFrame();
+        frame.vehicleId = vehicleId;
+        frame.sequence = 0xFFFFFFF0L;
+        frame.timestamp = 1_700_000_000_000L;
+        frame.lat = 46.77;
+        frame.lng = 23.59;
+        frame.speed = 50.0;
+        frame.fuelLevel = 80;
+        frame.status = "ON_TRIP";
+        ByteBuffer buffer = ByteBuffer.allocate(TelemetryFrameCodec.FRAME_SIZE);
+        codec.encode(frame, buffer);
+        return buffer.flip();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, ?> cachedKeys(TelemetryFrameCodec codec) {
+        return (Map<Integer, ?>) ReflectionTestUtils.getField(codec, "vehicleKeys");
+    }
+}
@@ -0,0 +1,258 @@
+package com.smartfleet.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trip: tiles written by MvtEncoder are read back with a small protobuf decoder
+ * (the fields of the MVT 2.1 spec) and compared with what was added.
+ */
+class MvtEncoderTest {
+
+    private static final String[] TAGS = {"plate", "speed", "count", "active", "missing"};
+
+    @Test
+    void pointFeatureRoundTrip() {
+        MvtEncoder encoder = new MvtEncoder();
+        encoder.layer("vehicles").addPoint(42, 100, -20, TAGS, new Object[] {"CJ-01-ABC", 61.5, 7, true, null});
+
+        DecodedLayer layer = decodeSingleLayer(encoder.encode());
+        assertThat(layer.name).isEqualTo("vehicles");
+        assertThat(layer.version).isEqualTo(2);
+        assertThat(layer.extent).isEqualTo(MvtEncoder.EXTENT);
+        assertThat(layer.features).hasSize(1);
+
+        DecodedFeature feature = layer.features.get(0);
+        assertThat(feature.id).isEqualTo(42);
+        assertThat(feature.type).isEqualTo(1);
+        assertThat(feature.geometry).containsExactly(command(1, 1), zigZag(100), zigZag(-20));
+        assertThat(layer.properties(feature)).containsExactlyInAnyOrderEntriesOf(
+                Map.of("plate", "CJ-01-ABC", "speed", 61.5, "count", 7L, "active", true));
+    }
+
+    @Test
+    void lineStringIsDeltaEncodedWithoutRepeatedPoints() {
+        MvtEncoder encoder = new MvtEncoder();
+        MvtEncoder.Layer layer = encoder.layer("history");
+        boolean added = layer.addLineString(5, new int[] {10, 10, 20, 15}, new int[] {10, 10, 30, 5}, 4,
+                new String[] {"vehicleId"}, new Object[] {5L});
+
+        assertThat(added).isTrue();
+        DecodedFeature feature = decodeSingleLayer(encoder.encode()).features.get(0);
+        assertThat(feature.type).isEqualTo(2);
+        assertThat(feature.geometry).containsExactly(
+                command(1, 1), zigZag(10), zigZag(10),
+                command(2, 2), zigZag(10), zigZag(20), zigZag(-5), zigZag(-25));
+    }
+
+    @Test
+    void degenerateLinesAndEmptyLayersAreSkipped() {
+        MvtEncoder encoder = new MvtEncoder();
+        MvtEncoder.Layer layer = encoder.layer("history");
+        assertThat(layer.addLineString(1, new int[] {3}, new int[] {4}, 1, new String[0], new Object[0])).isFalse();
+        assertThat(layer.addLineString(2, new int[] {3, 3}, new int[] {4, 4}, 2, new String[0], new Object[0]))
+                .isFalse();
+
+        assertThat(encoder.encode()).isEmpty();
+    }
+
+    @Test
+    void keysAndValuesAreSharedBetweenFeatures() {
+        MvtEncoder encoder = new MvtEncoder();
+        MvtEncoder.Layer layer = encoder.layer("vehicles");
+        String[] keys = {"status", "speed"};
+        layer.addPoint(1, 0, 0, keys, new Object[] {"IN_USE", 50});
+        layer.addPoint(2, 1, 1, keys, new Object[] {"IN_USE", 50L});
+        layer.addPoint(3, 2, 2, keys, new Object[] {"IDLE", 0});
+
+        DecodedLayer decoded = decodeSingleLayer(encoder.encode());
+        assertThat(decoded.keys).containsExactly("status", "speed");
+        assertThat(decoded.values).containsExactly("IN_USE", 50L, "IDLE", 0L);
+        assertThat(decoded.features).extracting(f -> f.id).containsExactly(1L, 2L, 3L);
+        assertThat(decoded.properties(decoded.features.get(1))).isEqualTo(Map.of("status", "IN_USE", "speed", 50L));
+    }
+
+    @Test
+    void negativeIdsAndLargeCoordinatesSurvive() {
+        MvtEncoder encoder = new MvtEncoder();
+        encoder.layer("vehicles").addPoint(Long.MAX_VALUE, -64, MvtEncoder.EXTENT + 64, new String[] {"delta"},
+                new Object[] {-3L});
+
+        DecodedLayer layer = decodeSingleLayer(encoder.encode());
+        DecodedFeature feature = layer.features.get(0);
+        assertThat(feature.id).isEqualTo(Long.MAX_VALUE);
+        assertThat(feature.geometry).containsExactly(command(1, 1), zigZag(-64), zigZag(MvtEncoder.EXTENT + 64));
+        assertThat(layer.properties(feature)).isEqualTo(Map.of("delta", -3L));
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static DecodedLayer decodeSingleLayer(byte[] tile) {
+        List<DecodedLayer> layers = new ArrayList<>();
+        Reader reader = new Reader(tile, 0, tile.length);
+        while (reader.hasMore()) {
+            long key = reader.varint();
+            assertThat(key >>> 3).as("Tile field").isEqualTo(3);
+            layers.add(decodeLayer(reader.message()));
+        }
+        assertThat(layers).hasSize(1);
+        return layers.get(0);
+    }
+
+    private static DecodedLayer decodeLayer(Reader reader) {
+        DecodedLayer layer = new DecodedLayer();
+        while (reader.hasMore()) {
+            long key = reader.varint();
+            int field = (int) (key >>> 3);
+            if (field == 15) {
+                layer.version = (int) reader.varint();
+            } else if (field == 1) {
+                layer.name = reader.string();
+            } else if (field == 2) {
+                layer.features.add(decodeFeature(reader.message()));
+            } else if (field == 3) {
+                layer.keys.add(reader.string());
+            } else if (field == 4) {
+                layer.values.add(decodeValue(reader.message()));
+            } else if (field == 5) {
+                layer.extent = (int) reader.varint();
+            } else {
+                throw new AssertionError("Unexpected layer field " + field);
+            }
+        }
+        return layer;
+    }
+
+    private static DecodedFeature decodeFeature(Reader reader) {
+        DecodedFeature feature = new DecodedFeature();
+        while (reader.hasMore()) {
+            long key = reader.varint();
+            int field = (int) (key >>> 3);
+            if (field == 1) {
+                feature.id = reader.varint();
+            } else if (field == 2) {
+                feature.tags = reader.packed();
+            } else if (field == 3) {
+                feature.type = (int) reader.varint();
+            } else if (field == 4) {
+                feature.geometry = reader.packed();
+            } else {
+                throw new AssertionError("Unexpected feature field " + field);
+            }
+        }
+        return feature;
+    }
+
+    private static Object decodeValue(Reader reader) {
+        long key = reader.varint();
+        int field = (int) (key >>> 3);
+        Object value;
+        if (field == 1) {
+            value = reader.string();
+        } else if (field == 3) {
+            value = Double.longBitsToDouble(reader.fixed64());
+        } else if (field == 6) {
+            long n = reader.varint();
+            value = (n >>> 1) ^ -(n & 1);
+        } else if (field == 7) {
+            value = reader.varint() != 0;
+        } else {
+            throw new AssertionError("Unexpected value field " + field);
+        }
+        assertThat(reader.hasMore()).as("one field per Value").isFalse();
+        return value;
+    }
+
+    private static final class DecodedLayer {
+        int version;
+        String name;
+        int extent;
+        final List<DecodedFeature> features = new ArrayList<>();
+        final List<String> keys = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+
+        Map<String, Object> properties(DecodedFeature feature) {
+            Map<String, Object> properties = new HashMap<>();
+            for (int i = 0; i < feature.tags.length; i += 2)
+                properties.put(keys.get(feature.tags[i]), values.get(feature.tags[i + 1]));
+            return properties;
+        }
+    }
+
+    private static final class DecodedFeature {
+        long id;
+        int type;
+        int[] tags = new int[0];
+        int[] geometry = new int[0];
+    }
+
+    // Cititor protobuf minimal: varint, fixed64, length-delimited
+    private static final class Reader {
+        private final byte[] buf;
+        private int position;
+        private final int end;
+
+        Reader(byte[] buf, int position, int end) {
+            this.buf = buf;
+            this.position = position;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return position < end;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new AssertionError("Malformed varint");
+        }
+
+        long fixed64() {
+            long value = 0;
+            for (int i = 0; i < 8; i++)
+                value |= (buf[position++] & 0xFFL) << (8 * i);
+            return value;
+        }
+
+        Reader message() {
+            int length = (int) varint();
+            Reader message = new Reader(buf, position, position + length);
+            position += length;
+            return message;
+        }
+
+        String string() {
+            int length = (int) varint();
+            String value = new String(buf, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        int[] packed() {
+            Reader values = message();
+            List<Integer> decoded = new ArrayList<>();
+            while (values.hasMore())
+                decoded.add((int) values.varint());
+            return decoded.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.smartfleet.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileCacheTest {
+
+    @Test
+    void sameBytesGiveSameStrongEtag() {
+        TileCache.Tile a = new TileCache.Tile(new byte[] {1, 2, 3}, 0);
+        TileCache.Tile b = new TileCache.Tile(new byte[] {1, 2, 3}, 1000);
+        TileCache.Tile c = new TileCache.Tile(new byte[] {1, 2, 4}, 0);
+
+        assertThat(a.getEtag()).isEqualTo(b.getEtag()).startsWith("\"").endsWith("\"").hasSize(34);
+        assertThat(a.getEtag()).isNotEqualTo(c.getEtag());
+    }
+
+    @Test
+    void ifNoneMatchAcceptsListsWeakTagsAndWildcard() {
+        String etag = "\"abc\"";
+        assertThat(TileCache.matches("\"abc\"", etag)).isTrue();
+        assertThat(TileCache.matches("W/\"abc\"", etag)).isTrue();
+        assertThat(TileCache.matches("\"x\", W/\"abc\"", etag)).isTrue();
+        assertThat(TileCache.matches("*", etag)).isTrue();
+        assertThat(TileCache.matches("\"x\", \"y\"", etag)).isFalse();
+        assertThat(TileCache.matches(null, etag)).isFalse();
+    }
+
+    @Test
+    void expiredTilesAreNotReturned() {
+        TileCache cache = new TileCache(2);
+        cache.put("a", new TileCache.Tile(new byte[] {1}, 100));
+
+        assertThat(cache.get("a", 99)).isNotNull();
+        assertThat(cache.get("a", 100)).isNull();
+    }
+}
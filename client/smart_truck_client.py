@@ -3,11 +3,21 @@ import time
 import sys
 import random
 import os
+import json
+
+# STOMP peste WebSocket (optional): pip install websocket-client
+try:
+    import websocket
+except ImportError:
+    websocket = None
 
 # --- CONFIGURARE ---
 BASE_URL = "http://localhost:8080"
 USERNAME = "Dragos"       
 PASSWORD = "utcn"   # <--- AICI AM SCHIMBAT PAROLA (era password123)
+# "stomp" = o singura sesiune WebSocket (/app/telemetry), "http" = un POST per ping
+TRANSPORT = "stomp"
+WS_URL = "ws://localhost:8080/ws-telemetry"
 
 
 # Ruta (Cluj -> Hamburg simplificata)
@@ -36,6 +46,12 @@ class SmartTruck:
         self.fuel_level = 100.0
         self.status = "IDLE"
         self.cargo_temp = -22.0
+        self.ws = None
+        self.sequence = 0
+        # Cat de des raportam (secunde) - serverul trimite reportIntervalMs (mai rar cand camionul sta)
+        self.report_interval = 0.5
+        self.last_sent_at = 0.0
+        self.last_sent_status = None
         
     def login(self):
         try:
@@ -57,17 +73,78 @@ class SmartTruck:
             return False
         except: return False
 
+    def connect_stomp(self):
+        # Ne autentificam O SINGURA DATA, pe frame-ul CONNECT
+        if TRANSPORT != "stomp" or websocket is None:
+            return False
+        try:
+            self.ws = websocket.create_connection(WS_URL)
+            self.ws.send(f"CONNECT\naccept-version:1.2\nhost:localhost\nAuthorization:Bearer {self.token}\n\n\x00")
+            if not self.ws.recv().startswith("CONNECTED"):
+                self.ws = None
+                return False
+            # Raspunsurile serverului (reportIntervalMs) vin doar cand se schimba
+            self.ws.send("SUBSCRIBE\nid:ack\ndestination:/user/queue/telemetry\n\n\x00")
+            self.ws.settimeout(0.01)
+            return True
+        except Exception:
+            self.ws = None
+            return False
+
+    def next_sample(self, lat, lng):
+        # Numar de secventa + ora dispozitivului: serverul ignora retry-urile intarziate
+        self.sequence += 1
+        return {"vehicleId": self.vehicle_id, "lat": lat, "lng": lng, "status": self.status,
+                "speed": self.speed, "fuelLevel": round(self.fuel_level, 2),
+                "sequence": self.sequence, "timestamp": int(time.time() * 1000)}
+
+    def send_stomp(self, sample):
+        body = json.dumps(sample)
+        try:
+            self.ws.send(f"SEND\ndestination:/app/telemetry\ncontent-type:application/json\n\n{body}\x00")
+        except Exception:
+            self.ws = None
+            return False
+        self.poll_stomp()
+        return True
+
+    def poll_stomp(self):
+        # Citim ce a venit intre timp, fara sa blocam simularea (timeout = nimic de citit)
+        while True:
+            try:
+                frame = self.ws.recv()
+            except Exception:
+                return
+            if frame.startswith("MESSAGE"):
+                body = frame.split("\n\n", 1)[1].rstrip("\x00")
+                self.apply_hint(json.loads(body).get("reportIntervalMs"))
+
+    def apply_hint(self, intervals):
+        # Cheile JSON sunt string-uri: {"42": 30000}
+        if intervals and str(self.vehicle_id) in intervals:
+            self.report_interval = intervals[str(self.vehicle_id)] / 1000.0
+
     def update_server(self, lat, lng):
+        # Respectam rata ceruta de server; o schimbare de status pleaca imediat
+        now = time.time()
+        if now - self.last_sent_at < self.report_interval and self.status == self.last_sent_status:
+            return
+        self.last_sent_at = now
+        self.last_sent_status = self.status
+
+        sample = self.next_sample(lat, lng)
+        if self.ws is not None and self.send_stomp(sample):
+            return
         headers = {"Authorization": f"Bearer {self.token}"}
         try:
-            # 1. Update GPS
-            requests.put(
-                f"{BASE_URL}/api/vehicles/{self.vehicle_id}/location",
+            # GPS + Status intr-un singur request (endpoint batch)
+            res = requests.post(
+                f"{BASE_URL}/api/vehicles/locations/batch",
                 headers=headers,
-                params={"lat": lat, "lng": lng}
+                json=[sample]
             )
-            # 2. Update Status (daca e nevoie)
-            requests.put(f"{BASE_URL}/api/vehicles/{self.vehicle_id}", headers=headers, json={"status": self.status})
+            if res.status_code == 202:
+                self.apply_hint(res.json().get("reportIntervalMs"))
         except: pass
 
     def dashboard(self, location, event_msg=""):
@@ -91,6 +168,8 @@ class SmartTruck:
             print(f"❌ Connection failed. Check password for user '{USERNAME}'.")
             return
 
+        if self.connect_stomp():
+            print("📡 Telemetry link: STOMP (WebSocket)")
         print("✅ Truck Systems Online. Cooling Cargo...")
         time.sleep(2)
         self.status = "ON_TRIP"
@@ -10,17 +10,32 @@ export const useVehicleStore = defineStore('vehicle', () => {
   const error = ref(null)
   let stompClient = null
 
+  // Starea /topic/vehicles: valori intregi (lat/lng in 1e-5 grade, km in 0.1 km), exact ca pe server
+  const COORDINATE_SCALE = 1e5
+  const KM_SCALE = 10
+  let frameState = null
+  let lastSeq = 0
+  let waitingForKeyframe = true
+
   const getVehicleCount = computed(() => vehicles.value.length)
   const activeVehicles = computed(() => 
     vehicles.value.filter(v => v.status === 'ACTIVE').length
   )
 
+  // Versiunea (si epoca nodului) din ultimul raspuns: urmatoarele cereri aduc doar ce s-a schimbat de atunci
+  let fleetVersion = null
+  let fleetEpoch = null
+
   const fetchVehicles = async () => {
     loading.value = true
     error.value = null
     try {
-      const response = await axios.get('/api/vehicles')
-      vehicles.value = response.data
+      const response = await axios.get('/api/vehicles', {
+        params: { since: fleetVersion ?? 0, epoch: fleetEpoch ?? undefined }
+      })
+      vehicles.value = applyFleetDelta(fleetVersion === null ? [] : vehicles.value, response.data)
+      fleetVersion = response.data.version
+      fleetEpoch = response.data.epoch
     } catch (err) {
       error.value = err.message
       console.error('Failed to fetch vehicles:', err)
@@ -29,6 +44,18 @@ export const useVehicleStore = defineStore('vehicle', () => {
     }
   }
 
+  /**
+   * Merge a GET /api/vehicles?since=... answer { version, epoch, full, vehicles, removed } into a vehicle list
+   */
+  const applyFleetDelta = (current, delta) => {
+    if (delta.full) return delta.vehicles
+    if (delta.vehicles.length === 0 && delta.removed.length === 0) return current
+    const byId = new Map(current.map(v => [v.id, v]))
+    delta.removed.forEach(id => byId.delete(id))
+    delta.vehicles.forEach(v => byId.set(v.id, v))
+    return [...byId.values()].sort((a, b) => a.id - b.id)
+  }
+
   const createVehicle = async (vehicleData) => {
     try {
       const response = await axios.post('/api/vehicles', vehicleData)
@@ -79,27 +106,190 @@ export const useVehicleStore = defineStore('vehicle', () => {
     }
   }
 
-  const connectWebSocket = () => {
+  const applyFrame = (frame) => {
+    const previousState = frame.key ? frameState : null
+    if (frame.key) {
+      frameState = new Map()
+      waitingForKeyframe = false
+    } else if (waitingForKeyframe || frame.seq !== lastSeq + 1) {
+      // Inca nu avem keyframe sau am pierdut un cadru - asteptam urmatorul keyframe (serverul trimite unul
+      // doar acestei sesiuni imediat ce ajunge din urma); frameState ramane, ca sa stim ce a disparut intre timp
+      waitingForKeyframe = true
+      lastSeq = frame.seq
+      return
+    }
+    lastSeq = frame.seq
+
+    const byId = new Map(vehicles.value.map(v => [v.id, v]))
+    let unknown = false
+    for (const update of frame.v) {
+      const known = frameState.get(update.id)
+      const previous = known || { lat: 0, lng: 0, km: 0, status: null }
+      const next = {
+        lat: previous.lat + (update.lat || 0),
+        lng: previous.lng + (update.lng || 0),
+        km: previous.km + (update.km || 0),
+        status: 'status' in update ? update.status : previous.status
+      }
+      frameState.set(update.id, next)
+
+      const vehicle = byId.get(update.id)
+      if (!vehicle) {
+        unknown = unknown || (!frame.key && !known)
+        continue
+      }
+      vehicle.lat = next.lat / COORDINATE_SCALE
+      vehicle.lng = next.lng / COORDINATE_SCALE
+      vehicle.totalKm = next.km / KM_SCALE
+      vehicle.status = next.status
+    }
+    const gone = new Set(frame.gone || [])
+    // Un keyframe listeaza toate vehiculele de pe harta: cele din cadrul anterior care lipsesc au fost sterse
+    if (previousState) {
+      previousState.forEach((state, id) => {
+        if (!frameState.has(id)) gone.add(id)
+      })
+    }
+    if (gone.size) {
+      gone.forEach(id => frameState.delete(id))
+      vehicles.value = vehicles.value.filter(v => !gone.has(v.id))
+    }
+    // Vehicul adaugat intre timp: detaliile (plate, brand...) vin doar din REST
+    if (unknown && !loading.value) {
+      fetchVehicles()
+    }
+  }
+
+  // Topicuri per regiune /topic/vehicles/tile/{z}/{x}/{y}: zoom-urile si limita vin de la server (GET /api/vehicles/tile-topics)
+  const MAX_TILE_SUBSCRIPTIONS = 16
+  let tileTopics = null
+  let tileSubscriptions = {} // destinatie -> subscription
+  let tileHandler = null
+  let connectCallbacks = null
+
+  const ensureConnected = (callback) => {
+    if (stompClient && stompClient.connected) {
+      callback()
+      return
+    }
+    if (connectCallbacks) {
+      connectCallbacks.push(callback)
+      return
+    }
+    connectCallbacks = [callback]
     try {
       const socket = new SockJS('http://localhost:8080/ws')
       stompClient = Stomp.over(socket)
       stompClient.connect({}, (frame) => {
         console.log('WebSocket connected:', frame)
-        // Subscribe to vehicle updates
-        stompClient.subscribe('/topic/vehicles', (message) => {
-          const vehicle = JSON.parse(message.body)
-          const index = vehicles.value.findIndex(v => v.id === vehicle.id)
-          if (index > -1) {
-            vehicles.value[index] = vehicle
-          }
-        })
+        const callbacks = connectCallbacks
+        connectCallbacks = null
+        callbacks.forEach(cb => cb())
+      }, (err) => {
+        console.error('WebSocket connection lost:', err)
+        connectCallbacks = null
+        tileSubscriptions = {}
       })
     } catch (err) {
+      connectCallbacks = null
       console.error('WebSocket connection failed:', err)
     }
   }
 
+  const connectWebSocket = () => {
+    ensureConnected(() => {
+      // Subscribe to vehicle updates (un cadru per tick: keyframe sau delta)
+      stompClient.subscribe('/topic/vehicles', (message) => {
+        applyFrame(JSON.parse(message.body))
+      })
+    })
+  }
+
+  // Tile-ul Web Mercator (schema OSM) in care cade un punct la zoom-ul z, ca tileOf din FleetBroadcaster
+  const tileOf = (lat, lng, z) => {
+    const n = 2 ** z
+    const clamp = (v) => Math.max(0, Math.min(n - 1, v))
+    const r = Math.max(-85.0511, Math.min(85.0511, lat)) * Math.PI / 180
+    return {
+      x: clamp(Math.floor((Math.max(-180, Math.min(180, lng)) + 180) / 360 * n)),
+      y: clamp(Math.floor((1 - Math.log(Math.tan(r) + 1 / Math.cos(r)) / Math.PI) / 2 * n))
+    }
+  }
+
+  const loadTileTopics = async () => {
+    if (!tileTopics) {
+      const response = await axios.get('/api/vehicles/tile-topics')
+      tileTopics = {
+        zooms: response.data.zooms,
+        maxTiles: Math.min(MAX_TILE_SUBSCRIPTIONS, response.data.maxTilesPerSession)
+      }
+    }
+    return tileTopics
+  }
+
+  // Tile-urile care acopera bounds la zoom-ul z
+  const tilesFor = (bounds, z, maxTiles) => {
+    const northWest = tileOf(bounds.north, bounds.west, z)
+    const southEast = tileOf(bounds.south, bounds.east, z)
+    const x0 = northWest.x
+    const x1 = southEast.x
+    const y0 = northWest.y
+    const y1 = southEast.y
+    if ((x1 - x0 + 1) * (y1 - y0 + 1) > maxTiles) return []
+    const tiles = []
+    for (let x = x0; x <= x1; x++) {
+      for (let y = y0; y <= y1; y++) {
+        tiles.push(`/topic/vehicles/tile/${z}/${x}/${y}`)
+      }
+    }
+    return tiles
+  }
+
+  /**
+   * Live updates only for the viewport: subscribes to the tiles it covers and drops the others (call on every pan / zoom)
+   * onFrame primeste { seq, ts, tile, key, v: [{ id, lat, lng, km, status }], gone: [id] } cu lat/lng in 1e-5 grade, km in 0.1 km.
+   * Un cadru cu key: true listeaza toate vehiculele din tile; cele care lipsesc au iesit din el.
+   * Daca viewport-ul ar cere prea multe tile-uri nu se aboneaza la nimic (harta ramane pe polling).
+   */
+  const watchViewport = async (bounds, zoom, onFrame) => {
+    tileHandler = onFrame
+    let topics
+    try {
+      topics = await loadTileTopics()
+    } catch (err) {
+      console.error('Failed to load tile topics:', err)
+      return
+    }
+    if (tileHandler !== onFrame || topics.zooms.length === 0) return // oprit sau inlocuit intre timp
+    const z = topics.zooms.filter(t => t <= zoom).pop() ?? topics.zooms[0]
+    const wanted = new Set(tilesFor(bounds, z, topics.maxTiles))
+    ensureConnected(() => {
+      Object.keys(tileSubscriptions).forEach(destination => {
+        if (!wanted.has(destination)) {
+          tileSubscriptions[destination].unsubscribe()
+          delete tileSubscriptions[destination]
+        }
+      })
+      wanted.forEach(destination => {
+        if (!tileSubscriptions[destination]) {
+          tileSubscriptions[destination] = stompClient.subscribe(destination, (message) => {
+            if (tileHandler) tileHandler(JSON.parse(message.body))
+          })
+        }
+      })
+    })
+  }
+
+  const stopViewport = () => {
+    tileHandler = null
+    if (stompClient && stompClient.connected) {
+      Object.values(tileSubscriptions).forEach(subscription => subscription.unsubscribe())
+    }
+    tileSubscriptions = {}
+  }
+
   const disconnectWebSocket = () => {
+    tileSubscriptions = {}
     if (stompClient && stompClient.connected) {
       stompClient.disconnect(() => {
         console.log('WebSocket disconnected')
@@ -114,11 +304,15 @@ export const useVehicleStore = defineStore('vehicle', () => {
     getVehicleCount,
     activeVehicles,
     fetchVehicles,
+    applyFleetDelta,
     createVehicle,
     updateVehicle,
     deleteVehicle,
     updateVehicleLocation,
     connectWebSocket,
+    watchViewport,
+    stopViewport,
+    tileOf,
     disconnectWebSocket
   }
 })